@@ -11,6 +11,7 @@ import ar.glyphsets.implicitgeometry.Indexed;
 import ar.glyphsets.implicitgeometry.Indexed.Converter;
 import ar.glyphsets.implicitgeometry.Shaper;
 import ar.glyphsets.implicitgeometry.Valuer;
+import ar.util.ByteDelimitedReader;
 import ar.util.DelimitedReader;
 import ar.util.Util;
 import ar.util.memoryMapping.MemMapEncoder;
@@ -78,8 +79,7 @@ public class GlyphsetUtils {
 				
 				return Util.load(
 						(Glyphset<Rectangle2D,T>) glyphs, 
-						new DelimitedReader(source, skip, DelimitedReader.CSV), 
-						new Converter(types),
+						new ByteDelimitedReader(source, skip, ',', types), 
 						new Indexed.ToRect(glyphSize, glyphSize, true, xField, yField), 
 						valuer);
 			}
@@ -76,4 +76,10 @@ public interface Aggregates<A> extends Serializable, Iterable<A> {
 	 * (See notes on lowX for boundary behaviors).
 	 * */
 	public int highY();
+	
+	/**Aggregates that hold their values as primitives, so they can be read as numbers without boxing.**/
+	public static interface Numeric<A extends Number> extends Aggregates<A> {
+		/**Value at the given position as a double (the default value if outside the bounds).**/
+		public double getDouble(int x, int y);
+	}
 }
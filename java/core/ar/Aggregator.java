@@ -51,4 +51,40 @@ public interface Aggregator<IN,OUT> extends Serializable {
 	 * property (for example, pixel-serial rendering just uses it for the background).
 	 **/
 	public OUT identity();
+	
+	/**Aggregators that accept partial updates.
+	 * 
+	 * Selectors that compute how much of a bin a glyph covers (e.g., anti-aliased lines)
+	 * pass the coverage to aggregators of this type.  Other aggregators get a plain 
+	 * combine for bins that are at least half covered (see TouchesPixel.update).
+	 */
+	public static interface Weighted<IN,OUT> extends Aggregator<IN,OUT> {
+		/**Combine an update that only applies to part of the bin.
+		 * 
+		 * @param current An existing aggregate value
+		 * @param update A new input value
+		 * @param weight Portion of the bin the update applies to, in (0,1]; a weight of 1 is equivalent to combine(current, update)
+		 * @return The aggregate value
+		 */
+		public OUT combine(OUT current, IN update, double weight);
+	}
+
+	/**Aggregators that also need the position of each value.
+	 * 
+	 * Reductions over aggregates (see Renderer.reduce) pass the position of each value 
+	 * to aggregators of this type.  Each reducing task starts from its own identity() and 
+	 * only that task sees it, so "current" may be updated in place and returned 
+	 * (unlike Aggregator.combine).  Rollup must not modify its arguments.
+	 */
+	public static interface Positional<IN,OUT> extends Aggregator<IN,OUT> {
+		/**Combine the value found at x/y.
+		 * 
+		 * @param current An existing aggregate value (owned by the calling task)
+		 * @param update A new input value
+		 * @param x Column of the value
+		 * @param y Row of the value
+		 * @return The aggregate value
+		 */
+		public OUT combine(OUT current, IN update, int x, int y);
+	}
 }
@@ -1,6 +1,8 @@
 package ar;
 
+import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Collection;
 
 /**
  * A collection of glyphs for rendering. 
@@ -91,5 +93,60 @@ public interface Glyphset<G,I> extends Iterable<Glyph<G,I>> {
 		/**Return the item at the specified index.**/
 		public Glyph<G,I> get(long l);
 	}
+	
+	/**Glyphsets that can cheaply exclude items that fall outside of a region.
+	 * 
+	 * Restriction is conservative: every item that touches the region must 
+	 * be in the result, but items that do not touch the region may also be included.
+	 * This lets implementations skip whole blocks of items (based on summary information
+	 * such as block bounds) without examining the individual items. 
+	 */
+	public static interface Cullable<G,I> extends Glyphset<G,I> {
+		/**Return a glyphset that includes (at least) all items that touch the region.**/
+		public Glyphset<G,I> restrict(Rectangle2D region);
+	}
+	
+	/**Glyphsets that items can be added to.
+	 * 
+	 * Loading a batch with "addAll" lets implementations build their internal
+	 * structures once for the whole batch (in parallel, where possible)
+	 * instead of adjusting them after every item.  Loaders should prefer
+	 * addAll over repeated calls to add when the items are available together.
+	 */
+	public static interface Loadable<G,I> extends Glyphset<G,I> {
+		/**Add a single item.**/
+		public void add(Glyph<G,I> glyph);
+		
+		/**Add all of the items of the batch.**/
+		public void addAll(Collection<? extends Glyph<G,I>> glyphs);
+	}
+	
+	/**Random-access glyphsets that can supply the positions of point glyphs without making glyphs.
+	 * 
+	 * Selectors that only need positions (see TouchesPixel.Points) read them in batches
+	 * to avoid allocating a glyph and a point for every item.
+	 */
+	public static interface Positions<G,I> extends RandomAccess<G,I> {
+		/**Copy the positions of items start (inclusive) to start+n (exclusive) into target as x, y pairs.
+		 * @return False (and target is not modified) if positions cannot be read directly (e.g., the glyphs are not points) 
+		 */
+		public boolean positions(long start, int n, double[] target);
+		
+		/**Value of item i (the same as get(i).info()).**/
+		public I value(long i);
+	}
+	
+	/**Random-access glyphsets of lines that can supply coordinates without making glyphs.
+	 * 
+	 * Selectors that only need the endpoints (see TouchesPixel.Lines) use this
+	 * to avoid allocating a glyph and a line for every item.
+	 */
+	public static interface Endpoints<I> extends RandomAccess<Line2D,I> {
+		/**Copy the endpoints of item i into target as x1, y1, x2, y2.**/
+		public void endpoints(long i, double[] target);
+		
+		/**Value of item i (the same as get(i).info()).**/
+		public I value(long i);
+	}
 
 }
@@ -5,6 +5,7 @@ import java.io.Serializable;
 
 import ar.renderers.ProgressReporter;
 import ar.Selector;
+import ar.util.Util;
 
 /**A renderer implements a strategy for converting glyphs (geometry+data) into images.
  * Strategies can include parallelization, different iterations orders, synch/asynch return, 
@@ -48,6 +49,24 @@ public interface Renderer extends Serializable {
 	public <IN,OUT> Aggregates<OUT> transfer(Aggregates<? extends IN> aggregates, Transfer.ItemWise<IN, OUT> t);
 
 	
+	/**Reduce a set of aggregates to a single value with this renderer's strategy.
+	 * 
+	 * Combine folds aggregate values into partial results and rollup merges partial results, 
+	 * so the aggregator's rollup must be associative and its identity must be an identity for rollup.
+	 * 
+	 * @param aggregates Values to reduce
+	 * @param op Identity, combine and rollup for the reduction
+	 * @return The reduced value (the identity if the aggregates are empty)
+	 */
+	public <IN,OUT> OUT reduce(Aggregates<? extends IN> aggregates, Aggregator<IN,OUT> op);
+
+
+	/**Summary statistics of a set of numeric aggregates, computed with this renderer's strategy.
+	 * See Util.stats for the treatment of nulls, NaNs and infinity.
+	 */
+	public <N extends Number> Util.Stats<N> stats(Aggregates<? extends N> aggregates, boolean ignoreNulls, boolean ignoreNaNs, boolean ignoreInfinity);
+
+	
 	/**For monitoring long-running render operations, this method provides a simple monitoring interface.
 	 * Progress and progress reporting/recording are left up to the renderer to define.  This method may
 	 * return -1 if progress is not being kept by the particular renderer.  Progress reports may be
@@ -84,5 +84,16 @@ public interface Transfer<IN,OUT> extends Serializable {
 		public OUT at(int x, int y, Aggregates<? extends IN> aggregates);
 	}
 	
+	/**Item-wise transfer to colors that can produce packed colors directly.
+	 * 
+	 * When the result is a ColorAggregates, renderers store the packed value 
+	 * in the backing array instead of calling "at", so no Color is made per item.
+	 * "argb" and "at" must agree (argb(x,y,a) == at(x,y,a).getRGB()).
+	 */
+	public static interface ARGB<IN> extends ItemWise<IN, java.awt.Color> {
+		/**Color at X/Y, packed as in Color.getRGB.**/
+		public int argb(int x, int y, Aggregates<? extends IN> aggregates);
+	}
+	
 
 }
@@ -1,9 +1,13 @@
 package ar.aggregates;
 
 import java.awt.Color;
-import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
 import ar.Aggregates;
 import ar.aggregates.implementations.*;
@@ -21,24 +25,41 @@ public class AggregateUtils {
 		return new Rectangle(aggs.lowX(), aggs.lowY(), aggs.highX()-aggs.lowX(), aggs.highY()-aggs.lowY());
 	}
 	
-	/**From a set of color aggregates, make a new image.**/
+	/**From a set of color aggregates, make an image.
+	 * 
+	 * For ColorAggregates, the image is a view of the aggregates (see ColorAggregates.view),
+	 * so later changes to the aggregates show in the image.
+	 * Otherwise, colors are gathered into a new packed array that the image wraps.
+	 **/
 	public static BufferedImage asImage(Aggregates<? extends Color> aggs, int width, int height, Color background) {
-		if (aggs instanceof ColorAggregates) {return ((ColorAggregates) aggs).image();}
+		if (aggs instanceof ColorAggregates) {return ((ColorAggregates) aggs).view();}
 		
-		BufferedImage i = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-		Graphics g = i.getGraphics();
-		g.setColor(background);
-		g.fillRect(0, 0, width, height);
-		g.dispose();
-		for (int x=Math.max(0, aggs.lowX()); x<Math.min(width, aggs.highX()); x++) {
-			for (int y=Math.max(0, aggs.lowY()); y<Math.min(height, aggs.highY()); y++) {
+		int[] argb = new int[width*height];
+		Arrays.fill(argb, background.getRGB());
+		for (int y=Math.max(0, aggs.lowY()); y<Math.min(height, aggs.highY()); y++) {
+			for (int x=Math.max(0, aggs.lowX()); x<Math.min(width, aggs.highX()); x++) {
 				Color c = aggs.get(x, y);
-				if (c != null) {i.setRGB(x, y, c.getRGB());}			
+				if (c != null) {argb[y*width+x] = c.getRGB();}			
 			}			
 		}
-		return i;
+		return image(argb, width, height);
 	}
 
+	/**Make an image backed directly by the given colors (no copy is made).
+	 * 
+	 * @param argb Colors in row-major order, packed as in Color.getRGB
+	 * @param width Image width (row length in argb)
+	 * @param height Image height
+	 * @return An image of TYPE_INT_ARGB that shares argb as its pixel storage
+	 */
+	public static BufferedImage image(int[] argb, int width, int height) {
+		DataBufferInt buffer = new DataBufferInt(argb, width*height);
+		WritableRaster raster = Raster.createPackedRaster(buffer, width, height, width, ARGB_MASKS, null);
+		return new BufferedImage(ColorModel.getRGBdefault(), raster, false, null);
+	}
+	
+	private static final int[] ARGB_MASKS = {0x00FF0000, 0x0000FF00, 0x000000FF, 0xFF000000};
+
 	public static <A> Aggregates<A> make(Aggregates<?> like, A defVal) {return make(like.lowX(), like.lowY(), like.highX(), like.highY(),defVal);}
 
 	public static <A> Aggregates<A> make(int width, int height, A defVal) {return make(0,0,width,height,defVal);}
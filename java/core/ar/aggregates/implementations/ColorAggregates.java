@@ -5,6 +5,7 @@ import java.awt.image.BufferedImage;
 import java.util.Iterator;
 
 import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
 import ar.aggregates.Iterator2D;
 
 /**Set of colors, with extra tools for creating images.**/
@@ -32,15 +33,30 @@ public class ColorAggregates extends IntegerBackingAggregates implements Aggrega
 	public void set(int x, int y, Color val) {
 		super.set(x, y, val.getRGB());
 	}
+
+	/**Color at x/y, packed as in Color.getRGB (and without making a Color).**/
+	public int getARGB(int x, int y) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return defVal;}
+		return values[AggregateUtils.idx(x,y, lowX, lowY, highX, highY)];
+	}
+
+	/**Set the color at x/y from its packed (Color.getRGB) form.**/
+	public void setARGB(int x, int y, int argb) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+		values[AggregateUtils.idx(x,y, lowX, lowY, highX, highY)] = argb;
+	}
+
 	public Iterator<Color> iterator() {return new Iterator2D<>(this);};
 	public Color defaultValue() {return background;}
 
+	/**Copy of the colors as an image.**/
 	public BufferedImage image() {
-		int w = highX-lowX;
-		int h = highY-lowY;
-		BufferedImage img = new BufferedImage(w,h, BufferedImage.TYPE_INT_ARGB);
-		img.setRGB(0, 0, w, h, values, 0, w);
-		
-		return img;
+		return AggregateUtils.image(values.clone(), highX-lowX, highY-lowY);
+	}
+
+	/**Image that shares this set's storage (no copy is made).
+	 * Changes to the aggregates show in the image, and vice versa.**/
+	public BufferedImage view() {
+		return AggregateUtils.image(values, highX-lowX, highY-lowY);
 	}
 }
@@ -7,7 +7,7 @@ import ar.Aggregates;
 import ar.aggregates.Iterator2D;
 
 /**Set of color aggregates backed by a buffered image.**/
-public class DoubleAggregates implements Aggregates<Double> {
+public class DoubleAggregates implements Aggregates.Numeric<Double> {
 	private final double[] values;
 	private final Double defVal;
 	private final int lowX, lowY, highX, highY;
@@ -29,6 +29,11 @@ public class DoubleAggregates implements Aggregates<Double> {
 		return values[idx(x,y)];
 	}
 
+	public double getDouble(int x, int y) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return defVal;}
+		return values[idx(x,y)];
+	}
+
 	public void set(int x, int y, Double val) {
 		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
 		values[idx(x,y)] = val;
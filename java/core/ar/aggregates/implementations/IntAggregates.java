@@ -3,15 +3,20 @@ package ar.aggregates.implementations;
 import java.util.Iterator;
 
 import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
 import ar.aggregates.Iterator2D;
 
 /**Set of color aggregates backed by a buffered image.**/
-public class IntAggregates extends IntegerBackingAggregates implements Aggregates<Integer> {
+public class IntAggregates extends IntegerBackingAggregates implements Aggregates.Numeric<Integer> {
 	public IntAggregates(int lowX,int lowY, int highX, int highY, int defVal) {
 		super(lowX, lowY, highX, highY, defVal);
 	}
 
 	public Iterator<Integer> iterator() {return new Iterator2D<>(this);}
 	public Integer get(int x, int y) {return super.getInt(x, y);}
+	public double getDouble(int x, int y) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return defVal;}
+		return values[AggregateUtils.idx(x,y, lowX, lowY, highX, highY)];
+	}
 	public Integer defaultValue() {return super.defaultInt();}
 }
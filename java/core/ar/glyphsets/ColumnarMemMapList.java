@@ -0,0 +1,139 @@
+package ar.glyphsets;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import ar.Glyph;
+import ar.Glyphset;
+import ar.glyphsets.implicitgeometry.ColumnarEncoding;
+import ar.glyphsets.implicitgeometry.Indexed;
+import ar.glyphsets.implicitgeometry.Shaper;
+import ar.glyphsets.implicitgeometry.Valuer;
+import ar.util.Util;
+import ar.util.memoryMapping.ChunkedFileByteBuffer;
+import ar.util.memoryMapping.ColumnarEncoder;
+import ar.util.memoryMapping.MemMapEncoder.TYPE;
+import ar.util.memoryMapping.ZoneMap;
+
+/**Implicit geometry, sequentially arranged glyphset backed by a memory-mapped columnar file.
+ *
+ * The file must be in the columnar, chunked format produced by the ColumnarEncoder.
+ * The file is mapped once and values are read lazily, so only the
+ * columns used by the shaper/valuer are actually paged in.
+ *
+ * Each chunk carries per-column statistics.  When the shaper is Shaper.SafeApproximate,
+ * those statistics give a bounding box for each chunk and the "restrict" method
+ * can produce a glyphset that omits the chunks that miss a region of interest
+ * (without touching the pages of the omitted chunks).  Renderers use this
+ * (see Glyphset.Cullable) to skip chunks outside of the viewport.
+ *
+ * Segments share the file mapping, so any number of segments can be used concurrently.
+ *
+ * @param <G> Geometry type
+ * @param <I> Info type
+ */
+public class ColumnarMemMapList<G,I> implements Glyphset.RandomAccess<G,I>, Glyphset.Cullable<G,I> {
+	private final ChunkedFileByteBuffer buffer;
+	private final ColumnarEncoder.Header header;
+	private final Shaper<G,Indexed> shaper;
+	private final Valuer<Indexed,I> valuer;
+	private final Rectangle2D[] chunkBounds;
+	private final long low, high;
+	private Rectangle2D bounds;
+
+	/**Open the given columnar file.**/
+	public ColumnarMemMapList(File source, Shaper<G,Indexed> shaper, Valuer<Indexed,I> valuer) {
+		try {this.buffer = new ChunkedFileByteBuffer(source);}
+		catch (IOException e) {throw new RuntimeException("Error constructing buffer for columnar mem-mapped list.", e);}
+
+		this.header = ColumnarEncoder.Header.from(buffer);
+		this.shaper = shaper;
+		this.valuer = valuer;
+		this.low = 0;
+		this.high = header.recordCount;
+
+		this.chunkBounds = zones().bounds(shaper);
+	}
+
+	private ColumnarMemMapList(ColumnarMemMapList<G,I> source, long low, long high) {
+		this.buffer = source.buffer;
+		this.header = source.header;
+		this.shaper = source.shaper;
+		this.valuer = source.valuer;
+		this.chunkBounds = source.chunkBounds;
+		this.low = low;
+		this.high = high;
+	}
+
+	/**Chunk statistics presented as a zone map (one zone per chunk).**/
+	public ZoneMap zones() {return new ZoneMap(header.chunkRecords, header.recordCount, header.types, header.chunkMin, header.chunkMax);}
+
+	@Override
+	public Glyph<G,I> get(long i) {
+		Indexed entry = entryAt(low+i);
+		return new SimpleGlyph<G,I>(shaper.shape(entry), valuer.value(entry));
+	}
+
+	/**Record at the given index of the file.**/
+	protected Indexed entryAt(long record) {
+		int chunk = (int) (record/header.chunkRecords);
+		long row = record - (((long) chunk) * header.chunkRecords);
+		return new ColumnarEncoding(header.types, header.columnOffsets[chunk], buffer, row);
+	}
+
+	/**Header (including the chunk directory) of the backing file.**/
+	public ColumnarEncoder.Header header() {return header;}
+
+	/**Bounds of the given chunk; null if the shaper is not Shaper.SafeApproximate.**/
+	public Rectangle2D chunkBounds(int chunk) {return chunkBounds == null ? null : chunkBounds[chunk];}
+
+	/**Valuer being used to establish a value for each entry.**/
+	public Valuer<Indexed,I> valuer() {return valuer;}
+
+	/**Shaper being used to provide geometry for each entry.**/
+	public Shaper<G,Indexed> shaper() {return shaper;}
+
+	/**Types array used for conversions on read-out.**/
+	public TYPE[] types() {return header.types;}
+
+	public boolean isEmpty() {return high <= low;}
+	public long size() {return high-low;}
+	public long segments() {return size();}
+	public Iterator<Glyph<G,I>> iterator() {return new GlyphsetIterator<G,I>(this);}
+
+	@Override
+	public Glyphset<G,I> segment(long bottom, long top) throws IllegalArgumentException {
+		return new ColumnarMemMapList<>(this, low+bottom, low+top);
+	}
+
+	private int firstChunk() {return (int) (low/header.chunkRecords);}
+	private int lastChunk() {return (int) ((Math.max(low, high-1))/header.chunkRecords);}
+
+	@Override
+	public Rectangle2D bounds() {
+		if (bounds == null) {
+			if (chunkBounds != null) {
+				Rectangle2D acc = new Rectangle2D.Double(0,0,-1,-1);
+				for (int c=firstChunk(); c<=lastChunk() && c<chunkBounds.length; c++) {Util.add(acc, chunkBounds[c]);}
+				bounds = acc;
+			} else {
+				bounds = Util.bounds(this);
+			}
+		}
+		return bounds;
+	}
+
+	/**Glyphset of the chunks whose bounds intersect the given region.
+	 *
+	 * Chunks that do not intersect are omitted entirely, so none of their data is read.
+	 * Chunks that do intersect are returned whole (so some items may still fall outside the region).
+	 * If chunk bounds are not known (because the shaper is not Shaper.SafeApproximate),
+	 * this glyphset is returned unmodified.
+	 */
+	public Glyphset.RandomAccess<G,I> restrict(Rectangle2D region) {
+		if (chunkBounds == null) {return this;}
+		return GlyphRanges.restrict(this, low, high, header.chunkRecords, chunkBounds, region);
+	}
+}
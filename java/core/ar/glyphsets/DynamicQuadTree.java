@@ -7,6 +7,9 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import ar.Glyph;
 import ar.Glyphset;
@@ -36,9 +39,18 @@ import ar.util.Util;
  * The LeafNode vs. LeafQuad split is made so the decision to further divide the tree 
  * can be flexible and efficient.  A LeafNode may only have LeafQuads as its children.  
  * 
+ * Batches of items given to "addAll" (or "make") are bulk loaded: the tree is built top-down
+ * over the whole batch, splitting each node where adding the items one at a time would
+ * eventually split it, with the sub-trees of large nodes built in parallel.
+ * 
+ * Each node keeps its item count and tight bounds up to date as items are added,
+ * so size and bounds do not walk the tree.  Iteration streams through the leaves;
+ * only items that touch the shared edge of sibling quadrants (and so may be held
+ * more than once) are remembered to avoid returning them twice.
+ * 
  * **/
 
-public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
+public abstract class DynamicQuadTree<G,I> implements Glyphset.Loadable<G,I> {
 	/**Smallest quad that will be created.**/
 	public static double MIN_DIM = .001d;
 	
@@ -80,10 +92,23 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 	
 	/**How many items before exploring subdivisions.**/
 	protected final Rectangle2D concernBounds;
+	
+	/**Tight bounds of the items, extended as items are added.  Null until first requested.**/
+	private Rectangle2D bounds;
+
+	/**Thread-pool size for bulk loading.**/
+	private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 
 	/**Construct a dynamic quad tree for the given value type.*/
 	public static <G,I> DynamicQuadTree<G,I> make() {return new DynamicQuadTree.RootHolder<>();}
 
+	/**Construct a dynamic quad tree holding the given items (bulk loaded).**/
+	public static <G,I> DynamicQuadTree<G,I> make(Collection<? extends Glyph<G,I>> glyphs) {
+		DynamicQuadTree<G,I> tree = make();
+		tree.addAll(glyphs);
+		return tree;
+	}
+
 	protected DynamicQuadTree(Rectangle2D concernBounds) {
 		this.concernBounds = concernBounds;
 	}
@@ -95,13 +120,39 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 	 * Will always be equal to or smaller than concernBounds.
 	 * Where concernBounds is a statement of what may be, 
 	 * bounds is a statement of what is.**/
-	public abstract Rectangle2D bounds();
+	public Rectangle2D bounds() {
+		if (bounds == null) {bounds = computeBounds();}
+		return (Rectangle2D) bounds.clone();
+	}
+	
+	/**Bounds of the items, computed from the sub-tree (used to initialize the cached bounds).**/
+	protected abstract Rectangle2D computeBounds();
+	
+	/**Include a newly added item in the cached bounds.**/
+	protected void extend(Rectangle2D glyphBounds) {
+		if (bounds != null) {Util.add(bounds, glyphBounds);}
+	}
+	protected void extend(Glyph<G,I> glyph) {
+		if (bounds != null) {Util.add(bounds, Util.boundOne(glyph.shape()));}
+	}
 	
 	/**Add an item to the node's sub-tree**/
 	public abstract void add(Glyph<G,I> glyph);
 
+	/**Add a batch of items to the node's sub-tree.**/
+	public void addAll(Collection<? extends Glyph<G,I>> glyphs) {
+		for (Glyph<G,I> g: glyphs) {add(g);}
+	}
+
 	/**How many things are held in this sub-tree?**/
-	public long size() {return items().size();}
+	public long size() {
+		long count = 0;
+		for (Iterator<Glyph<G,I>> it = iterator(); it.hasNext(); it.next()) {count++;}
+		return count;
+	}
+	
+	/**Items of the sub-tree, without collecting them first.**/
+	public Iterator<Glyph<G,I>> iterator() {return new TreeIterator<>(this);}
 
 	/**What are the items of the sub-tree?**/
 	public Collection<Glyph<G,I> > items() {
@@ -137,9 +188,190 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 		return target;
 	}
 
-	private static <G,V> Glyphset<G,V> subset(DynamicQuadTree<G,V>[] glyphs, int bottom, int top) {
+	/**Build a sub-tree for a batch of items.
+	 * 
+	 * Items are referred to by position in shared glyph/bounds arrays, so partitioning
+	 * a node's items among its quadrants only copies indices.  A node becomes a leaf
+	 * under the same conditions LeafNode.doSplit uses to decline a split; otherwise it 
+	 * becomes an inner node and its items go to every quadrant they touch.
+	 */
+	private static final class BuildTask<G,V> extends RecursiveTask<DynamicQuadTree<G,V>> {
+		private static final long serialVersionUID = 1L;
+		
+		/**Nodes with fewer items than this build their sub-trees in the current thread.**/
+		private static final int TASK_SIZE = 10000;
+
+		private final Rectangle2D concern;
+		private final Glyph<G,V>[] glyphs;
+		private final Rectangle2D[] bounds;
+		private final int[] members;
+		
+		public BuildTask(Rectangle2D concern, Glyph<G,V>[] glyphs, Rectangle2D[] bounds, int[] members) {
+			this.concern = concern;
+			this.glyphs = glyphs;
+			this.bounds = bounds;
+			this.members = members;
+		}
+
+		@Override
+		protected DynamicQuadTree<G,V> compute() {
+			//Feathering keeps sub-quads from shrinking below MIN_DIM, so stop just above it
+			if (members.length <= LOADING 
+					|| Math.max(concern.getWidth(), concern.getHeight()) < 2*MIN_DIM) {return leaf();}
+
+			Subs subs = new Subs(concern);
+			int[][] parts = new int[subs.quads.length][members.length];
+			int[] counts = new int[subs.quads.length];
+			int[] unique = new int[subs.quads.length];
+			int spanning = 0;
+			for (int m: members) {
+				int hits = 0, last = -1;
+				for (int i=0; i<subs.quads.length; i++) {
+					if (subs.quads[i].intersects(bounds[m])) {parts[i][counts[i]++] = m; hits++; last=i;}
+				}
+				if (hits > 1) {spanning++;}
+				else if (hits == 1) {unique[last]++;}
+			}
+
+			boolean split = false;
+			for (int u: unique) {
+				if (u > LOADING && (u/(spanning+1) > CROSS_LOAD_FACTOR)) {split = true;}
+			}
+			if (!split) {return leaf();}
+
+			@SuppressWarnings({"unchecked","rawtypes"})
+			BuildTask<G,V>[] tasks = new BuildTask[subs.quads.length];
+			for (int i=0; i<tasks.length; i++) {
+				tasks[i] = new BuildTask<>(subs.quads[i], glyphs, bounds, Arrays.copyOf(parts[i], counts[i]));
+			}
+			parts = null;
+			
+			@SuppressWarnings({"unchecked","rawtypes"})
+			DynamicQuadTree<G,V>[] quads = new DynamicQuadTree[tasks.length];
+			if (members.length > TASK_SIZE) {
+				invokeAll(tasks);
+				for (int i=0; i<tasks.length; i++) {quads[i] = tasks[i].getRawResult();}
+			} else {
+				for (int i=0; i<tasks.length; i++) {quads[i] = tasks[i].compute();}
+			}
+			return new InnerNode<>(concern, quads, members.length);
+		}
+		
+		private LeafNode<G,V> leaf() {
+			List<Glyph<G,V>> items = new ArrayList<>(members.length);
+			for (int m: members) {items.add(glyphs[m]);}
+			return new LeafNode<>(concern, items);
+		}
+	}
+	
+	/**Build a tree over a batch of items.**/
+	private static <G,V> DynamicQuadTree<G,V> build(Collection<? extends Glyph<G,V>> items) {
+		@SuppressWarnings({"unchecked","rawtypes"})
+		Glyph<G,V>[] glyphs = items.toArray(new Glyph[items.size()]);
+		Rectangle2D[] bounds = new Rectangle2D[glyphs.length];
+		int[] members = new int[glyphs.length];
+		for (int i=0; i<glyphs.length; i++) {
+			bounds[i] = Util.boundOne(glyphs[i].shape());
+			members[i] = i;
+		}
+		return pool.invoke(new BuildTask<>(Util.bounds(bounds), glyphs, bounds, members));
+	}
+
+	/**Streaming iterator over the items of a sub-tree.
+	 * 
+	 * Nodes are visited depth first.  Alongside each node, the iterator tracks the region
+	 * where an item can only touch that node and none of its ancestors' other quadrants 
+	 * (the node's quadrant minus the overlap with its siblings, intersected down the path).
+	 * Items inside that region are held nowhere else in the sub-tree and are returned directly;
+	 * other items are recorded so they are returned once.  Segments carry the region of
+	 * each of their parts (see "subset"), so they are iterated the same way.
+	 */
+	private static final class TreeIterator<G,V> implements Iterator<Glyph<G,V>> {
+		private final List<DynamicQuadTree<G,V>> nodes = new ArrayList<>();
+		private final List<double[]> regions = new ArrayList<>();	//minX, minY, maxX, maxY of the node's unshared region
+		private final Collection<Glyph<G,V>> shared = new HashSet<>();
+		private List<Glyph<G,V>> items;
+		private double[] region;
+		private int at;
+		private Glyph<G,V> next;
+		
+		public TreeIterator(DynamicQuadTree<G,V> root) {
+			push(root, EVERYWHERE);
+		}
+		
+		private void push(DynamicQuadTree<G,V> node, double[] region) {
+			nodes.add(node);
+			regions.add(region);
+		}
+		
+		/**Region of quadrant q of an inner node, given the region of the inner node.
+		 * Uses the concern bounds the quadrants actually have, since items are placed by them
+		 * (after the tree grows up, these may differ slightly from the nominal sub-quads).**/
+		private static <G,V> double[] quadRegion(double[] region, InnerNode<G,V> node, int q) {
+			double[] r = region.clone();
+			DynamicQuadTree<G,V>[] quads = node.quads;
+			if (q == NW || q == SW) {r[2] = Math.min(r[2], quads[q == NW ? NE : SE].concernBounds.getMinX());}
+			else {r[0] = Math.max(r[0], quads[q == NE ? NW : SW].concernBounds.getMaxX());}
+			if (q == NW || q == NE) {r[3] = Math.min(r[3], quads[q == NW ? SW : SE].concernBounds.getMinY());}
+			else {r[1] = Math.max(r[1], quads[q == SW ? NW : NE].concernBounds.getMaxY());}
+			return r;
+		}
+		
+		public boolean hasNext() {
+			while (next == null) {
+				if (items != null && at < items.size()) {
+					Glyph<G,V> g = items.get(at++);
+					Rectangle2D b = Util.boundOne(g.shape());
+					if ((b.getMinX() >= region[0] && b.getMinY() >= region[1] && b.getMaxX() <= region[2] && b.getMaxY() <= region[3])
+							|| shared.add(g)) {
+						next = g;
+					}
+					continue;
+				}
+				if (nodes.isEmpty()) {return false;}
+				
+				DynamicQuadTree<G,V> node = nodes.remove(nodes.size()-1);
+				double[] r = regions.remove(regions.size()-1);
+				if (node instanceof LeafQuad) {
+					items = ((LeafQuad<G,V>) node).items;
+					region = r;
+					at = 0;
+				} else if (node instanceof LeafNode) {
+					for (LeafQuad<G,V> part: ((LeafNode<G,V>) node).parts) {push(part, r);}
+				} else if (node instanceof InnerNode) {
+					InnerNode<G,V> inner = (InnerNode<G,V>) node;
+					if (inner.regions != null) {
+						for (int q=0; q<inner.quads.length; q++) {push(inner.quads[q], inner.regions[q]);}
+					} else {
+						for (int q=0; q<inner.quads.length; q++) {push(inner.quads[q], quadRegion(r, inner, q));}
+					}
+				} else if (node instanceof RootHolder) {
+					push(((RootHolder<G,V>) node).child, r);
+				}
+			}
+			return true;
+		}
+
+		public Glyph<G,V> next() {
+			if (!hasNext()) {throw new NoSuchElementException();}
+			Glyph<G,V> g = next;
+			next = null;
+			return g;
+		}
+
+		public void remove() {throw new UnsupportedOperationException();}
+	}
+
+	/**Unshared region of the root of a (sub-)tree: everything.**/
+	private static final double[] EVERYWHERE = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+
+	/**Segment holding some of the parts of a node.
+	 * @param regions Unshared region of each part (see TreeIterator)
+	 * @param count Number of distinct items in the segment; negative if not known
+	 */
+	private static <G,V> Glyphset<G,V> subset(DynamicQuadTree<G,V>[] glyphs, double[][] regions, int bottom, int top, long count) {
 		DynamicQuadTree<G,V>[] subset = Arrays.copyOfRange(glyphs, bottom, top);
-		return new InnerNode<G,V>(subset);
+		return new InnerNode<G,V>(subset, Arrays.copyOfRange(regions, bottom, top), count);
 	}
 	
 	@SuppressWarnings({ "unused", "rawtypes" })
@@ -194,6 +426,24 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 
 			child = DynamicQuadTree.addTo(child, glyph);
 		}
+
+		/**Bulk load the batch.  If the tree already holds more items than
+		 * the batch, the batch is added one item at a time instead; 
+		 * otherwise the tree is rebuilt over its items and the batch together.**/
+		public void addAll(Collection<? extends Glyph<G,V>> glyphs) {
+			if (glyphs.isEmpty()) {return;}
+			Collection<? extends Glyph<G,V>> all = glyphs;
+			if (!child.isEmpty()) {
+				Collection<Glyph<G,V>> existing = child.items();
+				if (existing.size() > glyphs.size()) {
+					for (Glyph<G,V> g: glyphs) {add(g);}
+					return;
+				}
+				existing.addAll(glyphs);
+				all = existing;
+			}
+			child = build(all);
+		}
 				
 		/**Grow the tree so it covers more area than it does currently.
 		 * The strategies are based on heuristics and have not been evaluated
@@ -230,32 +480,29 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 				//Non-leaf nodes are replaced with a quad of nodes
 				InnerNode<G,V> newChild = new InnerNode<G,V>(newBounds);
 				if (current.quads[NE] instanceof InnerNode) {
-					newChild.quads[NE] =new InnerNode<G,V>(newChild.quads[NE].concernBounds());
-					((InnerNode<G,V>) newChild.quads[NE]).quads[SW] = current.quads[NE];
+					newChild.quads[NE] = InnerNode.around(newChild.quads[NE].concernBounds(), SW, current.quads[NE]);
 				} else if (!current.quads[NE].isEmpty()) {
 					newChild.quads[NE] = new LeafNode<G,V>(newChild.quads[NE].concernBounds(), (LeafNode<G,V>) current.quads[NE]);
 				}
 	
 				if (current.quads[NW] instanceof InnerNode) {
-					newChild.quads[NW] = new InnerNode<G,V>(newChild.quads[NW].concernBounds());
-					((InnerNode<G,V>) newChild.quads[NW]).quads[SE] = current.quads[NW];
+					newChild.quads[NW] = InnerNode.around(newChild.quads[NW].concernBounds(), SE, current.quads[NW]);
 				} else if (!current.quads[NW].isEmpty()) {
 					newChild.quads[NW] = new LeafNode<G,V>(newChild.quads[NW].concernBounds(), (LeafNode<G,V>) current.quads[NW]);
 				}
 	
 				if (current.quads[SW] instanceof InnerNode) {
-					newChild.quads[SW] = new InnerNode<G,V>(newChild.quads[SW].concernBounds());
-					((InnerNode<G,V>) newChild.quads[SW]).quads[NE] = current.quads[SW];
+					newChild.quads[SW] = InnerNode.around(newChild.quads[SW].concernBounds(), NE, current.quads[SW]);
 				} else if (!current.quads[SW].isEmpty()) {
 					newChild.quads[SW] = new LeafNode<G,V>(newChild.quads[SW].concernBounds(), (LeafNode<G,V>) current.quads[SW]);
 				}
 	
 				if (current.quads[SE] instanceof InnerNode) {
-					newChild.quads[SE] = new InnerNode<G,V>(newChild.quads[SE].concernBounds());
-					((InnerNode<G,V>) newChild.quads[SE]).quads[NW] = current.quads[SE];
+					newChild.quads[SE] = InnerNode.around(newChild.quads[SE].concernBounds(), NW, current.quads[SE]);
 				} else if (!current.quads[SE].isEmpty()) {
 					newChild.quads[SE] = new LeafNode<G,V>(newChild.quads[SE].concernBounds(), (LeafNode<G,V>) current.quads[SE]);
 				}
+				newChild.count = current.size();
 				return newChild;
 			} else {
 				double x,y;
@@ -278,25 +525,30 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 				} else {throw new RuntimeException("Growing up encountered unexpected out-code:" + outCode);}
 
 				Rectangle2D newBounds =new Rectangle2D.Double(x,y,currentBounds.getWidth()*2.0d,currentBounds.getHeight()*2.0d);
-				InnerNode<G,V> newChild = new InnerNode<G,V>(newBounds);
-				newChild.quads[replace] = current;
-				return newChild;
+				return InnerNode.around(newBounds, replace, current);
 			}
 		}
 
 		public boolean isEmpty() {return child.isEmpty();}
 		public Rectangle2D concernBounds() {return child.concernBounds();}
 		public Rectangle2D bounds() {return child.bounds();}
+		protected Rectangle2D computeBounds() {return child.bounds();}
+		public long size() {return child.size();}
 		public void items(Collection<Glyph<G,V>> collector) {child.items(collector);}
 		public void intersects(Rectangle2D pixel, Collection<Glyph<G,V>> collector) {child.intersects(pixel, collector);}
 		public String toString(int indent) {return child.toString(indent);}
 		public long segments() {return child.segments();}
 		public Glyphset<G,V> segment(long bottom, long top) {return child.segment(bottom, top);}
-		public Iterator<Glyph<G,V>> iterator() {return items().iterator();}
 	}
 
 	private static final class InnerNode<G,V> extends DynamicQuadTree<G,V> {
 		private final DynamicQuadTree<G,V>[] quads;
+		
+		/**Unshared region of each quad when this node is a segment (see "subset"); null for nodes of the tree.**/
+		private final double[][] regions;
+
+		/**Number of distinct items in the sub-tree; negative if not yet counted.**/
+		private long count;
 
 		/**Create a new InnerNode from an existing leaf node.
 		 * The quads of the leaf can be copied directly to the children of this node.
@@ -308,20 +560,38 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 				for (Glyph<G,V> g: source.quads[i].items) {quads[i].add(g);}
 			}
 			for (Glyph<G,V> g:source.spanningItems) {add(g);}
+			count = source.size();
 		}
 		
 		@SuppressWarnings("unchecked")
 		private InnerNode(Rectangle2D concernBounds) {
 			super(concernBounds);
 			quads = new DynamicQuadTree[4];
+			regions = null;
 			Subs subs = new Subs(concernBounds);
 			for (int i=0; i< subs.quads.length; i++) {
 				quads[i] = new DynamicQuadTree.LeafNode<G,V>(subs.quads[i]);
 			}
 		}
-		private InnerNode(DynamicQuadTree<G,V>[] parts) {
+		private InnerNode(Rectangle2D concernBounds, DynamicQuadTree<G,V>[] quads, long count) {
+			super(concernBounds);
+			this.quads = quads;
+			this.regions = null;
+			this.count = count;
+		}
+		private InnerNode(DynamicQuadTree<G,V>[] parts, double[][] regions, long count) {
 			super(null);
 			this.quads = parts;
+			this.regions = regions;
+			this.count = count;
+		}
+		
+		/**Node covering the given bounds with an existing sub-tree as one of its quadrants (used to grow the tree).**/
+		private static <G,V> InnerNode<G,V> around(Rectangle2D concernBounds, int quad, DynamicQuadTree<G,V> existing) {
+			InnerNode<G,V> node = new InnerNode<>(concernBounds);
+			node.quads[quad] = existing;
+			node.count = existing.size();
+			return node;
 		}
 
 		public void add(Glyph<G,V> glyph) {
@@ -336,7 +606,10 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 				}
 			}
 
-			if (!added && concernBounds.outcode(glyphBounds.getX(), glyphBounds.getY()) !=0) {
+			if (added) {
+				count++;
+				extend(glyphBounds);
+			} else if (concernBounds.outcode(glyphBounds.getX(), glyphBounds.getY()) !=0) {
 				throw new RuntimeException(String.format("Did not add glyph bounded %s to node with concern %s", glyphBounds, concernBounds));
 			}
 		}
@@ -347,6 +620,11 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 			}
 		}
 
+		public long size() {
+			if (count < 0) {count = super.size();}
+			return count;
+		}
+
 		public boolean isEmpty() {
 			for (DynamicQuadTree<G,V> q: quads) {if (!q.isEmpty()) {return false;}}
 			return true;
@@ -356,7 +634,7 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 			for (DynamicQuadTree<G,V> q: quads) {q.items(collector);}
 		}
 
-		public Rectangle2D bounds() {
+		protected Rectangle2D computeBounds() {
 			final Rectangle2D[] bounds = new Rectangle2D[quads.length];
 			for (int i=0; i<bounds.length; i++) {
 				bounds[i] = quads[i].bounds();
@@ -370,11 +648,21 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 			return String.format("%sNode: %d items\n", Util.indent(indent), size()) + b.toString();
 		}
 		public long segments() {return quads.length;}
+
+		/**Segments of a tree node are its quads, with the regions used when iterating the whole node.
+		 * A single quad holds each of its items once, so its count is known; 
+		 * quads that may share items are counted when first needed.
+		 */
 		public Glyphset<G,V> segment(long bottom, long top) {
-			return DynamicQuadTree.subset(quads, (int) bottom, (int) top);
-		}
-		public Iterator<Glyph<G,V>> iterator() {
-			return items().iterator();
+			double[][] regions = this.regions;
+			if (regions == null) {
+				regions = new double[quads.length][];
+				for (int q=0; q<quads.length; q++) {regions[q] = TreeIterator.quadRegion(EVERYWHERE, this, q);}
+			}
+			long count = -1;
+			if (bottom == 0 && top == quads.length) {count = size();}
+			else if (top-bottom == 1) {count = quads[(int) bottom].size();}
+			return DynamicQuadTree.subset(quads, regions, (int) bottom, (int) top, count);
 		}
 	}
 	
@@ -427,6 +715,7 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 			if (totalHits>1) {spanningItems.add(glyph);}
 			else {for (int i=0; i<hits.length;i++) {if (hits[i]) {quads[i].add(glyph);}}}
 			size++;
+			extend(glyphBounds);
 
 			if (totalHits ==0 && concernBounds.outcode(glyphBounds.getX(), glyphBounds.getY()) !=0) {
 				throw new RuntimeException(String.format("Did not add glyph bounded %s to node with concern %s", glyphBounds, concernBounds));
@@ -450,7 +739,7 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 		
 		public void intersects(Rectangle2D pixel, Collection<Glyph<G,V>> collector) {
 			for (DynamicQuadTree<G,V> q: quads) {
-				if (q.concernBounds.intersects(pixel)) {q.intersects(pixel, collector); break;}
+				if (q.concernBounds.intersects(pixel)) {q.intersects(pixel, collector);}
 			}
 			for (Glyph<G,V> g:spanningItems) {if (Util.intersects(pixel, g.shape())) {collector.add(g);}}
 		}
@@ -460,13 +749,11 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 			return spanningItems.size() == 0;
 		}
 
-		//Copy
-		public Rectangle2D bounds() {
-			final Rectangle2D[] bounds = new Rectangle2D[quads.length+1];
-			for (int i=0; i<quads.length; i++) {
-				bounds[i] = quads[i].bounds();
+		protected Rectangle2D computeBounds() {
+			final Rectangle2D[] bounds = new Rectangle2D[parts.length];
+			for (int i=0; i<parts.length; i++) {
+				bounds[i] = parts[i].bounds();
 			}
-			bounds[quads.length] = Util.bounds(spanningItems);
 			return Util.bounds(bounds);
 		}
 
@@ -477,10 +764,15 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 		}
 		
 		public long segments() {return parts.length;}
+
+		/**Each item of a leaf is held by exactly one of its parts, so counts add up.**/
 		public Glyphset<G,V> segment(long bottom, long top) {
-			return DynamicQuadTree.subset(parts, (int) bottom, (int) top);
+			double[][] regions = new double[parts.length][];
+			Arrays.fill(regions, EVERYWHERE);
+			long count = 0;
+			for (int i=(int) bottom; i<top; i++) {count += parts[i].size();}
+			return DynamicQuadTree.subset(parts, regions, (int) bottom, (int) top, count);
 		}
-		public Iterator<Glyph<G,V>> iterator() {return items().iterator();}
 
 	}	
 
@@ -499,13 +791,19 @@ public abstract class DynamicQuadTree<G,I> implements Glyphset<G,I> {
 		//Assumes the geometry check was done by the parent
 		public void add(Glyph<G,V> glyph) {
 			items.add(glyph);
+			extend(glyph);
 		}
 
 		public Rectangle2D concernBounds() {return concernBounds;}
 		public boolean isEmpty() {return items.isEmpty();}
 		public List<Glyph<G,V>> items() {return items;}
 		public String toString(int level) {return Util.indent(level) + "LeafQuad: " + items.size() + " items\n";}
-		public Rectangle2D bounds() {return Util.bounds(items);}
+		public long size() {return items.size();}
+		protected Rectangle2D computeBounds() {
+			Rectangle2D bounds = new Rectangle2D.Double(0,0,-1,-1);
+			for (Glyph<G,V> g: items) {Util.add(bounds, Util.boundOne(g.shape()));}
+			return bounds;
+		}
 		protected void items(Collection<Glyph<G,V>> collector) {collector.addAll(items);}
 		protected void intersects(Rectangle2D pixel, Collection<Glyph<G,V>> collector) {
 			for (Glyph<G,V> g: items) {if (Util.intersects(pixel, g.shape())) {collector.add(g);}}
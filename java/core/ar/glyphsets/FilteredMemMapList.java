@@ -0,0 +1,205 @@
+package ar.glyphsets;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import ar.Glyph;
+import ar.Glyphset;
+import ar.glyphsets.implicitgeometry.IndexedEncoding;
+import ar.glyphsets.implicitgeometry.RecordFilter;
+import ar.util.Util;
+import ar.util.memoryMapping.DatasetStats;
+import ar.util.memoryMapping.ZoneMap;
+
+/**Items of a memory mapped list that pass a record filter.
+ *
+ * The filter is evaluated on the encoded record before the glyph is made,
+ * so rejected records cost only the primitive reads the filter makes.
+ * If the list has a zone map, zones whose min/max values cannot pass the filter are
+ * skipped without reading any of their records; if it has stats and the whole file
+ * cannot pass, nothing is read at all.
+ *
+ * Segments are ranges of records of the backing list (before filtering), so segments
+ * may hold different numbers of items.  Size requires a scan of the (unskipped) records,
+ * so it is computed on request and cached.  Bounds are the union of the bounds of
+ * the live zones when zone bounds are available (like GlyphRanges.restrict, these may be larger than
+ * the bounds of the items); otherwise they are also found by a scan.
+ *
+ * Restricting to a region (see Glyphset.Cullable) combines the zone bounds with the filter.
+ */
+public class FilteredMemMapList<G,I> implements Glyphset.Cullable<G,I> {
+	/**Thread-pool size for parallel operations.**/
+	private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	private final MemMapList<G,I> base;
+	private final RecordFilter filter;
+	private final long low, high;
+	private final boolean[] liveZones;
+	private final int zoneRecords;
+	private long size = -1;
+	private Rectangle2D bounds;
+
+	/**Filter all of the records of a list.**/
+	public FilteredMemMapList(MemMapList<G,I> base, RecordFilter filter) {
+		this(base, filter, 0, base.size(), liveZones(base, filter, null));
+	}
+
+	private FilteredMemMapList(MemMapList<G,I> base, RecordFilter filter, long low, long high, boolean[] liveZones) {
+		this.base = base;
+		this.filter = filter;
+		this.low = low;
+		this.high = high;
+		this.liveZones = liveZones;
+		this.zoneRecords = base.zones() == null ? 0 : base.zones().zoneRecords();
+	}
+
+	/**Which zones might hold records that pass the filter (and touch the region, if one is given)?
+	 * @return Flag for each zone; null if there is no zone map.
+	 */
+	private static boolean[] liveZones(MemMapList<?,?> base, RecordFilter filter, Rectangle2D region) {
+		ZoneMap zones = base.zones();
+		DatasetStats stats = base.stats();
+		boolean all = true;
+		if (stats != null) {
+			int fields = stats.types().length;
+			double[] min = new double[fields], max = new double[fields];
+			for (int f=0; f<fields; f++) {min[f] = stats.min(f); max[f] = stats.max(f);}
+			all = filter.mayAccept(min, max);
+		}
+
+		if (zones == null) {return all ? null : new boolean[0];}
+
+		Rectangle2D[] zoneBounds = base.zoneBounds();
+		int fields = base.types().length;
+		double[] min = new double[fields], max = new double[fields];
+		boolean[] live = new boolean[zones.zones()];
+		for (int z=0; all && z<live.length; z++) {
+			for (int f=0; f<fields; f++) {min[f] = zones.min(z, f); max[f] = zones.max(z, f);}
+			live[z] = filter.mayAccept(min, max)
+					&& (region == null || zoneBounds == null || zoneBounds[z].intersects(region));
+		}
+		return live;
+	}
+
+	/**Filter being applied.**/
+	public RecordFilter filter() {return filter;}
+
+	public Glyphset<G,I> restrict(Rectangle2D region) {
+		if (base.zoneBounds() == null) {return this;}
+		return new FilteredMemMapList<>(base, filter, low, high, liveZones(base, filter, region));
+	}
+
+	public boolean isEmpty() {return !iterator().hasNext();}
+
+	public long size() {
+		if (size < 0) {scan();}
+		return size;
+	}
+
+	public Rectangle2D bounds() {
+		if (bounds != null) {return bounds;}
+		
+		Rectangle2D[] zoneBounds = base.zoneBounds();
+		if (liveZones == null || zoneBounds == null) {scan(); return bounds;}
+
+		Rectangle2D b = new Rectangle2D.Double(0,0,-1,-1);
+		if (zoneRecords > 0 && high > low) {
+			for (int z=(int) (low/zoneRecords); z<=(high-1)/zoneRecords && z<liveZones.length; z++) {
+				if (liveZones[z]) {Util.add(b, zoneBounds[z]);}
+			}
+		}
+		bounds = b;
+		return bounds;
+	}
+
+	private void scan() {
+		Summary s = pool.invoke(new ScanTask(low, high));
+		size = s.count;
+		if (bounds == null) {bounds = s.bounds;}
+	}
+
+	public long segments() {return high-low;}
+
+	public Glyphset<G,I> segment(long bottom, long top) throws IllegalArgumentException {
+		return new FilteredMemMapList<>(base, filter, low+bottom, low+top, liveZones);
+	}
+
+	public Iterator<Glyph<G,I>> iterator() {return new FilterIterator();}
+
+	/**Walks the records in range, skipping dead zones and records that fail the filter.**/
+	private final class FilterIterator implements Iterator<Glyph<G,I>> {
+		private final IndexedEncoding cursor = base.entryAt(0);
+		private long at = low;
+		private long zoneEnd = low;
+		private Glyph<G,I> next;
+
+		public boolean hasNext() {
+			while (next == null && at < high) {
+				if (at >= zoneEnd) {
+					if (liveZones == null) {zoneEnd = high;}
+					else if (zoneRecords == 0) {at = high; continue;} //No zones, but nothing can pass
+					else {
+						int z = (int) (at/zoneRecords);
+						zoneEnd = Math.min(high, ((long) z+1)*zoneRecords);
+						if (z >= liveZones.length || !liveZones[z]) {at = zoneEnd; continue;}
+					}
+				}
+				long record = at++;
+				cursor.moveTo(base.recordOffset(record));
+				if (filter.accept(cursor)) {next = base.get(record);}
+			}
+			return next != null;
+		}
+
+		public Glyph<G,I> next() {
+			if (!hasNext()) {throw new NoSuchElementException();}
+			Glyph<G,I> g = next;
+			next = null;
+			return g;
+		}
+
+		public void remove() {throw new UnsupportedOperationException();}
+	}
+
+	private static final class Summary {
+		final long count;
+		final Rectangle2D bounds;
+		public Summary(long count, Rectangle2D bounds) {this.count = count; this.bounds = bounds;}
+	}
+
+	private final class ScanTask extends RecursiveTask<Summary> {
+		public static final long serialVersionUID = 1L;
+		private static final int TASK_SIZE = 100000;
+		private final long low, high;
+
+		public ScanTask(long low, long high) {
+			this.low = low;
+			this.high = high;
+		}
+
+		@Override
+		protected Summary compute() {
+			if (high-low > TASK_SIZE) {
+				long mid = low+((high-low)/2);
+				ScanTask top = new ScanTask(low, mid);
+				ScanTask bottom = new ScanTask(mid, high);
+				invokeAll(top, bottom);
+				Summary a = top.getRawResult(), b = bottom.getRawResult();
+				return new Summary(a.count+b.count, Util.bounds(a.bounds, b.bounds));
+			}
+
+			Rectangle2D bounds = new Rectangle2D.Double(0,0,-1,-1);
+			long count = 0;
+			Glyphset<G,I> glyphs = new FilteredMemMapList<>(base, filter, low, high, liveZones);
+			for (Glyph<G,I> g: glyphs) {
+				Rectangle2D bound = Util.boundOne(g.shape());
+				if (bound != null) {Util.add(bounds, bound);}
+				count++;
+			}
+			return new Summary(count, bounds);
+		}
+	}
+}
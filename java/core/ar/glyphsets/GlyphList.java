@@ -18,7 +18,7 @@ import ar.util.Util;
  * @author jcottam
  *
  */
-public class GlyphList<G,I> implements Glyphset.RandomAccess<G,I> {
+public class GlyphList<G,I> implements Glyphset.RandomAccess<G,I>, Glyphset.Loadable<G,I> {
 	protected final List<Glyph<G,I>> glyphs = new ArrayList<Glyph<G,I>>();
 	protected Rectangle2D bounds;
 	
@@ -29,6 +29,10 @@ public class GlyphList<G,I> implements Glyphset.RandomAccess<G,I> {
 		for (Glyph<G,I> g: newGlyphs) {glyphs.add(g);}
 		bounds = null;
 	}
+	public void addAll(Collection<? extends Glyph<G,I>> newGlyphs) {
+		glyphs.addAll(newGlyphs);
+		bounds = null;
+	}
 	
 	public long size() {return glyphs.size();}
 	public Glyph<G,I> get(long i) {
@@ -0,0 +1,130 @@
+package ar.glyphsets;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import ar.Glyph;
+import ar.Glyphset;
+import ar.util.Util;
+
+/**Subset of a random-access glyphset made of several contiguous ranges.
+ *
+ * Used to present only some parts of a larger glyphset (for example,
+ * only the chunks of a file that intersect the viewport) as a single glyphset.
+ * Indices are "compacted" so index zero is the first item of the first range,
+ * and the first item of the second range immediately follows the last item of the first range.
+ *
+ * A segment that falls entirely in one range is delegated to the backing glyphset's segment method.
+ */
+public class GlyphRanges<G,I> implements Glyphset.RandomAccess<G,I> {
+	private final Glyphset.RandomAccess<G,I> base;
+	private final long[] starts;
+	private final long[] ends;
+	private final long[] offsets; //Compacted index of the first item of each range
+	private final long size;
+	private Rectangle2D bounds;
+
+	/**
+	 * @param base Glyphset to take ranges from
+	 * @param starts Inclusive start of each range (in the base glyphset), in ascending order
+	 * @param ends Exclusive end of each range (in the base glyphset)
+	 * @param bounds Bounds of the ranges (may be null, in which case they are computed on request)
+	 */
+	public GlyphRanges(Glyphset.RandomAccess<G,I> base, long[] starts, long[] ends, Rectangle2D bounds) {
+		if (starts.length != ends.length) {throw new IllegalArgumentException("Must supply the same number of starts and ends.");}
+		this.base = base;
+		this.starts = starts;
+		this.ends = ends;
+		this.bounds = bounds;
+		this.offsets = new long[starts.length];
+		long acc = 0;
+		for (int i=0; i<starts.length; i++) {
+			offsets[i] = acc;
+			acc += ends[i]-starts[i];
+		}
+		this.size = acc;
+	}
+
+	/**Restrict a range of a glyphset to the zones whose bounds intersect a region.
+	 * 
+	 * Zone z covers items [z*zoneSize, (z+1)*zoneSize) of the base glyphset.
+	 * Adjacent intersecting zones are merged into a single range.
+	 * 
+	 * @param base Glyphset being restricted
+	 * @param low Inclusive start of the range of base under consideration
+	 * @param high Exclusive end of the range of base under consideration
+	 * @param zoneSize Number of items in each zone
+	 * @param zoneBounds Bounds of each zone
+	 * @param region Region of interest
+	 * @return Glyphset of the intersecting zones, indexed relative to low
+	 */
+	public static <G,I> Glyphset.RandomAccess<G,I> restrict(
+			Glyphset.RandomAccess<G,I> base, long low, long high, 
+			long zoneSize, Rectangle2D[] zoneBounds, Rectangle2D region) {
+		
+		int first = (int) (low/zoneSize);
+		int last = (int) (Math.max(low, high-1)/zoneSize);
+		long[] starts = new long[last-first+1];
+		long[] ends = new long[last-first+1];
+		int ranges = 0;
+		Rectangle2D bounds = new Rectangle2D.Double(0,0,-1,-1);
+		
+		for (int z=first; z<=last && z<zoneBounds.length; z++) {
+			if (!zoneBounds[z].intersects(region)) {continue;}
+			long start = Math.max(low, z*zoneSize) - low;
+			long end = Math.min(high, (z+1)*zoneSize) - low;
+			if (ranges > 0 && ends[ranges-1] == start) {ends[ranges-1] = end;}
+			else {starts[ranges] = start; ends[ranges] = end; ranges++;}
+			Util.add(bounds, zoneBounds[z]);
+		}
+		
+		if (ranges == 1 && starts[0] == 0 && ends[0] == high-low) {return base;}
+		return new GlyphRanges<>(base, Arrays.copyOf(starts, ranges), Arrays.copyOf(ends, ranges), bounds);
+	}
+
+	/**Which range holds the given compacted index?**/
+	private int range(long i) {
+		int r = Arrays.binarySearch(offsets, i);
+		if (r < 0) {r = -r-2;}
+		while (r < offsets.length-1 && offsets[r+1] == i) {r++;} //Skip empty ranges
+		return r;
+	}
+
+	@Override
+	public Glyph<G,I> get(long i) {
+		int r = range(i);
+		return base.get(starts[r] + (i-offsets[r]));
+	}
+
+	public Iterator<Glyph<G,I>> iterator() {return new GlyphsetIterator<>(this);}
+	public boolean isEmpty() {return size == 0;}
+	public long size() {return size;}
+	public long segments() {return size;}
+
+	public Rectangle2D bounds() {
+		if (bounds == null) {bounds = Util.bounds(this);}
+		return bounds;
+	}
+
+	/**How many ranges are in this subset?**/
+	public int ranges() {return starts.length;}
+
+	@Override
+	public Glyphset<G,I> segment(long bottom, long top) throws IllegalArgumentException {
+		if (top <= bottom) {return new GlyphRanges<>(base, new long[0], new long[0], null);}
+		int low = range(bottom);
+		int high = range(top-1);
+		if (low == high) {
+			long start = starts[low] + (bottom-offsets[low]);
+			return base.segment(start, start + (top-bottom));
+		}
+
+		int count = high-low+1;
+		long[] newStarts = Arrays.copyOfRange(starts, low, high+1);
+		long[] newEnds = Arrays.copyOfRange(ends, low, high+1);
+		newStarts[0] = starts[low] + (bottom-offsets[low]);
+		newEnds[count-1] = starts[high] + (top-offsets[high]);
+		return new GlyphRanges<>(base, newStarts, newEnds, null);
+	}
+}
@@ -0,0 +1,173 @@
+package ar.glyphsets;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import ar.Glyph;
+import ar.Glyphset;
+import ar.glyphsets.implicitgeometry.Indexed;
+import ar.glyphsets.implicitgeometry.IndexedEncoding;
+import ar.glyphsets.implicitgeometry.Valuer;
+import ar.util.memoryMapping.ChunkedFileByteBuffer;
+import ar.util.memoryMapping.MappedFile;
+import ar.util.memoryMapping.MemMapEncoder;
+
+/**Implicit geometry glyphset of graph edges, joining a memory-mapped edge list to memory-mapped node positions.
+ *
+ * Both files are hbin files (see MemMapEncoder).  Each record of the edge file holds
+ * the ids of the source and target nodes; node ids are record numbers in the node file
+ * and each record of the node file holds the position of that node.
+ * Endpoints are looked up when requested, so no geometry is stored;
+ * memory use is independent of the number of edges.
+ *
+ * Line selectors can get the endpoints directly (see Glyphset.Endpoints)
+ * instead of through a glyph, so no objects are made per edge when rendering
+ * (provided the valuer does not make them).
+ *
+ * Bounds are the bounds of the node positions, so they include any nodes without edges.
+ *
+ * This is class is NOT thread-safe.  However, segments share the mapped files
+ * but not the read cursors, so segments can be used concurrently.
+ */
+public class MemMapEdges<I> implements Glyphset.Endpoints<I> {
+	private final File edgeSource, nodeSource;
+	private final MappedFile edgeBuffer, nodeBuffer;
+	private final MemMapEncoder.Header edgeHeader, nodeHeader;
+	private final int sourceField, targetField, xField, yField;
+	private final Valuer<Indexed,I> valuer;
+	private final long nodeCount;
+	private final long low, high;
+	private final Rectangle2D bounds;
+
+	private final IndexedEncoding edge, node;
+
+	/**Edges with source/target ids in the first two fields of the edge file
+	 * and x/y in the first two fields of the node file.**/
+	public MemMapEdges(File edges, File nodes, Valuer<Indexed,I> valuer) throws IOException {
+		this(edges, 0, 1, nodes, 0, 1, valuer);
+	}
+
+	/**
+	 * @param edges Edge list file
+	 * @param sourceField Field of the edge records with the source node id
+	 * @param targetField Field of the edge records with the target node id
+	 * @param nodes Node position file
+	 * @param xField Field of the node records with the x position
+	 * @param yField Field of the node records with the y position
+	 * @param valuer Value of each edge, from its record in the edge file
+	 */
+	public MemMapEdges(File edges, int sourceField, int targetField, File nodes, int xField, int yField, Valuer<Indexed,I> valuer) throws IOException {
+		this.edgeSource = edges;
+		this.nodeSource = nodes;
+		this.edgeBuffer = new ChunkedFileByteBuffer(edges);
+		this.nodeBuffer = new ChunkedFileByteBuffer(nodes);
+		this.edgeHeader = header(edgeBuffer, edges);
+		this.nodeHeader = header(nodeBuffer, nodes);
+		this.sourceField = sourceField;
+		this.targetField = targetField;
+		this.xField = xField;
+		this.yField = yField;
+		this.valuer = valuer;
+		this.nodeCount = nodeHeader.records(nodes.length());
+		this.low = 0;
+		this.high = edgeHeader.records(edges.length());
+		this.edge = new IndexedEncoding(edgeHeader.types, 0, edgeBuffer);
+		this.node = new IndexedEncoding(nodeHeader.types, 0, nodeBuffer);
+		this.bounds = nodeBounds();
+	}
+
+	private MemMapEdges(MemMapEdges<I> base, long low, long high) {
+		this.edgeSource = base.edgeSource;
+		this.nodeSource = base.nodeSource;
+		this.edgeBuffer = base.edgeBuffer;
+		this.nodeBuffer = base.nodeBuffer;
+		this.edgeHeader = base.edgeHeader;
+		this.nodeHeader = base.nodeHeader;
+		this.sourceField = base.sourceField;
+		this.targetField = base.targetField;
+		this.xField = base.xField;
+		this.yField = base.yField;
+		this.valuer = base.valuer;
+		this.nodeCount = base.nodeCount;
+		this.low = low;
+		this.high = high;
+		this.edge = new IndexedEncoding(edgeHeader.types, 0, edgeBuffer);
+		this.node = new IndexedEncoding(nodeHeader.types, 0, nodeBuffer);
+		this.bounds = base.bounds;
+	}
+
+	private static MemMapEncoder.Header header(MappedFile buffer, File source) {
+		MemMapEncoder.Header header = MemMapEncoder.Header.from(buffer);
+		if (header.version != MemMapList.VERSION_UNDERSTOOD) {
+			throw new IllegalArgumentException(String.format("Unexpected version number in file %s %d; expected %d", source, header.version, MemMapList.VERSION_UNDERSTOOD));
+		}
+		return header;
+	}
+
+	/**Bounds of all node positions.
+	 * Computed on the coordinates directly, since Rectangle2D-based unions skip the empty bounds of points.**/
+	private Rectangle2D nodeBounds() {
+		if (nodeCount == 0) {return new Rectangle2D.Double(0,0,-1,-1);}
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (long n=0; n<nodeCount; n++) {
+			node.moveTo(nodeHeader.dataTableOffset + n*nodeHeader.recordLength);
+			double x = node.getDouble(xField), y = node.getDouble(yField);
+			minX = Math.min(minX, x); maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y); maxY = Math.max(maxY, y);
+		}
+		return new Rectangle2D.Double(minX, minY, maxX-minX, maxY-minY);
+	}
+
+	private void moveToEdge(long i) {
+		if (i < 0 || low+i >= high) {throw new IndexOutOfBoundsException(String.format("Edge %,d requested from glyphset of %,d edges.", i, size()));}
+		edge.moveTo(edgeHeader.dataTableOffset + (low+i)*edgeHeader.recordLength);
+	}
+
+	private void moveToNode(long id) {
+		if (id < 0 || id >= nodeCount) {throw new IllegalArgumentException(String.format("Node id %,d not in node file %s (%,d nodes).", id, nodeSource, nodeCount));}
+		node.moveTo(nodeHeader.dataTableOffset + id*nodeHeader.recordLength);
+	}
+
+	@Override
+	public void endpoints(long i, double[] target) {
+		moveToEdge(i);
+		long source = (long) edge.getDouble(sourceField);
+		long dest = (long) edge.getDouble(targetField);
+		moveToNode(source);
+		target[0] = node.getDouble(xField);
+		target[1] = node.getDouble(yField);
+		moveToNode(dest);
+		target[2] = node.getDouble(xField);
+		target[3] = node.getDouble(yField);
+	}
+
+	@Override
+	public I value(long i) {
+		moveToEdge(i);
+		return valuer.value(edge);
+	}
+
+	@Override
+	public Glyph<Line2D, I> get(long i) {
+		double[] p = new double[4];
+		endpoints(i, p);
+		return new SimpleGlyph<Line2D,I>(new Line2D.Double(p[0], p[1], p[2], p[3]), value(i));
+	}
+
+	/**Number of nodes in the node file.**/
+	public long nodes() {return nodeCount;}
+
+	public Iterator<Glyph<Line2D, I>> iterator() {return new GlyphsetIterator<>(this);}
+	public boolean isEmpty() {return high <= low;}
+	public Rectangle2D bounds() {return bounds.getBounds2D();}
+	public long size() {return high-low;}
+	public long segments() {return size();}
+
+	public Glyphset<Line2D, I> segment(long bottom, long top) throws IllegalArgumentException {
+		return new MemMapEdges<>(this, low+bottom, low+top);
+	}
+}
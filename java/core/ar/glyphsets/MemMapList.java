@@ -12,11 +12,17 @@ import ar.Glyph;
 import ar.Glyphset;
 import ar.glyphsets.implicitgeometry.Indexed;
 import ar.glyphsets.implicitgeometry.IndexedEncoding;
+import ar.glyphsets.implicitgeometry.RecordFilter;
 import ar.glyphsets.implicitgeometry.Shaper;
 import ar.glyphsets.implicitgeometry.Valuer;
+import ar.util.memoryMapping.BitmapIndex;
+import ar.util.memoryMapping.ChunkedFileByteBuffer;
+import ar.util.memoryMapping.DatasetStats;
 import ar.util.memoryMapping.MappedFile;
 import ar.util.memoryMapping.MemMapEncoder;
 import ar.util.memoryMapping.MemMapEncoder.TYPE;
+import ar.util.memoryMapping.StringTable;
+import ar.util.memoryMapping.ZoneMap;
 import ar.util.Util;
 
 /**Implicit geometry, sequentially arranged glyphset backed by a memory-mapped file.
@@ -44,11 +50,25 @@ import ar.util.Util;
  *   +   d -- Double (eight bytes)
  *   +   c -- Char (two bytes)
  *   +   b -- Byte (one byte)
+ *   +   v -- String (four byte code into the file's string table, see "strings")
+ *   
+ *  If a stats sidecar (see DatasetStats) is present next to the source file, bounds are
+ *  read from it (or added to it after the first scan), so only the first open with
+ *  a given shaper needs to scan the records.  This requires a Shaper.Described shaper
+ *  (Shaper.SafeApproximate shapers get their bounds from the header instead).
+ *  
+ *  If a zone map sidecar (see ZoneMap) is present next to the source file and the shaper
+ *  is Shaper.SafeApproximate, "restrict" can omit the zones that miss a region of interest.
+ *  Renderers use this (see Glyphset.Cullable) to skip zones outside of the viewport.
+ *  
+ *  Records can be filtered on their raw field values before glyphs are made (see "filter").
+ *  If a bitmap index sidecar (see BitmapIndex) exists for a field, "select" visits only
+ *  the records with the requested values of that field.
  *   
  * @author jcottam
  *
  */
-public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
+public class MemMapList<G,I> implements Glyphset.Positions<G,I>, Glyphset.Cullable<G,I> {
 	/**Flag field indicating the binary file encoding (hbin) version understood by the parser.**/
 	public static final int VERSION_UNDERSTOOD = -1;
 	
@@ -71,6 +91,10 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 	private final int[] offsets;
 	private final long dataTableOffset;
 	private final long entryCount;
+	private final ZoneMap zones;
+	private final Rectangle2D[] zoneBounds;
+	private final StringTable strings;
+	private DatasetStats stats;
 	private Rectangle2D bounds;
 
 	/**Create a new memory mapped list, types are read from the source.
@@ -101,7 +125,16 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 				Rectangle2D minBounds = Util.boundOne(shaper.shape(min));
 				bounds = Util.bounds(maxBounds, minBounds);
 			} 
-			entryCount = (source.length()-dataTableOffset)/recordLength;
+			entryCount = header.records(source.length());
+			strings = header.stringTableOffset < 0 ? null : StringTable.read(buffer, header.stringTableOffset);
+			
+			ZoneMap zones = ZoneMap.loadFor(source);
+			if (zones != null && zones.recordCount() != entryCount) {zones = null;}
+			this.zones = zones;
+			this.zoneBounds = zones == null ? null : zones.bounds(shaper);
+			
+			this.stats = DatasetStats.loadFor(source);
+			if (bounds == null && stats != null) {bounds = stats.bounds(shaper);}
 		} else {
 			this.dataTableOffset = -1;
 			this.buffer = null;
@@ -109,6 +142,9 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 			this.offsets = new int[0];
 			this.recordLength = -1;
 			this.entryCount=0;
+			this.zones = null;
+			this.zoneBounds = null;
+			this.strings = null;
 		}
 		
 	}
@@ -123,6 +159,9 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 		this.recordLength = MemMapEncoder.recordLength(types);
 		this.entryCount = buffer.capacity()/recordLength;
 		this.dataTableOffset=dataTableOffset;
+		this.zones = null;
+		this.zoneBounds = null;
+		this.strings = null;
 	}
 
 	@Override
@@ -133,6 +172,25 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 	}
 
 	protected long recordOffset(long i) {return (i*recordLength)+dataTableOffset;}
+
+	/**Positions are read directly when the shaper is an Indexed.ToPoint.**/
+	@Override
+	public boolean positions(long start, int n, double[] target) {
+		if (shaper.getClass() != Indexed.ToPoint.class) {return false;}
+		Indexed.ToPoint points = (Indexed.ToPoint) shaper;
+		int x = points.xIdx(), y = points.yIdx();
+		double flip = points.flipY() ? -1 : 1;
+		IndexedEncoding entry = entryAt(recordOffset(start));
+		for (int i=0; i<n; i++) {
+			entry.moveTo(recordOffset(start+i));
+			target[i*2] = entry.getDouble(x);
+			target[i*2+1] = flip*entry.getDouble(y);
+		}
+		return true;
+	}
+
+	@Override
+	public I value(long i) {return valuer.value(entryAt(recordOffset(i)));}
 	
 	protected IndexedEncoding entryAt(long recordOffset) {
 		MappedFile buffer = this.buffer;
@@ -147,6 +205,42 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 	
 	/**Types array used for conversions on read-out.**/
 	public TYPE[] types() {return types;}
+	
+	/**String table of the source file (used to decode 'v' fields); null if there is none.**/
+	public StringTable strings() {return strings;}
+	
+	/**Zone map loaded for the source file; null if there is none.**/
+	public ZoneMap zones() {return zones;}
+
+	/**Zone bounds under the current shaper; null if there is no zone map or the shaper is not Shaper.SafeApproximate.**/
+	Rectangle2D[] zoneBounds() {return zoneBounds;}
+	
+	/**Glyphset of the records that pass the filter.
+	 * The filter is applied to the encoded records (before glyphs are made) and the zone map
+	 * and stats are used to skip records that cannot pass (see FilteredMemMapList).
+	 */
+	public FilteredMemMapList<G,I> filter(RecordFilter filter) {return new FilteredMemMapList<>(this, filter);}
+
+	/**Glyphset of the records whose field holds any of the given values, found through the field's bitmap index.
+	 * String ('v') fields are indexed by code (see StringTable.code).
+	 * @throws IllegalStateException If there is no (current) bitmap index sidecar for the field
+	 */
+	public Glyphset.RandomAccess<G,I> select(int field, double... values) {
+		BitmapIndex index = source == null ? null : BitmapIndex.loadFor(source, field);
+		if (index == null) {throw new IllegalStateException("No bitmap index for field " + field + " (see BitmapIndex.main).");}
+		return index.select(this, values);
+	}
+
+	/**Glyphset of the zones whose bounds intersect the given region.
+	 * 
+	 * Zones are returned whole, so some items may still fall outside of the region.
+	 * If there is no zone map (or the shaper is not Shaper.SafeApproximate),
+	 * this glyphset is returned unmodified.
+	 */
+	public Glyphset.RandomAccess<G,I> restrict(Rectangle2D region) {
+		if (zoneBounds == null) {return this;}
+		return GlyphRanges.restrict(this, 0, entryCount, zones.zoneRecords(), zoneBounds, region);
+	}
 
 	public boolean isEmpty() {return buffer == null || buffer.capacity() <= 0;}
 	public long size() {return entryCount;}
@@ -158,11 +252,15 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 	public Glyphset<G,I> segment(long bottom, long top)
 			throws IllegalArgumentException {
 		
+		if (buffer instanceof ChunkedFileByteBuffer) {
+			//Share the existing maps instead of re-mapping the file for each segment
+			MappedFile mf = ((ChunkedFileByteBuffer) buffer).slice(recordOffset(bottom), recordOffset(top));
+			return new MemMapList<>(mf, source, shaper, valuer, types, 0);
+		}
+
 		long offset = recordOffset(bottom)+buffer.filePosition();
 		long end = recordOffset(top)+buffer.filePosition();
 		
-		
-		
 		try {
 			MappedFile mf = MappedFile.Util.make(source, FileChannel.MapMode.READ_ONLY, BUFFER_BYTES, offset, end);
 			return new MemMapList<>(mf, source, shaper, valuer, types, 0);
@@ -171,11 +269,32 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 	
 	public Rectangle2D bounds() {
 		if (bounds == null) {
-			bounds = pool.invoke(new BoundsTask(0, this.size()));
+			bounds = scanBounds();
+			if (stats != null && shaper instanceof Shaper.Described) {recordBounds(bounds);}
 		}
 		return bounds;
 	}
 
+	/**Add the bounds to the stats sidecar so the next open with this shaper does not need to scan.
+	 * The sidecar is reloaded first (so bounds recorded by others are kept) and replaced atomically. 
+	 * Recording is an optimization, so failures are reported but not thrown.
+	 */
+	private void recordBounds(Rectangle2D bounds) {
+		try {
+			DatasetStats current = DatasetStats.loadFor(source);
+			stats = (current == null ? stats : current).withBounds(shaper, bounds);
+			stats.write(DatasetStats.sidecarFor(source), source.length());
+		} catch (Exception e) {
+			System.err.printf("## Error recording bounds in %s: %s\n", DatasetStats.sidecarFor(source), e.getMessage());
+		}
+	}
+
+	/**Bounds computed by scanning all records (ignoring any bounds from the header or sidecars).**/
+	public Rectangle2D scanBounds() {return pool.invoke(new BoundsTask(0, this.size()));}
+	
+	/**Whole-file statistics loaded from the stats sidecar; null if there are none.**/
+	public DatasetStats stats() {return stats;}
+
 	private final class BoundsTask extends RecursiveTask<Rectangle2D> {
 		public static final long serialVersionUID = 1L;
 		private static final int TASK_SIZE = 100000;
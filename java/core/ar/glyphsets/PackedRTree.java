@@ -0,0 +1,235 @@
+package ar.glyphsets;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import ar.Glyph;
+import ar.Glyphset;
+import ar.util.Util;
+import ar.util.memoryMapping.SpatialOrder;
+
+/**Immutable, bulk-loaded R-tree of explicit-geometry glyphs.
+ *
+ * Items are packed in the order of their centers along a Hilbert curve (see SpatialOrder).
+ * Runs of "nodeSize" items in that order are the leaves, and runs of "nodeSize" nodes are
+ * the nodes of the next level up.
+ * Every node therefore covers a contiguous range of items and only the bounds of the
+ * nodes are stored (in flat arrays, four doubles per node).  Each item is held exactly once.
+ *
+ * Since any contiguous stretch of the curve covers a compact region, segments are simply
+ * ranges of items: equal-count ranges are also spatially compact, which suits the glyph-parallel renderer.
+ * Restricting to a region (see Glyphset.Cullable) walks the tree and keeps the leaves
+ * that touch the region; "intersects" finds the exact items touching a region.
+ *
+ * Compared to the DynamicQuadTree, this class cannot be added to after construction,
+ * but uses far less memory and never visits an item more than once.
+ */
+public class PackedRTree<G,I> implements Glyphset.RandomAccess<G,I>, Glyphset.Cullable<G,I> {
+	/**Default number of children per node.**/
+	public static final int DEFAULT_NODE_SIZE = 16;
+
+	private static final int MIN_X = 0, MIN_Y = 1, MAX_X = 2, MAX_Y = 3;
+
+	private final Glyph<G,I>[] items;
+	private final double[] itemBounds;  //minX, minY, maxX, maxY of each item
+	private final double[][] levels;    //Node bounds by level (leaves at level zero), in the same layout as itemBounds
+	private final int nodeSize;
+	private final int low, high;        //Range of items presented by this glyphset (segments share the tree)
+	private Rectangle2D bounds;
+
+	/**Build a tree with the default node size.**/
+	public PackedRTree(Iterable<? extends Glyph<G,I>> glyphs) {this(glyphs, DEFAULT_NODE_SIZE);}
+
+	/**
+	 * @param glyphs Items to hold
+	 * @param nodeSize Number of children per node (must be at least two)
+	 */
+	@SuppressWarnings({"unchecked","rawtypes"})
+	public PackedRTree(Iterable<? extends Glyph<G,I>> glyphs, int nodeSize) {
+		if (nodeSize < 2) {throw new IllegalArgumentException("Node size must be at least 2; received " + nodeSize);}
+		List<Glyph<G,I>> source = new ArrayList<>();
+		for (Glyph<G,I> g: glyphs) {source.add(g);}
+
+		int n = source.size();
+		double[] boxes = new double[n*4];
+		for (int i=0; i<n; i++) {
+			Rectangle2D b = Util.boundOne(source.get(i).shape());
+			boxes[i*4+MIN_X] = b.getMinX();
+			boxes[i*4+MIN_Y] = b.getMinY();
+			boxes[i*4+MAX_X] = b.getMaxX();
+			boxes[i*4+MAX_Y] = b.getMaxY();
+		}
+
+		int[] order = order(boxes, n);
+		this.items = new Glyph[n];
+		this.itemBounds = new double[n*4];
+		for (int i=0; i<n; i++) {
+			items[i] = source.get(order[i]);
+			System.arraycopy(boxes, order[i]*4, itemBounds, i*4, 4);
+		}
+
+		List<double[]> levels = new ArrayList<>();
+		double[] below = itemBounds;
+		do {
+			below = pack(below, nodeSize);
+			levels.add(below);
+		} while (below.length > 4);
+		this.levels = levels.toArray(new double[levels.size()][]);
+		this.nodeSize = nodeSize;
+		this.low = 0;
+		this.high = n;
+	}
+
+	private PackedRTree(PackedRTree<G,I> base, int low, int high) {
+		this.items = base.items;
+		this.itemBounds = base.itemBounds;
+		this.levels = base.levels;
+		this.nodeSize = base.nodeSize;
+		this.low = low;
+		this.high = high;
+	}
+
+	/**Order of the items along a Hilbert curve through their centers.
+	 * Sort keys pack the curve position into the high bits of a long and the item 
+	 * index into the low bits, so sorting is done on primitives.
+	 * @return Item indices in packing order
+	 */
+	private static int[] order(double[] boxes, int n) {
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int i=0; i<n; i++) {
+			minX = Math.min(minX, boxes[i*4+MIN_X]); maxX = Math.max(maxX, boxes[i*4+MAX_X]);
+			minY = Math.min(minY, boxes[i*4+MIN_Y]); maxY = Math.max(maxY, boxes[i*4+MAX_Y]);
+		}
+
+		long[] keys = new long[n];
+		for (int i=0; i<n; i++) {
+			int x = SpatialOrder.cell(center(boxes, i, MIN_X), minX, maxX);
+			int y = SpatialOrder.cell(center(boxes, i, MIN_Y), minY, maxY);
+			keys[i] = SpatialOrder.HILBERT.key(x, y) << 31 | i;
+		}
+		Arrays.sort(keys);
+
+		int[] order = new int[n];
+		for (int k=0; k<n; k++) {order[k] = (int) (keys[k] & Integer.MAX_VALUE);}
+		return order;
+	}
+
+	private static double center(double[] boxes, int i, int axis) {return (boxes[i*4+axis] + boxes[i*4+axis+2])/2;}
+
+	/**Bounds of each run of nodeSize boxes.**/
+	private static double[] pack(double[] below, int nodeSize) {
+		int count = below.length/4;
+		int nodes = Math.max(1, (count + nodeSize - 1)/nodeSize);
+		double[] packed = new double[nodes*4];
+		for (int node=0; node<nodes; node++) {
+			double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+			for (int c=node*nodeSize; c<Math.min(count, (node+1)*nodeSize); c++) {
+				minX = Math.min(minX, below[c*4+MIN_X]); minY = Math.min(minY, below[c*4+MIN_Y]);
+				maxX = Math.max(maxX, below[c*4+MAX_X]); maxY = Math.max(maxY, below[c*4+MAX_Y]);
+			}
+			packed[node*4+MIN_X] = minX; packed[node*4+MIN_Y] = minY;
+			packed[node*4+MAX_X] = maxX; packed[node*4+MAX_Y] = maxY;
+		}
+		return packed;
+	}
+
+	private static boolean intersects(double[] boxes, int i, Rectangle2D r) {
+		return boxes[i*4+MIN_X] <= r.getMaxX() && boxes[i*4+MAX_X] >= r.getMinX()
+				&& boxes[i*4+MIN_Y] <= r.getMaxY() && boxes[i*4+MAX_Y] >= r.getMinY();
+	}
+
+	/**Number of items under a node of the given level.**/
+	private long span(int level) {
+		long span = nodeSize;
+		for (int l=0; l<level; l++) {span *= nodeSize;}
+		return span;
+	}
+
+	/**Collect the leaves under node (at level) that touch the region and overlap this glyphset's range.**/
+	private void leaves(int level, int node, Rectangle2D region, List<Integer> collector) {
+		double[] boxes = levels[level];
+		if (node*4 >= boxes.length || !intersects(boxes, node, region)) {return;}
+		long span = span(level);
+		if (node*span >= high || (node+1)*span <= low) {return;}
+
+		if (level == 0) {collector.add(node); return;}
+		for (int c=node*nodeSize; c<(node+1)*nodeSize; c++) {leaves(level-1, c, region, collector);}
+	}
+
+	/**Items that touch the region.**/
+	public List<Glyph<G,I>> intersects(Rectangle2D region) {
+		List<Integer> leaves = new ArrayList<>();
+		leaves(levels.length-1, 0, region, leaves);
+		List<Glyph<G,I>> found = new ArrayList<>();
+		for (int leaf: leaves) {
+			for (int i=Math.max(low, leaf*nodeSize); i<Math.min(high, (leaf+1)*nodeSize); i++) {
+				if (intersects(itemBounds, i, region) && Util.intersects(region, items[i].shape())) {found.add(items[i]);}
+			}
+		}
+		return found;
+	}
+
+	@Override
+	public Glyphset<G,I> restrict(Rectangle2D region) {
+		List<Integer> leaves = new ArrayList<>();
+		leaves(levels.length-1, 0, region, leaves);
+
+		long[] starts = new long[leaves.size()];
+		long[] ends = new long[leaves.size()];
+		int[] nodes = new int[leaves.size()];
+		int ranges = 0, n = 0;
+		for (int leaf: leaves) {
+			nodes[n++] = leaf;
+			long start = Math.max(low, leaf*nodeSize) - low;
+			long end = Math.min(high, (leaf+1)*nodeSize) - low;
+			if (ranges > 0 && ends[ranges-1] == start) {ends[ranges-1] = end;}
+			else {starts[ranges] = start; ends[ranges] = end; ranges++;}
+		}
+		if (ranges == 1 && starts[0] == 0 && ends[0] == size()) {return this;}
+		return new GlyphRanges<>(this, Arrays.copyOf(starts, ranges), Arrays.copyOf(ends, ranges), union(levels[0], nodes));
+	}
+
+	/**Bounds of the given boxes.  
+	 * Computed on the coordinates directly, since the boxes of points have no area
+	 * and Rectangle2D-based unions skip empty rectangles.**/
+	private static Rectangle2D union(double[] boxes, int... indices) {
+		if (indices.length == 0) {return new Rectangle2D.Double(0,0,-1,-1);}
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int i: indices) {
+			minX = Math.min(minX, boxes[i*4+MIN_X]); minY = Math.min(minY, boxes[i*4+MIN_Y]);
+			maxX = Math.max(maxX, boxes[i*4+MAX_X]); maxY = Math.max(maxY, boxes[i*4+MAX_Y]);
+		}
+		return new Rectangle2D.Double(minX, minY, maxX-minX, maxY-minY);
+	}
+
+	public Rectangle2D bounds() {
+		if (bounds == null) {
+			if (low == 0 && high == items.length) {bounds = union(levels[levels.length-1], isEmpty() ? new int[0] : new int[]{0});}
+			else {
+				int[] range = new int[high-low];
+				for (int i=0; i<range.length; i++) {range[i] = low+i;}
+				bounds = union(itemBounds, range);
+			}
+		}
+		return bounds;
+	}
+
+	/**Number of levels of nodes above the items.**/
+	public int depth() {return levels.length;}
+
+	public Glyph<G,I> get(long i) {return items[(int) (low+i)];}
+	public Iterator<Glyph<G,I>> iterator() {return new GlyphsetIterator<>(this);}
+	public boolean isEmpty() {return high <= low;}
+	public long size() {return high-low;}
+	public long segments() {return size();}
+
+	public Glyphset<G,I> segment(long bottom, long top) throws IllegalArgumentException {
+		return new PackedRTree<>(this, (int) (low+bottom), (int) (low+top));
+	}
+}
@@ -1,27 +1,40 @@
 package ar.glyphsets;
 
+import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Iterator;
 
 import ar.Glyph;
 import ar.Glyphset;
 import ar.glyphsets.implicitgeometry.Shaper;
 
+/**Glyphset of generated items, for testing and benchmarking without data files.
+ *
+ * Item i is made by passing i to the shaper.  The shapers provided here derive each item
+ * from its index with a counter-based random number generator (see "random"), so
+ * the same seed always gives the same items, items can be made in any order and
+ * threads never share generator state.  Items fall in the region [0,100) x [0,100).
+ */
 public class SyntheticGlyphset<G,I> implements Glyphset.RandomAccess<G,I>{
+	/**Size of the region items are generated in.**/
+	public static final double EXTENT = 100;
+
 	private final I val;
 	private final long size;
 	private final Shaper<G, Long> shaper;
-	
+
 	public SyntheticGlyphset(long size, I val, Shaper<G, Long> shaper) {
 		this.val = val;
 		this.size = size;
 		this.shaper = shaper;
 	}
-	
+
 	public Iterator<Glyph<G, I>> iterator() {return new GlyphsetIterator<>(this);}
 	public boolean isEmpty() {return size <= 0;}
-	public Rectangle2D bounds() {return new Rectangle2D.Double(0,0,100,100);}
+	public Rectangle2D bounds() {return new Rectangle2D.Double(0,0,EXTENT,EXTENT);}
 	public long size() {return size;}
 	public long segments() {return size();}
 
@@ -30,18 +43,195 @@ public class SyntheticGlyphset<G,I> implements Glyphset.RandomAccess<G,I>{
 			throws IllegalArgumentException {
 		return new GlyphSubset.Uncached<>(this, bottom, top);
 	}
-	
+
 	@Override
 	public Glyph<G, I> get(long l) {
 		return new SimpleGlyph<>(shaper.shape(l), val);
 	}
-	
+
+
+	//--------------------- Counter-based random numbers ---------------------------
+
+	/**SplitMix64 finalizer; a bijective mix of all bits of the input.**/
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**Uniform value in [0,1) determined entirely by its arguments.
+	 *
+	 * @param seed Identifies the sequence
+	 * @param index Item the value is for
+	 * @param draw Which value for the item (items that need several values use draws 0, 1, 2...)
+	 */
+	public static double random(long seed, long index, int draw) {
+		long z = mix(seed + 0x9E3779B97F4A7C15L * (index*16 + draw + 1));
+		return (z >>> 11) * 0x1.0p-53;
+	}
+
+	/**Normally distributed value (mean zero, standard deviation one) determined entirely by its arguments.
+	 * Uses two draws (draw and draw+1).
+	 */
+	public static double gaussian(long seed, long index, int draw) {
+		double u1 = 1-random(seed, index, draw); //(0,1] so the log is finite
+		double u2 = random(seed, index, draw+1);
+		return Math.sqrt(-2*Math.log(u1)) * Math.cos(2*Math.PI*u2);
+	}
+
+	private static double clamp(double v) {return Math.max(0, Math.min(Math.nextAfter(EXTENT, 0), v));}
+
+
+	//--------------------- Distributions ---------------------------
+
+	/**Where generated items are placed.
+	 * Implementations must be deterministic in the seed and index
+	 * and use only draws 0-7 (shapers use later draws for other properties).
+	 */
+	public static interface Distribution extends Serializable {
+		/**Position of item "index"; must be in [0,EXTENT) x [0,EXTENT).**/
+		public Point2D position(long seed, long index);
+	}
+
+	/**Positions spread evenly over the whole region.**/
+	public static final class Uniform implements Distribution {
+		private static final long serialVersionUID = 6403383838123006442L;
+		public Point2D position(long seed, long index) {
+			return new Point2D.Double(random(seed, index, 0)*EXTENT, random(seed, index, 1)*EXTENT);
+		}
+	}
+
+	/**Positions in Gaussian clusters with (seed-determined) random centers.
+	 * Each item picks a cluster uniformly.  Values beyond the region are clamped to its edge.
+	 */
+	public static final class Clusters implements Distribution {
+		private static final long serialVersionUID = -1286744633916432227L;
+		private final int clusters;
+		private final double spread;
+
+		/**
+		 * @param clusters Number of clusters
+		 * @param spread Standard deviation of each cluster
+		 */
+		public Clusters(int clusters, double spread) {
+			this.clusters = clusters;
+			this.spread = spread;
+		}
+
+		public Point2D position(long seed, long index) {
+			long c = (long) (random(seed, index, 0)*clusters);
+			double cx = (.1 + .8*random(~seed, c, 0))*EXTENT;
+			double cy = (.1 + .8*random(~seed, c, 1))*EXTENT;
+			return new Point2D.Double(
+					clamp(cx + gaussian(seed, index, 1)*spread),
+					clamp(cy + gaussian(seed, index, 3)*spread));
+		}
+	}
+
+	/**Positions concentrated around a few hot spots with power-law popularity.
+	 * Hot spot k (from zero) is chosen with probability proportional to 1/(k+1)^skew.
+	 * Distance from the center of the spot is radius*u^3 (u uniform in [0,1)), so items
+	 * are dense near the center and sparse at the edges.
+	 */
+	public static final class HotSpots implements Distribution {
+		private static final long serialVersionUID = 3190066407367130544L;
+		private final double[] cumulative;
+		private final double radius;
+
+		/**
+		 * @param spots Number of hot spots
+		 * @param skew Power-law exponent of the spot popularity (zero for equally popular spots)
+		 * @param radius Largest distance from the spot center
+		 */
+		public HotSpots(int spots, double skew, double radius) {
+			this.radius = radius;
+			cumulative = new double[spots];
+			double acc = 0;
+			for (int k=0; k<spots; k++) {
+				acc += 1/Math.pow(k+1, skew);
+				cumulative[k] = acc;
+			}
+			for (int k=0; k<spots; k++) {cumulative[k] /= acc;}
+		}
+
+		public Point2D position(long seed, long index) {
+			int k = Arrays.binarySearch(cumulative, random(seed, index, 0));
+			if (k < 0) {k = -k-1;}
+			k = Math.min(k, cumulative.length-1);
+			double cx = random(~seed, k, 0)*EXTENT;
+			double cy = random(~seed, k, 1)*EXTENT;
+			double r = radius * Math.pow(random(seed, index, 1), 3);
+			double theta = 2*Math.PI*random(seed, index, 2);
+			return new Point2D.Double(clamp(cx + r*Math.cos(theta)), clamp(cy + r*Math.sin(theta)));
+		}
+	}
+
+
+	//--------------------- Shapers ---------------------------
+
+	/**Points placed according to a distribution.**/
 	public static final class SyntheticPoints implements Shaper<Point2D, Long> {
-		public Point2D shape(Long from) {
-			return new Point2D.Double(Math.random()*100, Math.random()*100);
+		private static final long serialVersionUID = -2291563393373372398L;
+		private final Distribution distribution;
+		private final long seed;
+
+		/**Uniformly distributed points with a fixed seed.**/
+		public SyntheticPoints() {this(new Uniform(), 0);}
+
+		public SyntheticPoints(Distribution distribution, long seed) {
+			this.distribution = distribution;
+			this.seed = seed;
+		}
+
+		public Point2D shape(Long from) {return distribution.position(seed, from);}
+	}
+
+	/**Rectangles whose corner is placed according to a distribution.
+	 * Width and height are uniform between zero and the given maximums.
+	 */
+	public static final class SyntheticRects implements Shaper<Rectangle2D, Long> {
+		private static final long serialVersionUID = 8052349683232716307L;
+		private final Distribution distribution;
+		private final long seed;
+		private final double maxWidth, maxHeight;
+
+		public SyntheticRects(Distribution distribution, long seed, double maxWidth, double maxHeight) {
+			this.distribution = distribution;
+			this.seed = seed;
+			this.maxWidth = maxWidth;
+			this.maxHeight = maxHeight;
+		}
+
+		public Rectangle2D shape(Long from) {
+			Point2D p = distribution.position(seed, from);
+			double w = Math.min(random(seed, from, 8)*maxWidth, EXTENT-p.getX());
+			double h = Math.min(random(seed, from, 9)*maxHeight, EXTENT-p.getY());
+			return new Rectangle2D.Double(p.getX(), p.getY(), w, h);
+		}
+	}
+
+	/**Lines that start at a position from a distribution, with uniformly random direction and length
+	 * (up to the given maximum).  Ends beyond the region are clamped to its edge.
+	 */
+	public static final class SyntheticLines implements Shaper<Line2D, Long> {
+		private static final long serialVersionUID = -5521372302867426208L;
+		private final Distribution distribution;
+		private final long seed;
+		private final double maxLength;
+
+		public SyntheticLines(Distribution distribution, long seed, double maxLength) {
+			this.distribution = distribution;
+			this.seed = seed;
+			this.maxLength = maxLength;
+		}
+
+		public Line2D shape(Long from) {
+			Point2D p = distribution.position(seed, from);
+			double length = random(seed, from, 8)*maxLength;
+			double theta = 2*Math.PI*random(seed, from, 9);
+			return new Line2D.Double(p.getX(), p.getY(),
+					clamp(p.getX() + length*Math.cos(theta)),
+					clamp(p.getY() + length*Math.sin(theta)));
 		}
-		
 	}
-	
-	
 }
@@ -1,6 +1,7 @@
 package ar.glyphsets;
 
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
@@ -138,11 +139,22 @@ public class WrappedCollection<B,G,I> implements Glyphset<G,I> {
 			Collection<B> basis, 
 			Shaper<G,B> shaper, 
 			Valuer<B,I> valuer) {
-		DynamicQuadTree<G,I> glyphs = DynamicQuadTree.make();
+		java.util.List<Glyph<G,I>> glyphs = new ArrayList<>(basis.size());
 		for (B val: basis) {
-			Glyph<G,I> g = new SimpleGlyph<>(shaper.shape(val), valuer.value(val));
-			glyphs.add(g);
+			glyphs.add(new SimpleGlyph<>(shaper.shape(val), valuer.value(val)));
 		}
-		return glyphs;		
+		return DynamicQuadTree.make(glyphs);
+	}
+	
+	/**Copies items from the basis into a packed R-tree.
+	 * 
+	 * Advisable for explicit geometry that will not change once loaded: 
+	 * supports viewport culling and spatially compact segments with less memory than a quad-tree.
+	 **/
+	public static <B,G,I> Glyphset<G,I> toRTree(
+			Collection<B> basis, 
+			Shaper<G,B> shaper, 
+			Valuer<B,I> valuer) {
+		return new PackedRTree<>(new WrappedCollection<>(basis, shaper, valuer));
 	}
 }
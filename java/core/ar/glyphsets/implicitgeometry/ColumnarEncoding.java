@@ -0,0 +1,49 @@
+package ar.glyphsets.implicitgeometry;
+
+import ar.util.memoryMapping.MappedFile;
+import ar.util.memoryMapping.MemMapEncoder.TYPE;
+
+/**Wrapper to interface a record of a columnar (chunked) encoding with the implicit geometry system.
+ * 
+ * Values are read from the backing buffer on request, so only the columns actually 
+ * accessed (e.g., the x/y fields used by a shaper) are touched. 
+ * Relies on absolute reads only, so many instances may share a buffer across threads.
+ * **/
+public class ColumnarEncoding implements Indexed {
+	private static final long serialVersionUID = -2129785377581541932L;
+	
+	private final TYPE[] types;
+	private final long[] columnOffsets;
+	private final MappedFile buffer;
+	private final long row;
+	
+	/**
+	 * @param types Types of the fields
+	 * @param columnOffsets Start of each column in the record's chunk
+	 * @param buffer Backing data
+	 * @param row Row of the record in its chunk
+	 */
+	public ColumnarEncoding(TYPE[] types, long[] columnOffsets, MappedFile buffer, long row) {
+		this.types = types;
+		this.columnOffsets = columnOffsets;
+		this.buffer = buffer;
+		this.row = row;
+	}
+
+	public Object get(int f) {
+		TYPE t = types[f];
+		long offset = columnOffsets[f] + (row*t.bytes);
+		switch(t) {
+			case INT: return buffer.getInt(offset);
+			case SHORT: return buffer.getShort(offset);
+			case LONG: return buffer.getLong(offset);
+			case DOUBLE: return buffer.getDouble(offset);
+			case FLOAT: return buffer.getFloat(offset);
+			case BYTE: return buffer.get(offset);
+			case CHAR: return buffer.getChar(offset);
+			case STRING: return buffer.getInt(offset);
+			case X: throw new IllegalArgumentException("'Skip-type' not supported (denoted 'X'); found at index " + f);
+		}
+		throw new IllegalArgumentException("'Unhandled type at index " + f);
+	}
+}
@@ -8,6 +8,7 @@ import java.lang.reflect.Array;
 import ar.util.ColorNames;
 import ar.util.Util;
 import ar.util.memoryMapping.MemMapEncoder;
+import ar.util.memoryMapping.StringTable;
 
 /**Interface designating something has an integer-valued "get" function.
  * This interface is the basis for array-based and file-record conversions
@@ -97,6 +98,41 @@ public interface Indexed extends Serializable {
 		}
 	}
 	
+	/**Decode a string ('v') field using the string table of its file.
+	 * The same String instance is returned for every record with a given category,
+	 * so downstream equality checks usually succeed on identity.
+	 */
+	public static class ToCategory implements Valuer<Indexed,String>, Serializable {
+		private static final long serialVersionUID = -2180237425587193302L;
+		private final int vIdx;
+		private final StringTable strings;
+		
+		/**@param strings Table of the file being read (see MemMapList.strings or StringTable.loadFor)**/
+		public ToCategory(int vIdx, StringTable strings) {
+			this.vIdx = vIdx;
+			this.strings = strings;
+		}
+		
+		public String value(Indexed from) {return strings.value((Integer) from.get(vIdx));}
+	}
+	
+	/**Is a string ('v') field equal to the given category?
+	 * The category is converted to a code once, so each record only requires an int comparison (no decoding).
+	 */
+	public static class IsCategory implements Valuer<Indexed,Boolean>, Serializable {
+		private static final long serialVersionUID = 6612016947296514031L;
+		private final int vIdx;
+		private final int code;
+		
+		/**@param strings Table of the file being read (see MemMapList.strings or StringTable.loadFor)**/
+		public IsCategory(int vIdx, StringTable strings, String category) {
+			this.vIdx = vIdx;
+			this.code = strings.code(category);
+		}
+		
+		public Boolean value(Indexed from) {return code >= 0 && ((Integer) from.get(vIdx)) == code;}
+	}
+	
 
 
 	/**Convert an item to a fixed-sized rectangle at a variable
@@ -121,6 +157,10 @@ public interface Indexed extends Serializable {
 			y = flipY ? -y : y; 
 			return new Point2D.Double(x, y);
 		}	
+		
+		public int xIdx() {return xIdx;}
+		public int yIdx() {return yIdx;}
+		public boolean flipY() {return flipY;}
 	}
 	
 	
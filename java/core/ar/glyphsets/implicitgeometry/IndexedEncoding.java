@@ -40,8 +40,29 @@ public class IndexedEncoding implements Indexed {
 			case FLOAT: return buffer.getFloat(offset);
 			case BYTE: return buffer.get(offset);
 			case CHAR: return buffer.getChar(offset);
+			case STRING: return buffer.getInt(offset);
 			case X: throw new IllegalArgumentException("'Skip-type' not supported (denoted 'X'); found at index " + offset);
 		}
 		throw new IllegalArgumentException("'Unhandled type at offset " + offset);
 	}
+	
+	/**Numeric value of a field, read without boxing.
+	 * Chars are returned as their code point and strings ('v') as their code in the string table.
+	 */
+	public double getDouble(int f) {
+		long offset= offsets[f]+recordOffset;
+		switch(types[f]) {
+			case INT: case STRING: return buffer.getInt(offset);
+			case SHORT: return buffer.getShort(offset);
+			case LONG: return buffer.getLong(offset);
+			case DOUBLE: return buffer.getDouble(offset);
+			case FLOAT: return buffer.getFloat(offset);
+			case BYTE: return buffer.get(offset);
+			case CHAR: return buffer.getChar(offset);
+			default: throw new IllegalArgumentException("Unhandled type at index " + f);
+		}
+	}
+	
+	/**Point this encoding at a different record (so one instance can be used to scan many records).**/
+	public void moveTo(long recordOffset) {this.recordOffset = recordOffset;}
 }
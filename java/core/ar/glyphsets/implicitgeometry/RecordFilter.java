@@ -0,0 +1,89 @@
+package ar.glyphsets.implicitgeometry;
+
+import java.io.Serializable;
+
+import ar.util.memoryMapping.StringTable;
+
+/**Test on the raw fields of an encoded record, made before any glyph is created.
+ *
+ * Filters read primitive values directly from the record (see IndexedEncoding.getDouble),
+ * so records that fail are never shaped, valued or boxed.  Filters also report if any
+ * record in a block could pass given per-field min/max values for the block
+ * (e.g., from a ZoneMap or DatasetStats) so whole blocks can be skipped.
+ *
+ * See MemMapList.filter.
+ */
+public interface RecordFilter extends Serializable {
+	/**Does the record pass the filter?**/
+	public boolean accept(IndexedEncoding record);
+
+	/**Could any record whose fields are within the given (inclusive) per-field min/max values pass?
+	 * Must be conservative: return true if unsure.
+	 */
+	public boolean mayAccept(double[] min, double[] max);
+
+
+	/**Field value between low and high (inclusive).**/
+	public static final class Range implements RecordFilter {
+		private static final long serialVersionUID = -4529917093342260771L;
+		private final int field;
+		private final double low, high;
+
+		@SuppressWarnings("javadoc")
+		public Range(int field, double low, double high) {
+			this.field = field;
+			this.low = low;
+			this.high = high;
+		}
+
+		public boolean accept(IndexedEncoding record) {
+			double v = record.getDouble(field);
+			return v >= low && v <= high;
+		}
+
+		public boolean mayAccept(double[] min, double[] max) {return max[field] >= low && min[field] <= high;}
+	}
+
+	/**Field value equal to a given value.**/
+	public static final class Equals implements RecordFilter {
+		private static final long serialVersionUID = 1774426322071356104L;
+		private final int field;
+		private final double value;
+
+		@SuppressWarnings("javadoc")
+		public Equals(int field, double value) {
+			this.field = field;
+			this.value = value;
+		}
+
+		/**String ('v') field equal to the given category.
+		 * The category is converted to its code once, so records are tested with a numeric comparison.
+		 * If the category is not in the table, no record passes.
+		 */
+		public static Equals category(int field, StringTable strings, String category) {
+			return new Equals(field, strings.code(category));
+		}
+
+		public boolean accept(IndexedEncoding record) {return record.getDouble(field) == value;}
+		public boolean mayAccept(double[] min, double[] max) {return min[field] <= value && max[field] >= value;}
+	}
+
+	/**Passes records that pass all of the given filters.**/
+	public static final class And implements RecordFilter {
+		private static final long serialVersionUID = -2877405116458893386L;
+		private final RecordFilter[] filters;
+
+		@SuppressWarnings("javadoc")
+		public And(RecordFilter... filters) {this.filters = filters;}
+
+		public boolean accept(IndexedEncoding record) {
+			for (RecordFilter f: filters) {if (!f.accept(record)) {return false;}}
+			return true;
+		}
+
+		public boolean mayAccept(double[] min, double[] max) {
+			for (RecordFilter f: filters) {if (!f.mayAccept(min, max)) {return false;}}
+			return true;
+		}
+	}
+}
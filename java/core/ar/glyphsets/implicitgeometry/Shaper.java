@@ -16,4 +16,15 @@ public interface Shaper<G,I> extends Serializable {
 	 * that the maximum/minimum values for each field will give a correct bounding box. 
 	 */
 	public static interface SafeApproximate<G,I> extends Shaper<G,I> {}
+
+	/**Shaper that can describe the shapes it makes in a stable way.
+	 * Shapers of the same class with equal descriptions must make the same shapes, 
+	 * so results that depend only on the shapes (e.g., the bounds recorded by DatasetStats) 
+	 * can be kept between runs.  The description should include every parameter 
+	 * that affects the shapes (e.g., field indices and sizes).
+	 */
+	public static interface Described<G,I> extends Shaper<G,I> {
+		/**Description of the shapes made; null if it cannot be described.**/
+		public String description();
+	}
 }
\ No newline at end of file
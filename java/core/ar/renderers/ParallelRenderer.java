@@ -13,6 +13,7 @@ import ar.Transfer;
 import ar.aggregates.AggregateUtils;
 import ar.renderers.tasks.GlyphParallelAggregation;
 import ar.renderers.tasks.PixelParallelTransfer;
+import ar.util.Util;
 
 
 /**Task-stealing renderer that works on a per-glyph basis, designed for use with a linear stored glyph-set.
@@ -66,6 +67,8 @@ public class ParallelRenderer implements Renderer {
 			Aggregator<I,A> op,
 			AffineTransform view, int width, int height) {
 		
+		glyphs = RenderUtils.cull(glyphs, view, width, height);
+		
 		//long taskSize = Math.min(AGGREGATE_TASK_MAX, glyphs.size()/(pool.getParallelism()*AGGREGATE_TASK_MULTIPLIER));
 		long taskSize = taskSize(glyphs);
 		recorder.reset(glyphs.size());
@@ -102,5 +105,13 @@ public class ParallelRenderer implements Renderer {
 		}
 	}	
 	
+	public <IN,OUT> OUT reduce(Aggregates<? extends IN> aggregates, Aggregator<IN,OUT> op) {
+		return Util.reduce(pool, aggregates, op);
+	}
+	
+	public <N extends Number> Util.Stats<N> stats(Aggregates<? extends N> aggregates, boolean ignoreNulls, boolean ignoreNaNs, boolean ignoreInfinity) {
+		return Util.stats(pool, aggregates, ignoreNulls, ignoreNaNs, ignoreInfinity);
+	}
+	
 	public ProgressReporter progress() {return recorder;}
 }
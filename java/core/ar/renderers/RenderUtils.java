@@ -1,5 +1,11 @@
 package ar.renderers;
 
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+
+import ar.Glyphset;
 
 /**Utilities specific to the renderer implementations.  In general,
  * the contents of this class should be considered "unstable" and
@@ -24,4 +30,21 @@ public class RenderUtils {
 	public static ProgressReporter recorder() {
 		return RECORD_PROGRESS ? new ProgressReporter.Counter(REPORT_STEP) : new ProgressReporter.NOP(REPORT_STEP);
 	}
+	
+	/**Restrict a glyphset to the items that might be visible in a viewport.
+	 * 
+	 * If the glyphset is Glyphset.Cullable, the viewport (0,0,width,height) is converted
+	 * to data-space and used to restrict it.  Otherwise (or if the view transform
+	 * cannot be inverted) the glyphset is returned unmodified.
+	 */
+	public static <G,I> Glyphset<? extends G, ? extends I> cull(
+			Glyphset<? extends G, ? extends I> glyphs, 
+			AffineTransform view, int width, int height) {
+		if (!(glyphs instanceof Glyphset.Cullable)) {return glyphs;}
+		
+		Rectangle2D region;
+		try {region = view.createInverse().createTransformedShape(new Rectangle(0,0,width,height)).getBounds2D();}
+		catch (NoninvertibleTransformException e) {return glyphs;}
+		return ((Glyphset.Cullable<? extends G, ? extends I>) glyphs).restrict(region);
+	}
 }
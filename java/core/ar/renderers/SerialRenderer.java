@@ -12,6 +12,11 @@ import ar.Renderer;
 import ar.Selector;
 import ar.Transfer;
 import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.ColorAggregates;
+import ar.renderers.tasks.PixelParallelReduce;
+import ar.renderers.tasks.PixelParallelStats;
+import ar.renderers.tasks.PixelParallelTransfer;
+import ar.util.Util;
 
 /**Simple renderer that implements the basic abstract rendering algorithm.
  * This class is largely for reference.  In most cases, a parallel renderer is better.
@@ -29,12 +34,13 @@ public final class SerialRenderer implements Renderer {
 		
 		recorder.reset(width*height);
 		Aggregates<A> aggregates = AggregateUtils.make(width, height, op.identity());
+		Glyphset<? extends G, ? extends I> visible = RenderUtils.cull(glyphs, view, width, height);
 		
 		for (int x=aggregates.lowX(); x<aggregates.highX(); x++) {
 			for (int y=aggregates.lowY(); y<aggregates.highY(); y++) {
 				A acc = aggregates.get(x, y);
 				Collection<Glyph<? extends G, ? extends I>>  subset = new ArrayList<>();
-				for (Glyph<? extends G, ? extends I> g: glyphs) {
+				for (Glyph<? extends G, ? extends I> g: visible) {
 					if (selector.hitsBin(g, view, x, y)) {subset.add(g);}
 				}
 
@@ -50,8 +56,13 @@ public final class SerialRenderer implements Renderer {
 		return aggregates;
 	}
 
+	@SuppressWarnings("unchecked")
 	public <IN,OUT> Aggregates<OUT> transfer(Aggregates<? extends IN> aggregates, Transfer.ItemWise<IN,OUT> t) {
  		Aggregates<OUT> out = AggregateUtils.make(aggregates, t.emptyValue());
+		if (t instanceof Transfer.ARGB && out instanceof ColorAggregates) {
+			PixelParallelTransfer.packed(aggregates, (ColorAggregates) out, (Transfer.ARGB<IN>) t, aggregates.lowX(), aggregates.lowY(), aggregates.highX(), aggregates.highY());
+			return out;
+		}
 		for (int x=aggregates.lowX(); x<aggregates.highX(); x++) {
 			for (int y=aggregates.lowY(); y<aggregates.highY(); y++) {
 				OUT val = t.at(x, y, aggregates);
@@ -69,6 +80,16 @@ public final class SerialRenderer implements Renderer {
 		}
 	}
 	
+	public <IN,OUT> OUT reduce(Aggregates<? extends IN> aggregates, Aggregator<IN,OUT> op) {
+		PixelParallelReduce<IN,OUT> task = new PixelParallelReduce<>(aggregates, op, Long.MAX_VALUE, aggregates.lowX(), aggregates.lowY(), aggregates.highX(), aggregates.highY());
+		return task.invoke();
+	}
+	
+	public <N extends Number> Util.Stats<N> stats(Aggregates<? extends N> aggregates, boolean ignoreNulls, boolean ignoreNaNs, boolean ignoreInfinity) {
+		PixelParallelStats<N> task = new PixelParallelStats<>(aggregates, Long.MAX_VALUE, aggregates.lowX(), aggregates.lowY(), aggregates.highX(), aggregates.highY());
+		return task.invoke().stats(ignoreNulls, ignoreNaNs, ignoreInfinity);
+	}
+	
 	public ProgressReporter progress() {return recorder;}
 	public long taskSize(Glyphset<?,?> glyphs) {return glyphs.size();}
 }
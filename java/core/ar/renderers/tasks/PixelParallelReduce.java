@@ -0,0 +1,71 @@
+package ar.renderers.tasks;
+
+import java.util.concurrent.RecursiveTask;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.util.Util;
+
+/**Reduce a set of aggregates to a single value.
+ *
+ * Each leaf task folds the aggregator's combine over its region (rows in order, starting from the identity).
+ * Leaf results are merged with the aggregator's rollup; the left argument always comes from
+ * the region that is earlier in row-major order. * Aggregator.Positional aggregators are given the position of each value as well.
+ */
+public final class PixelParallelReduce<IN, OUT> extends RecursiveTask<OUT> {
+	private static final long serialVersionUID = -6154023329812251044L;
+
+	private final int lowx, lowy, highx, highy;
+	private final Aggregates<? extends IN> in;
+	private final Aggregator<IN, OUT> op;
+	private final long taskSize;
+
+	public PixelParallelReduce(
+			Aggregates<? extends IN> input,
+			Aggregator<IN, OUT> op,
+			long taskSize,
+			int lowX, int lowY, int highX, int highY) {
+
+		this.lowx=lowX;
+		this.lowy=lowY;
+		this.highx=highX;
+		this.highy=highY;
+		this.in = input;
+		this.op = op;
+		this.taskSize = taskSize;
+	}
+
+	protected OUT compute() {
+		int width = highx-lowx;
+		int height = highy-lowy;
+		if ((long) width * height >= taskSize && width > 1 && height > 1) {
+			int centerx = Util.mean(lowx, highx);
+			int centery = Util.mean(lowy, highy);
+			PixelParallelReduce<IN, OUT> SW = new PixelParallelReduce<>(in, op, taskSize, lowx,    lowy,    centerx, centery);
+			PixelParallelReduce<IN, OUT> NW = new PixelParallelReduce<>(in, op, taskSize, lowx,    centery, centerx, highy);
+			PixelParallelReduce<IN, OUT> SE = new PixelParallelReduce<>(in, op, taskSize, centerx, lowy,    highx,   centery);
+			PixelParallelReduce<IN, OUT> NE = new PixelParallelReduce<>(in, op, taskSize, centerx, centery, highx,   highy);
+			invokeAll(SW,NW,SE,NE);
+			return op.rollup(
+					op.rollup(SW.getRawResult(), SE.getRawResult()),
+					op.rollup(NW.getRawResult(), NE.getRawResult()));
+		} else if (op instanceof Aggregator.Positional) {
+			Aggregator.Positional<IN, OUT> positional = (Aggregator.Positional<IN, OUT>) op;
+			OUT acc = op.identity();
+			for (int y=lowy; y<highy; y++) {
+				for (int x=lowx; x<highx; x++) {
+					acc = positional.combine(acc, in.get(x, y), x, y);
+				}
+			}
+			return acc;
+		} else {
+			OUT acc = op.identity();
+			for (int y=lowy; y<highy; y++) {
+				for (int x=lowx; x<highx; x++) {
+					acc = op.combine(acc, in.get(x, y));
+				}
+			}
+			return acc;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package ar.renderers.tasks;
+
+import java.util.concurrent.RecursiveTask;
+
+import ar.Aggregates;
+import ar.util.Util;
+
+/**Summary statistics (count, min, max, mean, variance) of a set of numeric aggregates, in a single pass.
+ *
+ * Each leaf task summarizes its region with Welford's running update.
+ * Regions are combined with the pairwise update of Chan et al., so no second pass
+ * over the aggregates is needed for the variance.
+ * Aggregates that hold primitive values (see Aggregates.Numeric) are read without boxing.
+ */
+public final class PixelParallelStats<N extends Number> extends RecursiveTask<PixelParallelStats.Moments<N>> {
+	private static final long serialVersionUID = -3049726330512488573L;
+
+	private final int lowx, lowy, highx, highy;
+	private final Aggregates<? extends N> in;
+	private final long taskSize;
+
+	public PixelParallelStats(Aggregates<? extends N> input, long taskSize, int lowX, int lowY, int highX, int highY) {
+		this.lowx=lowX;
+		this.lowy=lowY;
+		this.highx=highX;
+		this.highy=highY;
+		this.in = input;
+		this.taskSize = taskSize;
+	}
+
+	protected Moments<N> compute() {
+		int width = highx-lowx;
+		int height = highy-lowy;
+		if ((long) width * height >= taskSize && width > 1 && height > 1) {
+			int centerx = Util.mean(lowx, highx);
+			int centery = Util.mean(lowy, highy);
+			PixelParallelStats<N> SW = new PixelParallelStats<>(in, taskSize, lowx,    lowy,    centerx, centery);
+			PixelParallelStats<N> NW = new PixelParallelStats<>(in, taskSize, lowx,    centery, centerx, highy);
+			PixelParallelStats<N> SE = new PixelParallelStats<>(in, taskSize, centerx, lowy,    highx,   centery);
+			PixelParallelStats<N> NE = new PixelParallelStats<>(in, taskSize, centerx, centery, highx,   highy);
+			invokeAll(SW,NW,SE,NE);
+			Moments<N> acc = SW.getRawResult();
+			acc.merge(NW.getRawResult());
+			acc.merge(SE.getRawResult());
+			acc.merge(NE.getRawResult());
+			return acc;
+		} else if (in instanceof Aggregates.Numeric) {
+			return primitive();
+		} else {
+			Moments<N> acc = new Moments<>();
+			for (int y=lowy; y<highy; y++) {
+				for (int x=lowx; x<highx; x++) {acc.add(in.get(x, y));}
+			}
+			return acc;
+		}
+	}
+
+	/**Summarize the region by reading doubles; only the min and max values are boxed (once each).**/
+	private Moments<N> primitive() {
+		Aggregates.Numeric<?> numeric = (Aggregates.Numeric<?>) in;
+		Moments<N> acc = new Moments<>();
+		int minX=0, minY=0, maxX=0, maxY=0;
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		boolean found = false;
+		for (int y=lowy; y<highy; y++) {
+			for (int x=lowx; x<highx; x++) {
+				double v = numeric.getDouble(x, y);
+				if (!acc.add(v)) {continue;}
+				if (!found || v < min) {min = v; minX = x; minY = y;}
+				if (!found || v > max) {max = v; maxX = x; maxY = y;}
+				found = true;
+			}
+		}
+		if (found) {
+			acc.min = in.get(minX, minY);
+			acc.max = in.get(maxX, maxY);
+		}
+		return acc;
+	}
+
+
+	/**Running summary of a set of numbers.
+	 * Null, NaN and infinite values are counted but not included in the other statistics.
+	 */
+	public static final class Moments<N extends Number> {
+		/**Number of finite values.**/
+		public long count;
+		public long nullCount, nanCount, infCount;
+		public N min, max;
+		/**Sum of the finite values; kept so the mean is exactly sum/count.**/
+		public double sum;
+		/**Running mean and sum of squared differences from the mean (Welford's M2).**/
+		public double mean, m2;
+
+		/**Add a finite value (does not update min/max).
+		 * @return True if the value was finite (and thus added to the summary)
+		 * **/
+		public boolean add(double v) {
+			if (Double.isNaN(v)) {nanCount++; return false;}
+			if (Double.isInfinite(v)) {infCount++; return false;}
+			count++;
+			sum += v;
+			double delta = v-mean;
+			mean += delta/count;
+			m2 += delta*(v-mean);
+			return true;
+		}
+
+		/**Add a value, tracking min and max.**/
+		public void add(N n) {
+			if (n == null) {nullCount++; return;}
+			double v = n.doubleValue();
+			if (!add(v)) {return;}
+			if (min == null || min.doubleValue() > v) {min = n;}
+			if (max == null || max.doubleValue() < v) {max = n;}
+		}
+
+		/**Add another summary into this one.**/
+		public void merge(Moments<N> other) {
+			nullCount += other.nullCount;
+			nanCount += other.nanCount;
+			infCount += other.infCount;
+			if (other.min != null && (min == null || min.doubleValue() > other.min.doubleValue())) {min = other.min;}
+			if (other.max != null && (max == null || max.doubleValue() < other.max.doubleValue())) {max = other.max;}
+			combine(other.count, other.sum, other.mean, other.m2);
+		}
+
+		/**Chan et al.'s pairwise combination of count, mean and M2.**/
+		private void combine(long count, double sum, double mean, double m2) {
+			if (count == 0) {return;}
+			long total = this.count + count;
+			double delta = mean - this.mean;
+			this.mean += delta * count/total;
+			this.m2 += m2 + delta*delta * ((double) this.count*count)/total;
+			this.sum += sum;
+			this.count = total;
+		}
+
+		/**Statistics of the summarized values.
+		 * Nulls, NaNs and infinities that are not ignored are included as zeros,
+		 * so they are in the "count" basis for the mean and standard deviation.
+		 */
+		public Util.Stats<N> stats(boolean ignoreNulls, boolean ignoreNaNs, boolean ignoreInfinity) {
+			long zeros = (ignoreNulls ? 0 : nullCount) + (ignoreNaNs ? 0 : nanCount) + (ignoreInfinity ? 0 : infCount);
+			Moments<N> basis = new Moments<>();
+			basis.combine(this.count, this.sum, this.mean, this.m2);
+			basis.combine(zeros, 0, 0, 0);
+			double mean = basis.sum/basis.count;
+			double stdev = Math.sqrt(basis.m2/basis.count);
+			return new Util.Stats<>(min, max, mean, stdev, basis.count, nullCount, nanCount, infCount);
+		}
+	}
+}
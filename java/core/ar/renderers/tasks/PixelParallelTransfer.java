@@ -4,6 +4,7 @@ import java.util.concurrent.RecursiveAction;
 
 import ar.Aggregates;
 import ar.Transfer;
+import ar.aggregates.implementations.ColorAggregates;
 import ar.util.Util;
 
 public final class PixelParallelTransfer<IN, OUT> extends RecursiveAction {
@@ -31,6 +32,7 @@ public final class PixelParallelTransfer<IN, OUT> extends RecursiveAction {
 		this.taskSize = taskSize;
 	}
 
+	@SuppressWarnings("unchecked")
 	protected void compute() {
 		int width = highx-lowx;
 		int height = highy-lowy;
@@ -42,6 +44,8 @@ public final class PixelParallelTransfer<IN, OUT> extends RecursiveAction {
 			PixelParallelTransfer<IN, OUT> SE = new PixelParallelTransfer<>(in, out, t, taskSize, centerx, lowy,    highx,   centery);
 			PixelParallelTransfer<IN, OUT> NE = new PixelParallelTransfer<>(in, out, t, taskSize, centerx, centery, highx,   highy);
 			invokeAll(SW,NW,SE,NE);
+		} else if (t instanceof Transfer.ARGB && out instanceof ColorAggregates) {
+			packed(in, (ColorAggregates) out, (Transfer.ARGB<IN>) t, lowx, lowy, highx, highy);
 		} else {
 			for (int x=lowx; x<highx; x++) {
 				for (int y=lowy; y<highy; y++) {
@@ -51,4 +55,13 @@ public final class PixelParallelTransfer<IN, OUT> extends RecursiveAction {
 			}				
 		}
 	}
+
+	/**Transfer directly to the packed colors of a ColorAggregates (see Transfer.ARGB).**/
+	public static <IN> void packed(Aggregates<? extends IN> in, ColorAggregates out, Transfer.ARGB<IN> t, int lowX, int lowY, int highX, int highY) {
+		for (int y=lowY; y<highY; y++) {
+			for (int x=lowX; x<highX; x++) {
+				out.setARGB(x, y, t.argb(x, y, in));
+			}
+		}
+	}
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import java.awt.Point;
 import java.util.Comparator;
 
 import ar.Aggregates;
+import ar.Aggregator;
 import ar.Renderer;
 import ar.Transfer;
 import ar.rules.combinators.Seq;
@@ -136,7 +137,7 @@ public class Advise {
 			public Aggregates<Boolean> process(Aggregates<? extends A> aggregates, Renderer rend) {
 				Aggregates<Color> img = rend.transfer(aggregates, ref);
 
-				Point p = max(aggregates, comp);
+				Point p = max(aggregates, comp, rend);
 				A max = aggregates.get(p.x, p.y);
 				Color top = img.get(p.x,p.y);
 				return rend.transfer(aggregates, new Inner<>(img, max, top, comp));
@@ -404,20 +405,12 @@ public class Advise {
 	 * @return The location of the first "smallest" value 
 	 */
 	public static <A> Point min(Aggregates<? extends A> aggs, Comparator<A> comp) {
-		A min = aggs.get(aggs.lowX(), aggs.lowY());
-		Point p = new Point(aggs.lowX(), aggs.lowY());
-		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
-			for (int y=aggs.lowY(); y<aggs.highY(); y++) {
-				A val = aggs.get(x,y);
-				int v = comp.compare(val, min);
-				if (v < 0) {
-					min = val;
-					p.setLocation(x, y);
-				}
-				
-			}
-		}
-		return p;
+		return locate(aggs, Util.reduce(aggs, new Extreme<A>(comp, false)));
+	}
+
+	/**Find the smallest value, searching with the given renderer.**/
+	public static <A> Point min(Aggregates<? extends A> aggs, Comparator<A> comp, Renderer rend) {
+		return locate(aggs, rend.reduce(aggs, new Extreme<A>(comp, false)));
 	}
 	
 	/**Find the largest value.  
@@ -427,18 +420,67 @@ public class Advise {
 	 * @return The location of the first "largest" value 
 	 */
 	public static <A> Point max(Aggregates<? extends A> aggs, Comparator<A> comp) {
-		A max = aggs.get(aggs.lowX(), aggs.lowY());
-		Point p = new Point(aggs.lowX(), aggs.lowY());
-		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
-			for (int y=aggs.lowY(); y<aggs.highY(); y++) {
-				A val = aggs.get(x,y);
-				int v = comp.compare(val, max);
-				if (v > 0) {
-					max = val;
-					p.setLocation(x, y);
-				} 
+		return locate(aggs, Util.reduce(aggs, new Extreme<A>(comp, true)));
+	}
+
+	/**Find the largest value, searching with the given renderer.**/
+	public static <A> Point max(Aggregates<? extends A> aggs, Comparator<A> comp, Renderer rend) {
+		return locate(aggs, rend.reduce(aggs, new Extreme<A>(comp, true)));
+	}
+
+	/**Location of the extreme; empty aggregates report their low corner.**/
+	private static Point locate(Aggregates<?> aggs, Extreme.Best<?> best) {
+		return best.found ? new Point(best.x, best.y) : new Point(aggs.lowX(), aggs.lowY());
+	}
+
+	/**Most extreme value and its location.  
+	 * Of equal values, the first in column-major order (x, then y) is kept.
+	 * Each reducing task updates its own Best in place, so there is one read and no allocation per cell.
+	 */
+	private static final class Extreme<A> implements Aggregator.Positional<A, Extreme.Best<A>> {
+		private static final long serialVersionUID = -2372916017327541367L;
+		private final Comparator<A> comp;
+		private final boolean max;
+
+		public Extreme(Comparator<A> comp, boolean max) {
+			this.comp = comp;
+			this.max = max;
+		}
+
+		/**Extreme value found so far (if any) and its location.**/
+		private static final class Best<A> {
+			boolean found;
+			A value;
+			int x, y;
+		}
+
+		public Best<A> combine(Best<A> current, A update, int x, int y) {
+			if (!current.found || better(update, x, y, current)) {
+				current.found = true;
+				current.value = update;
+				current.x = x;
+				current.y = y;
 			}
+			return current;
+		}
+
+		/**Not supported: the location of the value is required (see Aggregator.Positional).**/
+		public Best<A> combine(Best<A> current, A update) {
+			throw new UnsupportedOperationException("Extreme search requires positions.");
+		}
+
+		public Best<A> rollup(Best<A> left, Best<A> right) {
+			if (!left.found) {return right;}
+			if (!right.found) {return left;}
+			return better(right.value, right.x, right.y, left) ? right : left;
+		}
+
+		public Best<A> identity() {return new Best<>();}
+
+		private boolean better(A value, int x, int y, Best<A> than) {
+			int c = comp.compare(value, than.value);
+			if (!max) {c = -c;}
+			return c > 0 || (c == 0 && (x < than.x || (x == than.x && y < than.y)));
 		}
-		return p;
 	}
 }
@@ -403,6 +403,16 @@ public class Categories {
 	}
 	
 	
+	/**Largest full size of a set of categorical counts (for use with Renderer.reduce).**/
+	public static final class MaxSize<T> implements Aggregator<CategoricalCounts<T>, Integer> {
+		private static final long serialVersionUID = -4409537632512310826L;
+		public Integer combine(Integer current, CategoricalCounts<T> update) {return Math.max(current, update.fullSize());}
+		public Integer rollup(Integer left, Integer right) {return Math.max(left, right);}
+		public Integer identity() {return Integer.MIN_VALUE;}
+		public boolean equals(Object other) {return other instanceof MaxSize;}
+		public int hashCode() {return MaxSize.class.hashCode();}
+	}
+
 	/**Performs high-definition alpha composition on a run-length encoding.
 	 * High-definition alpha composition computes color compositions in double space
 	 * with knowledge of the full range of compositions that will be required.
@@ -434,8 +444,7 @@ public class Categories {
 
 		@Override
 		public HighDefAlpha.Specialized specialize(Aggregates<? extends CategoricalCounts<Color>> aggregates) {
-			int max=Integer.MIN_VALUE;
-			for (CategoricalCounts<Color> cats:aggregates) {max = Math.max(max,cats.fullSize());}
+			int max = Util.reduce(aggregates, new MaxSize<Color>());
 			return new Specialized(max, background, omin, log);
 		}
 
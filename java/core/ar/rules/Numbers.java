@@ -27,6 +27,21 @@ public final class Numbers {
 		public int hashCode() {return Count.class.hashCode();}
 	}
 	
+	/**How many items present, counting partially covered bins fractionally?
+	 * 
+	 * With selectors that do not compute coverage, this is the same as Count (but with double outputs).
+	 ***/
+	public static final class WeightedCount<V> implements Aggregator.Weighted<V, Double> {
+		private static final long serialVersionUID = -4081213785839946387L;
+		public Double combine(Double left, V update) {return left+1;}
+		public Double combine(Double left, V update, double weight) {return left+weight;}
+		public Double rollup(Double left, Double right) {return left+right;}
+		
+		public Double identity() {return 0d;}
+		public boolean equals(Object other) {return other instanceof WeightedCount;}
+		public int hashCode() {return WeightedCount.class.hashCode();}
+	}
+	
 	
 	/**Retain the largest value seen.
 	 * 
@@ -144,5 +159,134 @@ public final class Numbers {
 		}
 	}
 	
-	
+	/**Interpolation between two colors through a precomputed table of packed colors.
+	 * 
+	 * The value range is divided into "size" steps (linearly, or by log(1+v-min) for a log scale) 
+	 * and the color for each step is computed once, when specialized.
+	 * Each item is then a table look-up and, for ColorAggregates results, 
+	 * no Color is made per item (see Transfer.ARGB).
+	 * 
+	 * With a linear scale, colors differ from Interpolate/FixedInterpolate by at most 
+	 * one step (about 1/size of the color difference).
+	 * The range is either fixed at construction or found from the aggregates (like Interpolate).
+	 * Null, NaN and default-valued aggregates get the empty color.
+	 */
+	public static class LookupInterpolate<A extends Number> implements Transfer<A, Color> {
+		private static final long serialVersionUID = -4839003117651012839L;
+		
+		/**Default number of entries in the color table.**/
+		public static final int DEFAULT_SIZE = 4096;
+		
+		protected final Color low, high, empty;
+		protected final boolean log;
+		protected final int size;
+		protected final Double lowV, highV;
+		
+		/**Linear scale over the range of the aggregates.**/
+		public LookupInterpolate(Color low, Color high, Color empty) {this(low, high, empty, false);}
+
+		/**
+		 * @param low Color to associate with lowest input value
+		 * @param high Color to associate with highest input value
+		 * @param empty Color to return when the default aggregate value is encountered
+		 * @param log Use a log scale?
+		 */
+		public LookupInterpolate(Color low, Color high, Color empty, boolean log) {
+			this(low, high, null, null, empty, log, DEFAULT_SIZE);
+		}
+		
+		/**
+		 * @param low Color to associate with lowV
+		 * @param high Color to associate with highV
+		 * @param lowV Lowest input value (null to use the lowest value in the aggregates)
+		 * @param highV Highest input value (null to use the highest value in the aggregates)
+		 * @param empty Color to return when the default aggregate value is encountered
+		 * @param log Use a log scale?
+		 * @param size Number of entries in the color table
+		 */
+		public LookupInterpolate(Color low, Color high, Double lowV, Double highV, Color empty, boolean log, int size) {
+			if (size < 2) {throw new IllegalArgumentException("Table size must be at least 2; received " + size);}
+			this.low = low;
+			this.high = high;
+			this.lowV = lowV;
+			this.highV = highV;
+			this.empty = empty;
+			this.log = log;
+			this.size = size;
+		}
+
+		@Override public Color emptyValue() {return empty;}
+
+		@Override 
+		public LookupInterpolate.Specialized<A> specialize(Aggregates<? extends A> aggregates) {
+			double min, max;
+			if (lowV != null && highV != null) {
+				min = lowV; 
+				max = highV;
+			} else {
+				Util.Stats<? extends Number> extrema = Util.stats(aggregates, true, true, true);
+				min = lowV != null ? lowV : extrema.min == null ? 0 : extrema.min.doubleValue();
+				max = highV != null ? highV : extrema.max == null ? 0 : extrema.max.doubleValue();
+			}
+			return new Specialized<>(low, high, lowV, highV, empty, log, size, min, max);
+		}
+		
+		protected static final class Specialized<A extends Number> extends LookupInterpolate<A> implements Transfer.ARGB<A> {
+			private static final long serialVersionUID = 2166104155003427130L;
+			private final double min, span, scale;
+			private final int[] table;
+			private final int emptyARGB;
+			
+			public Specialized(Color low, Color high, Double lowV, Double highV, Color empty, boolean log, int size, double min, double max) {
+				super(low, high, lowV, highV, empty, log, size);
+				this.min = min;
+				this.span = position(max-min);
+				this.scale = span > 0 ? (size-1)/span : 0;
+				this.emptyARGB = empty.getRGB();
+				this.table = new int[size];
+				for (int i=0; i<size; i++) {
+					double distance = span > 0 ? i/(size-1d) : 1;
+					int r = (int) Util.weightedAverage(high.getRed(), low.getRed(), distance);
+					int g = (int) Util.weightedAverage(high.getGreen(), low.getGreen(), distance);
+					int b = (int) Util.weightedAverage(high.getBlue(), low.getBlue(), distance);
+					int a = (int) Util.weightedAverage(high.getAlpha(), low.getAlpha(), distance);
+					table[i] = (a << 24) | (r << 16) | (g << 8) | b;
+				}
+			}
+
+			/**Position of a value on the scale, given its offset from the minimum.**/
+			private double position(double offset) {return log ? Math.log1p(offset) : offset;}
+			
+			/**Color for a value, packed as in Color.getRGB.**/
+			public int lookup(double v) {
+				if (Double.isNaN(v)) {return emptyARGB;}
+				double offset = Math.max(0, v-min);
+				int idx = (int) (position(offset)*scale + .5);
+				return table[Math.min(idx, table.length-1)];
+			}
+			
+			@Override
+			public int argb(int x, int y, Aggregates<? extends A> aggregates) {
+				if (aggregates instanceof Aggregates.Numeric) {
+					double v = ((Aggregates.Numeric<?>) aggregates).getDouble(x, y);
+					A def = aggregates.defaultValue();
+					if (def != null && v == def.doubleValue()) {return emptyARGB;}
+					return lookup(v);
+				}
+				A v = aggregates.get(x, y);
+				if (v == null || Util.isEqual(v, aggregates.defaultValue())) {return emptyARGB;}
+				return lookup(v.doubleValue());
+			}
+			
+			@Override
+			public Color at(int x, int y, Aggregates<? extends A> aggregates) {
+				return new Color(argb(x, y, aggregates), true);
+			}
+
+			@Override
+			public Aggregates<Color> process(Aggregates<? extends A> aggregates, Renderer rend) {
+				return rend.transfer(aggregates, this);
+			}
+		}
+	}
 }
@@ -1,17 +1,22 @@
 package ar.rules;
 
 import java.awt.Color;
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import ar.Aggregates;
+import ar.Aggregator;
 import ar.Renderer;
 import ar.Transfer;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.Iterator2D;
 import ar.util.HasViewTransform;
 import ar.util.Util;
 
@@ -55,18 +60,48 @@ public class Shapes {
 			return new Specialized(baseRegions, viewRegions, transformSource, values);
 		}
 
+		/**Combined categorical counts of all aggregates wholly inside the region.
+		 * Only the part of the aggregates under the region's bounds is visited.**/
 		private CategoricalCounts<Color> gather(Shape region, Aggregates<? extends CategoricalCounts<Color>> aggs) {
-			Rectangle2D r = new Rectangle2D.Double(0,0,1,1);
-			CategoricalCounts<Color> acc = emptyValue();
-			for (int x=aggs.lowX(); x<aggs.highX(); x++) {
-				for (int y=aggs.lowY(); y < aggs.highY(); y++) {
-					r.setRect(x, y, 1,1);
-					if (region.contains(r)) {
-						acc = CategoricalCounts.rollupTwo(acc, aggs.get(x, y));
-					}
-				}
+			Rectangle bounds = region.getBounds().intersection(AggregateUtils.bounds(aggs));
+			if (bounds.isEmpty()) {return emptyValue();}
+			return Util.reduce(new Inside(region, aggs, bounds), new Gather(emptyValue()));
+		}
+
+		/**Merges categorical counts, starting from the given (empty) counts.**/
+		private static final class Gather implements Aggregator<CategoricalCounts<Color>, CategoricalCounts<Color>> {
+			private static final long serialVersionUID = 3087725309442816533L;
+			private final CategoricalCounts<Color> empty;
+			public Gather(CategoricalCounts<Color> empty) {this.empty = empty;}
+			public CategoricalCounts<Color> combine(CategoricalCounts<Color> current, CategoricalCounts<Color> update) {return CategoricalCounts.rollupTwo(current, update);}
+			public CategoricalCounts<Color> rollup(CategoricalCounts<Color> left, CategoricalCounts<Color> right) {return CategoricalCounts.rollupTwo(left, right);}
+			public CategoricalCounts<Color> identity() {return empty;}
+		}
+
+		/**Read-only view of the aggregates wholly inside a region (reports empty counts for all others).**/
+		private static final class Inside implements Aggregates<CategoricalCounts<Color>> {
+			private static final long serialVersionUID = -7405327553066924108L;
+			private final Shape region;
+			private final Aggregates<? extends CategoricalCounts<Color>> base;
+			private final Rectangle bounds;
+			private final CategoricalCounts<Color> empty = new CategoricalCounts<>(Util.COLOR_SORTER);
+
+			public Inside(Shape region, Aggregates<? extends CategoricalCounts<Color>> base, Rectangle bounds) {
+				this.region = region;
+				this.base = base;
+				this.bounds = bounds;
+			}
+
+			public CategoricalCounts<Color> get(int x, int y) {
+				return region.contains(x, y, 1, 1) ? base.get(x, y) : empty;
 			}
-			return acc;
+			public void set(int x, int y, CategoricalCounts<Color> val) {throw new UnsupportedOperationException("Region views are read-only.");}
+			public CategoricalCounts<Color> defaultValue() {return empty;}
+			public Iterator<CategoricalCounts<Color>> iterator() {return new Iterator2D<>(this);}
+			public int lowX() {return bounds.x;}
+			public int lowY() {return bounds.y;}
+			public int highX() {return bounds.x+bounds.width;}
+			public int highY() {return bounds.y+bounds.height;}
 		}
 
 		private static class Specialized extends ShapeGather implements Transfer.ItemWise<CategoricalCounts<Color>, CategoricalCounts<Color>> { 
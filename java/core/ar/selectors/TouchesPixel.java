@@ -2,15 +2,21 @@ package ar.selectors;
 
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Comparator;
 
 import ar.Aggregates;
 import ar.Aggregator;
 import ar.Glyph;
 import ar.Glyphset;
 import ar.Selector;
+import ar.glyphsets.implicitgeometry.Valuer;
 
 /**Collection of selectors that modify bins that a shape touches.
  * **/
@@ -21,108 +27,287 @@ public abstract class TouchesPixel {
 		A update = op.combine(existing,v);
 		target.set(x, y, update);
 	}
+
+	/**DESTRUCTIVELY updates the target at x/y with a value that only covers part of the bin.
+	 * Weighted aggregators are given the weight; other aggregators are updated normally
+	 * when the bin is at least half covered (so coverage-based selectors degrade to center sampling).**/
+	@SuppressWarnings("unchecked")
+	protected static final <A,I> void update(Aggregates<A> target, I v, int x, int y, Aggregator<I,A> op, double weight) {
+		if (weight <= 0) {return;}
+		if (op instanceof Aggregator.Weighted) {
+			A existing = target.get(x,y);
+			A update = ((Aggregator.Weighted<I,A>) op).combine(existing, v, weight);
+			target.set(x, y, update);
+		} else if (weight >= .5) {
+			update(target, v, x, y, op);
+		}
+	}
 		
+	/**Bin containing each point.
+	 * 
+	 * Coordinates are gathered into an array and projected a batch at a time
+	 * (one AffineTransform.transform call per batch), then the values are scattered into their bins.
+	 * Glyphsets that can supply positions directly (see Glyphset.Positions) are read
+	 * without making a glyph or point for each item.
+	 */
 	public static final class Points implements Selector<Point2D> {
+		/**Number of points projected together.**/
+		public static final int BATCH = 1024;
+
+		@SuppressWarnings("unchecked")
 		public <I,A> Aggregates<A> processSubset(
 				Glyphset<? extends Point2D, ? extends I> subset,
 				AffineTransform view, 
 				Aggregates<A> target, 
 				Aggregator<I, A> op) {
 			
-			Point2D scratch = new Point2D.Double();
+			double[] coords = new double[BATCH*2];
+			Object[] values = new Object[BATCH];
+			if (subset instanceof Glyphset.Positions
+					&& positions((Glyphset.Positions<?, ? extends I>) subset, coords, values, view, target, op)) {
+				return target;
+			}
+			
+			int n = 0;
 			for (Glyph<? extends Point2D, ? extends I> g: subset) {
 				Point2D p = g.shape();	//A point has no bounding box...so life is easy
-				view.transform(p, scratch);
-				int x = (int) scratch.getX();
-				int y = (int) scratch.getY();
-				I v = g.info();
-				
-				TouchesPixel.update(target, v, x, y, op);
+				coords[n*2] = p.getX();
+				coords[n*2+1] = p.getY();
+				values[n++] = g.info();
+				if (n == BATCH) {
+					scatter(coords, values, n, view, target, op);
+					n = 0;
+				}
 			}
-
+			scatter(coords, values, n, view, target, op);
 			return target;		
 		}
 
+		/**Process all items of a glyphset that supplies positions directly.
+		 * @return False if the glyphset could not supply positions (nothing is processed)
+		 */
+		private static <I,A> boolean positions(Glyphset.Positions<?, ? extends I> points, double[] coords, Object[] values, 
+				AffineTransform view, Aggregates<A> target, Aggregator<I,A> op) {
+			long size = points.size();
+			for (long start=0; start<size; start+=BATCH) {
+				int n = (int) Math.min(BATCH, size-start);
+				if (!points.positions(start, n, coords)) {return false;} //Only possible on the first batch
+				for (int i=0; i<n; i++) {values[i] = points.value(start+i);}
+				scatter(coords, values, n, view, target, op);
+			}
+			return true;
+		}
+
+		/**Project the first n points (in place) and update their bins.**/
+		@SuppressWarnings("unchecked")
+		private static <I,A> void scatter(double[] coords, Object[] values, int n, AffineTransform view, Aggregates<A> target, Aggregator<I,A> op) {
+			view.transform(coords, 0, coords, 0, n);
+			int lowX = target.lowX(), lowY = target.lowY(), highX = target.highX(), highY = target.highY();
+			for (int i=0; i<n; i++) {
+				double px = coords[i*2], py = coords[i*2+1];
+				int x = (int) px, y = (int) py;
+				if (px < x) {x--;} //Floor (casting rounds towards zero)
+				if (py < y) {y--;}
+				if (x < lowX || x >= highX || y < lowY || y >= highY) {continue;}
+				TouchesPixel.update(target, (I) values[i], x, y, op);
+			}
+		}
+
 		@Override
 		public boolean hitsBin(Glyph<? extends Point2D, ?> glyph, AffineTransform view, int x, int y) {
 			Point2D p = view.transform(glyph.shape(), null);
-			int px = (int) p.getX();
-			int py = (int) p.getY();
+			int px = (int) Math.floor(p.getX());
+			int py = (int) Math.floor(p.getY());
 			return px == x && py == y;
 		}
 	}
 
+	/**Bins along each line, found by clipping the transformed line to the target and walking it one bin per step.
+	 * 
+	 * The line is stepped along its major axis (the axis with the larger extent), 
+	 * touching one bin per column (or row): the bin the line passes through at the column's center.
+	 * Stepping along the minor axis is done in fixed-point integer arithmetic.
+	 * Both endpoints are included.  Lines are clipped (Liang-Barsky) to the target first, 
+	 * so the off-target parts of lines cost nothing.
+	 * 
+	 * In anti-aliased mode (Xiaolin Wu's method) each column touches the two bins whose centers
+	 * the line passes between, weighted by closeness and by how much of the column the line spans.
+	 * The weights are passed to Aggregator.Weighted aggregators (see TouchesPixel.update). 
+	 */
 	public static final class Lines implements Selector<Line2D> {
+		private static final int FIXED_BITS = 32;
+		private static final double FIXED_ONE = 1L << FIXED_BITS;
+
+		private final boolean antiAlias;
+
+		public Lines() {this(false);}
+
+		/**@param antiAlias Weight bins by coverage?**/
+		public Lines(boolean antiAlias) {this.antiAlias = antiAlias;}
+
+		@SuppressWarnings("unchecked")
 		public <I,A> Aggregates<A> processSubset(
 				Glyphset<? extends Line2D, ? extends I> subset,
 				AffineTransform view, 
 				Aggregates<A> 
 				target, Aggregator<I, A> op) {
 
-			for (Glyph<? extends Line2D, ? extends I> g: subset) {
-				bressenham(target, op, g.shape(), g.info());
+			double[] p = new double[4];
+			double[] clipped = new double[4];
+			if (subset instanceof Glyphset.Endpoints) {
+				//Coordinates straight from the glyphset; no glyph or line is made for each item
+				Glyphset.Endpoints<? extends I> lines = (Glyphset.Endpoints<? extends I>) subset;
+				for (long i=0; i<lines.size(); i++) {
+					lines.endpoints(i, p);
+					view.transform(p, 0, p, 0, 2);
+					line(target, op, p, clipped, lines.value(i));
+				}
+			} else {
+				for (Glyph<? extends Line2D, ? extends I> g: subset) {
+					Line2D l = g.shape();
+					p[0] = l.getX1(); p[1] = l.getY1(); p[2] = l.getX2(); p[3] = l.getY2();
+					view.transform(p, 0, p, 0, 2);
+					line(target, op, p, clipped, g.info());
+				}
 			}
 
 			return target;
 		}	
 		
+		/**Rasterize one line, already in bin coordinates.
+		 * @param p The line as x1, y1, x2, y2 (modified)
+		 * @param clipped Scratch space
+		 */
+		private <I,A> void line(Aggregates<A> target, Aggregator<I,A> op, double[] p, double[] clipped, I val) {
+			boolean steep = orient(p);
+			
+			//Clipping only limits the range of major-axis bins; bins are always computed from the full line,
+			//so results do not depend on where the target boundaries fall.
+			int lowA = steep ? target.lowY() : target.lowX();
+			int highA = steep ? target.highY() : target.highX();
+			int lowB = steep ? target.lowX() : target.lowY();
+			int highB = steep ? target.highX() : target.highY();
+			System.arraycopy(p, 0, clipped, 0, 4);
+			int reach = antiAlias ? 1 : 0; //Anti-aliasing touches bins up to one away from the line on the minor axis
+			if (!clip(clipped, lowA, lowB-reach, highA, highB+reach)) {return;}
+			int first = Math.max(lowA, (int) Math.floor(clipped[0]));
+			int last = Math.min(highA-1, (int) Math.floor(clipped[2]));
+
+			if (antiAlias) {wu(target, op, p, steep, first, last, lowB, highB, val);}
+			else {dda(target, op, p, steep, first, last, lowB, highB, val);}
+		}
+		
 
 		@Override
 		public boolean hitsBin(Glyph<? extends Line2D, ?> glyph, AffineTransform view, int x, int y) {
-			Shape s = view.createTransformedShape(glyph.shape());
-			return s.intersects(x, y, 1, 1);
+			Line2D l = glyph.shape();
+			double[] p = new double[]{l.getX1(), l.getY1(), l.getX2(), l.getY2()};
+			view.transform(p, 0, p, 0, 2);
+			boolean steep = orient(p);
+			int a = steep ? y : x;
+			int b = steep ? x : y;
+			if (a < Math.floor(p[0]) || a > Math.floor(p[2])) {return false;}
+
+			double slope = slope(p);
+			if (antiAlias) {
+				if (span(p, a) <= 0) {return false;}
+				double minor = minorAt(p, slope, a);
+				int low = (int) Math.floor(minor);
+				return (low == b && minor-low < 1) || (low+1 == b && minor-low > 0);
+			} else {
+				int minB = (int) Math.floor(Math.min(p[1], p[3]));
+				int maxB = (int) Math.floor(Math.max(p[1], p[3]));
+				int bin = (int) Math.floor(p[1] + (a+.5-p[0])*slope);
+				return b == Math.max(minB, Math.min(maxB, bin));
+			}
 		}
 		
-		//based on 'optimized' version at http://en.wikipedia.org/wiki/Bresenham's_line_algorithm
-		private static <I,A> void bressenham(Aggregates<A> canvas, Aggregator<I,A> aggregator, Line2D line, I val) {
-			int x0 = (int) line.getX1(); //TODO: Not sure if the rounding should happen here or later....
-			int y0 = (int) line.getY1();
-			int x1 = (int) line.getX2();
-			int y1 = (int) line.getY2();
-			boolean steep = Math.abs(y1 - y0) > Math.abs(x1 - x0);
-			  if (steep) {
-				  int temp = x0;
-				  x0 = y0;
-				  y0 = temp;
-
-				  temp = x1;
-				  x1 = y1;
-				  y1 = temp;
-			  }
-			  
-			  if (x0 > x1) {
-				  int temp = x0;
-				  x0 = x1;
-				  x1 = temp;
-				  
-				  temp = y0;
-				  y0 = y1;
-				  y1 = temp;
-			  }
-
-			  double deltax = x1 - x0;
-			  double deltay = Math.abs(y1 - y0);
-			  double error = 0;
-			  int ystep = y0 < y1 ? 1 : -1;
-			  
-			  int y = y0;
-			  for (int x=x0; x> x1; x++) { //line only includes first endpoint
-			    if (steep) {
-			      if (x >= canvas.highY()) {break;}
-			      if (y >= canvas.highX()) {break;}
-			      TouchesPixel.update(canvas, val, x,y, aggregator);
-			    } else {
-			      if (x >= canvas.highX()) {break;}
-			      if (y >= canvas.highY()) {break;}
-			      TouchesPixel.update(canvas, val, x,y, aggregator);
-			    }
-
-			    error = error - deltay;
-			    if (error < 0) {
-			      y = y + ystep;
-			      error = error + deltax;
-			    }
-			  }
+		/**Clip the line x0,y0,x1,y1 (in place) to the given box (Liang-Barsky).
+		 * @return Does any of the line lie in the box?
+		 */
+		private static boolean clip(double[] p, double lowX, double lowY, double highX, double highY) {
+			double dx = p[2]-p[0], dy = p[3]-p[1];
+			double[] edge = {-dx, p[0]-lowX, dx, highX-p[0], -dy, p[1]-lowY, dy, highY-p[1]};
+			double t0 = 0, t1 = 1;
+			for (int i=0; i<edge.length; i+=2) {
+				double d = edge[i], dist = edge[i+1];
+				if (d == 0) {
+					if (dist < 0) {return false;} //Parallel to and outside of this edge
+				} else {
+					double t = dist/d;
+					if (d < 0) {t0 = Math.max(t0, t);}
+					else {t1 = Math.min(t1, t);}
+				}
+			}
+			if (t0 > t1) {return false;}
+			double x0 = p[0], y0 = p[1];
+			p[0] = x0 + t0*dx; p[1] = y0 + t0*dy;
+			p[2] = x0 + t1*dx; p[3] = y0 + t1*dy;
+			return true;
+		}
+
+		/**Rearrange the line (in place) as major-axis/minor-axis pairs with the major axis increasing.
+		 * @return Is the line steep (i.e., is y the major axis)? 
+		 */
+		private static boolean orient(double[] p) {
+			boolean steep = Math.abs(p[3]-p[1]) > Math.abs(p[2]-p[0]);
+			if (steep) {
+				double t = p[0]; p[0] = p[1]; p[1] = t;
+				t = p[2]; p[2] = p[3]; p[3] = t;
+			}
+			if (p[0] > p[2]) {
+				double t = p[0]; p[0] = p[2]; p[2] = t;
+				t = p[1]; p[1] = p[3]; p[3] = t;
+			}
+			return steep;
+		}
+
+		private static double slope(double[] p) {return p[2] == p[0] ? 0 : (p[3]-p[1])/(p[2]-p[0]);}
+
+		/**Portion of major-axis bin "a" spanned by the line (points count as spanning the whole bin).**/
+		private static double span(double[] p, int a) {return p[2] == p[0] ? 1 : Math.min(a+1, p[2]) - Math.max(a, p[0]);}
+
+		/**Position on the minor axis (relative to bin centers) at the center of major-axis bin "a" (limited to the line).**/
+		private static double minorAt(double[] p, double slope, int a) {
+			double at = Math.max(p[0], Math.min(p[2], a+.5));
+			return p[1] + (at-p[0])*slope - .5;
+		}
+
+		/**Touch one bin in each major-axis bin from first to last (inclusive).
+		 * Minor-axis bins outside of [lowB, highB) are skipped.**/
+		private static <I,A> void dda(Aggregates<A> target, Aggregator<I,A> op, double[] p, boolean steep, int first, int last, int lowB, int highB, I val) {
+			int minB = (int) Math.floor(Math.min(p[1], p[3]));
+			int maxB = (int) Math.floor(Math.max(p[1], p[3]));
+			double slope = slope(p);
+			long b = (long) ((p[1] + (first+.5-p[0])*slope) * FIXED_ONE);
+			long step = (long) (slope * FIXED_ONE);
+			for (int a=first; a<=last; a++, b+=step) {
+				int bin = Math.max(minB, Math.min(maxB, (int) (b >> FIXED_BITS)));
+				if (bin < lowB || bin >= highB) {continue;}
+				if (steep) {update(target, val, bin, a, op);}
+				else {update(target, val, a, bin, op);}
+			}
+		}
+
+		/**Touch the two bins nearest the line in each major-axis bin from first to last (inclusive).
+		 * Minor-axis bins outside of [lowB, highB) are skipped.**/
+		private static <I,A> void wu(Aggregates<A> target, Aggregator<I,A> op, double[] p, boolean steep, int first, int last, int lowB, int highB, I val) {
+			double slope = slope(p);
+			for (int a=first; a<=last; a++) {
+				double span = span(p, a);
+				double minor = minorAt(p, slope, a);
+				int low = (int) Math.floor(minor);
+				double frac = minor-low;
+
+				if (low >= lowB && low < highB && frac < 1) {
+					if (steep) {update(target, val, low, a, op, span*(1-frac));}
+					else {update(target, val, a, low, op, span*(1-frac));}
+				}
+				if (low+1 >= lowB && low+1 < highB && frac > 0) {
+					if (steep) {update(target, val, low+1, a, op, span*frac);}
+					else {update(target, val, a, low+1, op, span*frac);}
+				}
+			}
 		}
 	}
 	
@@ -167,6 +352,78 @@ public abstract class TouchesPixel {
 		}
 	}
 
+	/**Bins overlapped by each rectangle, weighted by the portion of the bin covered.
+	 * 
+	 * The overlap of a rectangle and a bin is the product of the overlaps on each axis,
+	 * so coverage is exact and computed per row/column instead of by sampling.  Fully covered bins 
+	 * get plain updates and partially covered bins (along the edges) get weighted updates 
+	 * (see Aggregator.Weighted and TouchesPixel.update).  Rectangles with no area cover nothing.
+	 * 
+	 * Coverage is exact for views that only scale and translate.  Under rotation or shear,
+	 * the bounding box of the transformed rectangle is used.
+	 */
+	public static final class RectangleCoverage implements Selector<Rectangle2D> {
+		public <I,A> Aggregates<A> processSubset(
+				Glyphset<? extends Rectangle2D, ? extends I> subset,
+				AffineTransform view, 
+				Aggregates<A> target, 
+				Aggregator<I, A> op) {
+
+			double[] box = new double[4];
+			for (Glyph<? extends Rectangle2D, ? extends I> g: subset) {
+				bounds(g.shape(), view, box);
+				double x0 = box[0], y0 = box[1], x1 = box[2], y1 = box[3];
+				int left = Math.max(target.lowX(), (int) Math.floor(x0));
+				int right = Math.min(target.highX()-1, (int) Math.ceil(x1)-1);
+				int top = Math.max(target.lowY(), (int) Math.floor(y0));
+				int bottom = Math.min(target.highY()-1, (int) Math.ceil(y1)-1);
+				if (left > right || top > bottom) {continue;}
+
+				I v = g.info();
+				for (int y=top; y<=bottom; y++) {
+					double wy = cover(y, y0, y1);
+					if (wy == 1) {
+						//Only the end columns of a fully covered row can be partial
+						update(target, v, left, y, op, cover(left, x0, x1));
+						for (int x=left+1; x<right; x++) {update(target, v, x, y, op);}
+						if (right > left) {update(target, v, right, y, op, cover(right, x0, x1));}
+					} else {
+						for (int x=left; x<=right; x++) {update(target, v, x, y, op, wy*cover(x, x0, x1));}
+					}
+				}
+			}
+			return target;
+		}
+
+		/**Portion of bin "i" (along one axis) between low and high.**/
+		private static double cover(int i, double low, double high) {
+			return Math.max(0, Math.min(i+1, high) - Math.max(i, low));
+		}
+
+		/**Bounds of the transformed rectangle as x0, y0, x1, y1.**/
+		private static void bounds(Rectangle2D r, AffineTransform view, double[] box) {
+			double[] corners = {r.getMinX(), r.getMinY(), r.getMaxX(), r.getMinY(), r.getMinX(), r.getMaxY(), r.getMaxX(), r.getMaxY()};
+			int count = (view.getType() & (AffineTransform.TYPE_GENERAL_ROTATION | AffineTransform.TYPE_QUADRANT_ROTATION | AffineTransform.TYPE_GENERAL_TRANSFORM)) == 0 ? 2 : 4;
+			if (count == 2) {corners[2] = r.getMaxX(); corners[3] = r.getMaxY();}
+			view.transform(corners, 0, corners, 0, count);
+			box[0] = box[1] = Double.POSITIVE_INFINITY;
+			box[2] = box[3] = Double.NEGATIVE_INFINITY;
+			for (int i=0; i<count; i++) {
+				box[0] = Math.min(box[0], corners[i*2]); box[2] = Math.max(box[2], corners[i*2]);
+				box[1] = Math.min(box[1], corners[i*2+1]); box[3] = Math.max(box[3], corners[i*2+1]);
+			}
+		}
+
+		@Override
+		public boolean hitsBin(Glyph<? extends Rectangle2D, ?> glyph, AffineTransform view, int x, int y) {
+			double[] box = new double[4];
+			bounds(glyph.shape(), view, box);
+			return cover(x, box[0], box[2]) * cover(y, box[1], box[3]) > 0;
+		}
+	}
+
+	/**Bins whose center is inside the shape, found by testing every bin in the shape's bounding box.
+	 * Each test walks the whole path, so ScanlineShapes is preferred for anything but the simplest shapes.**/
 	public static final class Shapes implements Selector<Shape> {
 		public <I,A> Aggregates<A> processSubset(
 				Glyphset<? extends Shape, ? extends I> subset,
@@ -174,28 +431,19 @@ public abstract class TouchesPixel {
 				Aggregates<A> target, 
 				Aggregator<I, A> op) {
 
-			Point2D lowP = new Point2D.Double();
-			Point2D highP = new Point2D.Double();
-			Point2D testP = new Point2D.Double();
-
 			for (Glyph<? extends Shape, ? extends I> g: subset) {
-				Rectangle2D b = g.shape().getBounds2D();
-				lowP.setLocation(b.getMinX(), b.getMinY());
-				highP.setLocation(b.getMaxX(), b.getMaxY());
-
-				view.transform(lowP, lowP);
-				view.transform(highP, highP);
+				Shape s = view.createTransformedShape(g.shape());
+				Rectangle2D b = s.getBounds2D();
 
-				int lowx = (int) Math.floor(lowP.getX());
-				int lowy = (int) Math.floor(lowP.getY());
-				int highx = (int) Math.ceil(highP.getX());
-				int highy = (int) Math.ceil(highP.getY());
+				int lowx = (int) Math.floor(b.getMinX());
+				int lowy = (int) Math.floor(b.getMinY());
+				int highx = (int) Math.ceil(b.getMaxX());
+				int highy = (int) Math.ceil(b.getMaxY());
 
 				I v = g.info();
-				for (int x=Math.max(0,lowx); x<highx; x++){  //TODO: What is this Max(0, lowX) doing here?
-					for (int y=Math.max(0, lowy); y<highy; y++) { //TODO: What is this Max(0, lowY) doing here?
-						testP.setLocation(x, y);
-						if (g.shape().contains(testP)) {
+				for (int x=Math.max(target.lowX(),lowx); x<Math.min(target.highX(), highx); x++){
+					for (int y=Math.max(target.lowY(), lowy); y<Math.min(target.highY(), highy); y++) {
+						if (s.contains(x+.5, y+.5)) {
 							update(target, v, x,y, op);
 						}
 					}
@@ -208,11 +456,295 @@ public abstract class TouchesPixel {
 		@Override
 		public boolean hitsBin(Glyph<? extends Shape, ?> glyph, AffineTransform view, int x, int y) {
 			Shape s = view.createTransformedShape(glyph.shape());
-			return s.intersects(x, y, 1, 1);
+			return s.contains(x+.5, y+.5);
+		}
+	}
+
+	/**Bins whose center is inside the shape, found by scanline filling.
+	 * 
+	 * The transformed path is flattened once into a list of edges.  Each row of bins
+	 * is then filled by finding where the active edges cross the row's center line and
+	 * updating the spans between crossings that are inside (according to the winding rule).
+	 * Cost is proportional to the bins filled plus the edges crossing each row, 
+	 * instead of bins in the bounding box times path length.
+	 * 
+	 * Produces the same bins as Shapes (up to curve flattening).
+	 */
+	public static final class ScanlineShapes implements Selector<Shape> {
+		/**Maximum distance between a curve and its flattened approximation (in bins).**/
+		public static final double FLATNESS = .1;
+
+		private final Integer windingRule;
+
+		/**Fill using the winding rule of each shape's path.**/
+		public ScanlineShapes() {this(null);}
+
+		/**
+		 * @param windingRule PathIterator.WIND_EVEN_ODD or PathIterator.WIND_NON_ZERO; null to use each shape's own rule
+		 */
+		public ScanlineShapes(Integer windingRule) {
+			if (windingRule != null && windingRule != PathIterator.WIND_EVEN_ODD && windingRule != PathIterator.WIND_NON_ZERO) {
+				throw new IllegalArgumentException("Unknown winding rule: " + windingRule);
+			}
+			this.windingRule = windingRule;
+		}
+
+		public <I,A> Aggregates<A> processSubset(
+				Glyphset<? extends Shape, ? extends I> subset,
+				AffineTransform view, 
+				Aggregates<A> target, 
+				Aggregator<I, A> op) {
+
+			Edges edges = new Edges();
+			for (Glyph<? extends Shape, ? extends I> g: subset) {
+				PathIterator path = g.shape().getPathIterator(view, FLATNESS);
+				int rule = windingRule != null ? windingRule : path.getWindingRule();
+				edges.load(path);
+				edges.fill(target, g.info(), op, rule);
+			}
+			return target;
+		}
+
+		@Override
+		public boolean hitsBin(Glyph<? extends Shape, ?> glyph, AffineTransform view, int x, int y) {
+			Path2D s = new Path2D.Double(glyph.shape(), view);
+			if (windingRule != null) {s.setWindingRule(windingRule);}
+			return s.contains(x+.5, y+.5);
+		}
+
+		/**Reusable edge list for one shape at a time.
+		 * Edges are stored top-to-bottom (y0 < y1) with the original direction in "dir".
+		 * Horizontal edges never cross a row center, so they are dropped.
+		 */
+		private static final class Edges {
+			double[] x0 = new double[16], y0 = new double[16], x1 = new double[16], y1 = new double[16];
+			int[] dir = new int[16];
+			int count;
+
+			//Scratch for filling
+			Integer[] byTop = new Integer[0];
+			int[] active = new int[16];
+			double[] crossX = new double[16];
+			int[] crossDir = new int[16];
+
+			public void load(PathIterator path) {
+				count = 0;
+				double[] coords = new double[6];
+				double startX=0, startY=0, lastX=0, lastY=0;
+				for (; !path.isDone(); path.next()) {
+					switch (path.currentSegment(coords)) {
+						case PathIterator.SEG_MOVETO:
+							add(lastX, lastY, startX, startY); //Fills close open sub-paths
+							startX = lastX = coords[0];
+							startY = lastY = coords[1];
+							break;
+						case PathIterator.SEG_LINETO:
+							add(lastX, lastY, coords[0], coords[1]);
+							lastX = coords[0];
+							lastY = coords[1];
+							break;
+						case PathIterator.SEG_CLOSE:
+							add(lastX, lastY, startX, startY);
+							lastX = startX;
+							lastY = startY;
+							break;
+						default:
+							throw new IllegalArgumentException("Unexpected curve segment in flattened path.");
+					}
+				}
+				add(lastX, lastY, startX, startY);
+			}
+
+			private void add(double ax, double ay, double bx, double by) {
+				if (ay == by) {return;}
+				if (count == dir.length) {
+					int size = count*2;
+					x0 = Arrays.copyOf(x0, size); y0 = Arrays.copyOf(y0, size);
+					x1 = Arrays.copyOf(x1, size); y1 = Arrays.copyOf(y1, size);
+					dir = Arrays.copyOf(dir, size);
+				}
+				if (ay < by) {x0[count]=ax; y0[count]=ay; x1[count]=bx; y1[count]=by; dir[count]=1;}
+				else {x0[count]=bx; y0[count]=by; x1[count]=ax; y1[count]=ay; dir[count]=-1;}
+				count++;
+			}
+
+			/**Fill the bins whose centers are inside the loaded edges.**/
+			public <I,A> void fill(Aggregates<A> target, I v, Aggregator<I,A> op, int rule) {
+				if (count == 0) {return;}
+				if (byTop.length < count) {byTop = new Integer[dir.length];}
+				double top = Double.POSITIVE_INFINITY, bottom = Double.NEGATIVE_INFINITY;
+				for (int e=0; e<count; e++) {
+					byTop[e] = e;
+					top = Math.min(top, y0[e]);
+					bottom = Math.max(bottom, y1[e]);
+				}
+				Arrays.sort(byTop, 0, count, new Comparator<Integer>() {
+					public int compare(Integer a, Integer b) {return Double.compare(y0[a], y0[b]);}
+				});
+				if (active.length < count) {
+					active = new int[dir.length];
+					crossX = new double[dir.length];
+					crossDir = new int[dir.length];
+				}
+
+				//Row y is sampled at y+.5; an edge is crossed if y0 <= y+.5 < y1
+				int firstRow = Math.max(target.lowY(), (int) Math.ceil(top-.5));
+				int lastRow = Math.min(target.highY()-1, (int) Math.ceil(bottom-.5)-1);
+				int next = 0, live = 0;
+				for (int row=firstRow; row<=lastRow; row++) {
+					double cy = row+.5;
+					while (next < count && y0[byTop[next]] <= cy) {active[live++] = byTop[next++];}
+
+					int crossings = 0;
+					for (int a=0; a<live; a++) {
+						int e = active[a];
+						if (y1[e] <= cy) {active[a--] = active[--live]; continue;} //Passed the bottom of the edge
+						double x = x0[e] + (cy-y0[e]) * (x1[e]-x0[e]) / (y1[e]-y0[e]);
+						
+						//Insertion sort by x (few edges cross any one row)
+						int c = crossings++;
+						while (c > 0 && crossX[c-1] > x) {crossX[c] = crossX[c-1]; crossDir[c] = crossDir[c-1]; c--;}
+						crossX[c] = x;
+						crossDir[c] = dir[e];
+					}
+
+					int winding = 0;
+					for (int c=0; c<crossings-1; c++) {
+						winding += rule == PathIterator.WIND_EVEN_ODD ? 1 : crossDir[c];
+						boolean inside = rule == PathIterator.WIND_EVEN_ODD ? (winding & 1) == 1 : winding != 0;
+						if (!inside) {continue;}
+
+						//Bin x is covered if its center x+.5 is in [crossX[c], crossX[c+1])
+						int low = Math.max(target.lowX(), (int) Math.ceil(crossX[c]-.5));
+						int high = Math.min(target.highX(), (int) Math.ceil(crossX[c+1]-.5));
+						for (int x=low; x<high; x++) {update(target, v, x, row, op);}
+					}
+				}
+			}
 		}
 	}
 	
 
+	/**Bins whose centers are inside each ellipse.
+	 * 
+	 * Ellipses are filled a row at a time: the transformed ellipse is described by the 
+	 * quadratic form it satisfies (relative to its center), so the span of each row is found 
+	 * directly from the row's offset (one square root per row).  This works for any view 
+	 * transform (including rotation and shear) and makes no path geometry; cost is proportional to the bins filled.
+	 */
+	public static final class Ellipses implements Selector<Ellipse2D> {
+		public <I,A> Aggregates<A> processSubset(
+				Glyphset<? extends Ellipse2D, ? extends I> subset,
+				AffineTransform view, 
+				Aggregates<A> target, 
+				Aggregator<I, A> op) {
+
+			double[] q = new double[5];
+			for (Glyph<? extends Ellipse2D, ? extends I> g: subset) {
+				Ellipse2D e = g.shape();
+				if (form(view, e.getCenterX(), e.getCenterY(), e.getWidth()/2, e.getHeight()/2, q)) {
+					fillEllipse(target, op, g.info(), q);
+				}
+			}
+			return target;
+		}
+
+		@Override
+		public boolean hitsBin(Glyph<? extends Ellipse2D, ?> glyph, AffineTransform view, int x, int y) {
+			Ellipse2D e = glyph.shape();
+			double[] q = new double[5];
+			return form(view, e.getCenterX(), e.getCenterY(), e.getWidth()/2, e.getHeight()/2, q) && inside(q, x, y);
+		}
+	}
+
+	/**Bins whose centers are inside a circle around each point.
+	 * The radius (in the same units as the points) is taken from the glyph by a valuer, 
+	 * so sized points do not need a shape per item.  Filled as in Ellipses.
+	 */
+	public static final class Circles implements Selector<Point2D> {
+		private final Valuer<Glyph<? extends Point2D, ?>, ? extends Number> radius;
+
+		/**Circles of the same radius around every point.**/
+		public Circles(double radius) {this(new Valuer.Constant<Glyph<? extends Point2D, ?>, Double>(radius));}
+
+		/**@param radius Radius of the circle for each glyph**/
+		public Circles(Valuer<Glyph<? extends Point2D, ?>, ? extends Number> radius) {this.radius = radius;}
+
+		public <I,A> Aggregates<A> processSubset(
+				Glyphset<? extends Point2D, ? extends I> subset,
+				AffineTransform view, 
+				Aggregates<A> target, 
+				Aggregator<I, A> op) {
+
+			double[] q = new double[5];
+			for (Glyph<? extends Point2D, ? extends I> g: subset) {
+				Point2D p = g.shape();
+				double r = radius.value(g).doubleValue();
+				if (form(view, p.getX(), p.getY(), r, r, q)) {
+					fillEllipse(target, op, g.info(), q);
+				}
+			}
+			return target;
+		}
+
+		@Override
+		public boolean hitsBin(Glyph<? extends Point2D, ?> glyph, AffineTransform view, int x, int y) {
+			Point2D p = glyph.shape();
+			double r = radius.value(glyph).doubleValue();
+			double[] q = new double[5];
+			return form(view, p.getX(), p.getY(), r, r, q) && inside(q, x, y);
+		}
+	}
+
+	/**Describe an axis-aligned ellipse after transformation by the view.
+	 * Points (x,y) of the transformed ellipse satisfy a*dx^2 + 2*b*dx*dy + c*dy^2 <= 1, 
+	 * where dx/dy are offsets from the transformed center.
+	 * 
+	 * @param q Target for cx, cy, a, b, c (in that order)
+	 * @return False if the ellipse covers no area (in which case q is not set)
+	 */
+	private static boolean form(AffineTransform view, double cx, double cy, double rx, double ry, double[] q) {
+		double m00 = view.getScaleX(), m01 = view.getShearX();
+		double m10 = view.getShearY(), m11 = view.getScaleY();
+		double det = rx*ry*(m00*m11 - m01*m10);
+		if (det == 0 || Double.isNaN(det)) {return false;}
+
+		//Rows of the inverse of (linear part of view) * diag(rx, ry); the form is inverse' * inverse
+		double r1x = m11*ry/det, r1y = -m01*ry/det;
+		double r2x = -m10*rx/det, r2y = m00*rx/det;
+		q[0] = m00*cx + m01*cy + view.getTranslateX();
+		q[1] = m10*cx + m11*cy + view.getTranslateY();
+		q[2] = r1x*r1x + r2x*r2x;
+		q[3] = r1x*r1y + r2x*r2y;
+		q[4] = r1y*r1y + r2y*r2y;
+		return true;
+	}
+
+	/**Is the center of bin x/y inside the ellipse described by q (see "form")?**/
+	private static boolean inside(double[] q, int x, int y) {
+		double dx = x+.5-q[0], dy = y+.5-q[1];
+		return q[2]*dx*dx + 2*q[3]*dx*dy + q[4]*dy*dy <= 1;
+	}
+
+	/**Update the bins whose centers are inside the ellipse described by q (see "form").**/
+	private static <I,A> void fillEllipse(Aggregates<A> target, Aggregator<I,A> op, I v, double[] q) {
+		double cx = q[0], cy = q[1], a = q[2], b = q[3], c = q[4];
+		double halfHeight = Math.sqrt(a/(a*c - b*b));
+		int top = Math.max(target.lowY(), (int) Math.ceil(cy - halfHeight - .5));
+		int bottom = Math.min(target.highY()-1, (int) Math.floor(cy + halfHeight - .5));
+		for (int y=top; y<=bottom; y++) {
+			double dy = y+.5-cy;
+			double disc = b*b*dy*dy - a*(c*dy*dy - 1);
+			if (disc < 0) {continue;}
+			double root = Math.sqrt(disc);
+			double left = cx + (-b*dy - root)/a;
+			double right = cx + (-b*dy + root)/a;
+			int low = Math.max(target.lowX(), (int) Math.ceil(left - .5));
+			int high = Math.min(target.highX()-1, (int) Math.floor(right - .5));
+			for (int x=low; x<=high; x++) {update(target, v, x, y, op);}
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	public static <G> Selector<G> make(Glyphset<? extends G, ?> glyphs) {
 		for (Glyph<? extends G, ?> g: glyphs) {
@@ -232,8 +764,10 @@ public abstract class TouchesPixel {
 			return (Selector<G>) new Rectangles();
 		} else if (Line2D.class.isAssignableFrom(geometryType)) {
 			return (Selector<G>) new Lines();
+		} else if (Ellipse2D.class.isAssignableFrom(geometryType)) {
+			return (Selector<G>) new Ellipses();
 		} else if (Shape.class.isAssignableFrom(geometryType)){
-			return (Selector<G>) new Shapes();
+			return (Selector<G>) new ScanlineShapes();
 		} else {
 			throw new IllegalArgumentException("Could not construct aggregator for geometry type: " + geometryType.getName());
 		}
@@ -0,0 +1,325 @@
+package ar.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import ar.glyphsets.implicitgeometry.Indexed;
+import ar.glyphsets.implicitgeometry.Indexed.Converter.TYPE;
+import ar.util.memoryMapping.ChunkedFileByteBuffer;
+import ar.util.memoryMapping.MappedFile;
+
+/**Delimited text reader that tokenizes bytes directly from a memory-mapped source.
+ *
+ * Unlike DelimitedReader, no String is made for a line or a field.  Instead, the
+ * field boundaries of the current line are recorded and values are parsed in place
+ * with the typed "get" methods (numbers are parsed straight from the bytes).
+ * Only when a value cannot be handled by the in-place parsers (e.g., very long
+ * mantissas, "NaN") is a String made so the standard Java parser can be used, so
+ * results always match Double.parseDouble/Long.parseLong.
+ *
+ * Fields are separated by a single delimiter character.  Whitespace around fields
+ * and blank lines are ignored.  Text is assumed to be UTF-8.
+ * Quoted fields are not supported.
+ *
+ * Can be used either as a cursor (with "advance" and the typed getters) or as an
+ * iterator of Indexed items (with "next"), which requires types to be supplied.
+ */
+public class ByteDelimitedReader implements Iterator<Indexed> {
+	private final MappedFile source;
+	private final long end;
+	private final byte delimiter;
+	private final TYPE[] types;
+
+	private long cursor;
+	private int fields;
+	private long[] starts = new long[16];
+	private long[] ends = new long[16];
+	private boolean peeked = false;
+
+	/**Reader for a comma-delimited file with a header row.**/
+	public ByteDelimitedReader(File file, TYPE... types) {this(file, 1, ',', types);}
+
+	/**
+	 * @param file Source file
+	 * @param skip Number of lines to skip (i.e., header lines)
+	 * @param delimiter Field delimiter
+	 * @param types Types used to convert fields in "next"; may be omitted if only the cursor interface is used
+	 */
+	public ByteDelimitedReader(File file, int skip, char delimiter, TYPE... types) {
+		this(map(file), 0, -1, delimiter, types);
+		while (skip > 0 && cursor < end) {
+			if (source.get(cursor) == '\n') {skip--;}
+			cursor++;
+		}
+	}
+
+	/**Read lines in the given range of a mapped file.
+	 * @param source Bytes to read
+	 * @param start Where to start reading; should be the start of a line
+	 * @param end Where to stop reading (exclusive); negative for the end of the source
+	 * @param delimiter Field delimiter
+	 * @param types Types used to convert fields in "next"; may be omitted if only the cursor interface is used
+	 */
+	public ByteDelimitedReader(MappedFile source, long start, long end, char delimiter, TYPE... types) {
+		this.source = source;
+		this.cursor = start;
+		this.end = end < 0 ? source.capacity() : end;
+		this.delimiter = (byte) delimiter;
+		this.types = types;
+	}
+
+	private static MappedFile map(File file) {
+		try {return new ChunkedFileByteBuffer(file);}
+		catch (IOException e) {throw new RuntimeException("Error mapping " + file.getName(), e);}
+	}
+
+	private static boolean isSpace(byte b) {return b == ' ' || b == '\t' || b == '\r';}
+
+	/**Move to the next non-blank line.
+	 * @return True if there is a line; false if the end of the source has been reached.
+	 */
+	public boolean advance() {
+		if (peeked) {peeked = false; return true;}
+		while (cursor < end) {
+			fields = 0;
+			boolean content = false;
+			long fieldStart = cursor;
+			long p = cursor;
+			for (; p<end; p++) {
+				byte b = source.get(p);
+				if (b == '\n') {break;}
+				if (!isSpace(b)) {content = true;}
+				if (b == delimiter) {addField(fieldStart, p); fieldStart = p+1;}
+			}
+			addField(fieldStart, p);
+			cursor = p+1;
+			if (content) {return true;}
+		}
+		fields = 0;
+		return false;
+	}
+
+	/**Record field bounds, trimming whitespace.**/
+	private void addField(long start, long stop) {
+		while (start < stop && isSpace(source.get(start))) {start++;}
+		while (stop > start && isSpace(source.get(stop-1))) {stop--;}
+		if (fields == starts.length) {
+			starts = Arrays.copyOf(starts, fields*2);
+			ends = Arrays.copyOf(ends, fields*2);
+		}
+		starts[fields] = start;
+		ends[fields] = stop;
+		fields++;
+	}
+
+	/**Number of fields on the current line.**/
+	public int fields() {return fields;}
+
+	private void check(int field) {
+		if (field >= fields) {throw new IllegalArgumentException(String.format("Requested field %d but line only has %d fields.", field, fields));}
+	}
+
+	/**Field as a string (creates a String).**/
+	public String getString(int field) {
+		check(field);
+		return string(source, starts[field], ends[field]);
+	}
+
+	/**First character of a field (i.e., getString(field).charAt(0)).
+	 * ASCII is read directly; other UTF-8 sequences are decoded (only the leading character's bytes).
+	 * **/
+	public char getChar(int field) {
+		check(field);
+		long start = starts[field];
+		if (start == ends[field]) {throw new IllegalArgumentException("Empty field " + field);}
+		byte b = source.get(start);
+		if (b >= 0) {return (char) b;}
+		return string(source, start, Math.min(ends[field], start+4)).charAt(0); //UTF-8 sequences are at most four bytes
+	}
+
+	public long getLong(int field) {check(field); return parseLong(source, starts[field], ends[field]);}
+	public double getDouble(int field) {check(field); return parseDouble(source, starts[field], ends[field]);}
+	public float getFloat(int field) {check(field); return parseFloat(source, starts[field], ends[field]);}
+
+	public int getInt(int field) {
+		long v = getLong(field);
+		if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {throw new NumberFormatException("Value out of range for int: " + getString(field));}
+		return (int) v;
+	}
+
+	public short getShort(int field) {
+		long v = getLong(field);
+		if (v < Short.MIN_VALUE || v > Short.MAX_VALUE) {throw new NumberFormatException("Value out of range for short: " + getString(field));}
+		return (short) v;
+	}
+
+	public byte getByte(int field) {
+		long v = getLong(field);
+		if (v < Byte.MIN_VALUE || v > Byte.MAX_VALUE) {throw new NumberFormatException("Value out of range for byte: " + getString(field));}
+		return (byte) v;
+	}
+
+	/**Convert a field of the current line according to the given type.
+	 * X fields are returned as null.
+	 */
+	public Object get(int field, TYPE type) {
+		switch (type) {
+			case INT: return getInt(field);
+			case SHORT: return getShort(field);
+			case LONG: return getLong(field);
+			case FLOAT: return getFloat(field);
+			case DOUBLE: return getDouble(field);
+			case CHAR: return getChar(field);
+			case BYTE: return getByte(field);
+			case COLOR: return ColorNames.byName(getString(field), null);
+			case X: return null;
+			default: throw new UnsupportedOperationException("Cannot perform conversion to " + type);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!peeked) {peeked = advance();}
+		return peeked;
+	}
+
+	/**Values of the next line, converted according to the types given at construction.**/
+	@Override
+	public Indexed next() {
+		if (!hasNext()) {throw new NoSuchElementException();}
+		peeked = false;
+		Object[] values = new Object[types.length];
+		for (int i=0; i<types.length; i++) {values[i] = get(i, types[i]);}
+		return new Indexed.ArrayWrapper(values);
+	}
+
+	/**Not supported**/
+	public void remove() {throw new UnsupportedOperationException();}
+
+
+	//------------------------ In-place parsers -------------------------------
+
+	/**Exactly representable powers of ten (used for the fast path of double parsing).**/
+	private static final double[] POWERS = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	/**Exactly representable powers of ten for floats.**/
+	private static final float[] FLOAT_POWERS = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+	/**Make a string of the given range (used for errors and values the fast paths do not handle).**/
+	public static String string(MappedFile source, long start, long end) {
+		byte[] bytes = new byte[(int) (end-start)];
+		source.get(bytes, start, bytes.length);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**Parse an integer from the given range.  Equivalent to Long.parseLong on the same text.**/
+	public static long parseLong(MappedFile source, long start, long end) {
+		long p = start;
+		boolean negative = false;
+		if (p < end && (source.get(p) == '-' || source.get(p) == '+')) {negative = source.get(p) == '-'; p++;}
+		if (p == end || end-p > 18) {return Long.parseLong(string(source, start, end));} //Empty or possible overflow
+
+		long v = 0;
+		for (; p<end; p++) {
+			int d = source.get(p) - '0';
+			if (d < 0 || d > 9) {throw new NumberFormatException("For input string: \"" + string(source, start, end) + "\"");}
+			v = v*10 + d;
+		}
+		return negative ? -v : v;
+	}
+
+	/**Parse a double from the given range.  Equivalent to Double.parseDouble on the same text.
+	 *
+	 * Decimal values with at most 15 significant digits and small exponents are computed
+	 * with a single exact multiplication or division (so the result is correctly rounded).
+	 * Other values are passed to Double.parseDouble.
+	 */
+	public static double parseDouble(MappedFile source, long start, long end) {
+		long p = start;
+		boolean negative = false;
+		if (p < end && (source.get(p) == '-' || source.get(p) == '+')) {negative = source.get(p) == '-'; p++;}
+
+		long mantissa = 0;
+		int significant = 0, exponent = 0;
+		boolean digits = false;
+
+		for (; p<end; p++) {
+			int d = source.get(p) - '0';
+			if (d < 0 || d > 9) {break;}
+			digits = true;
+			if (mantissa != 0 || d != 0) {significant++;}
+			mantissa = mantissa*10 + d;
+			if (significant > 15) {return slow(source, start, end);}
+		}
+		if (p < end && source.get(p) == '.') {
+			for (p++; p<end; p++) {
+				int d = source.get(p) - '0';
+				if (d < 0 || d > 9) {break;}
+				digits = true;
+				if (mantissa != 0 || d != 0) {significant++;}
+				mantissa = mantissa*10 + d;
+				exponent--;
+				if (significant > 15) {return slow(source, start, end);}
+			}
+		}
+		if (!digits) {return slow(source, start, end);}
+		if (p < end && (source.get(p) == 'e' || source.get(p) == 'E')) {
+			p++;
+			boolean negExp = false;
+			if (p < end && (source.get(p) == '-' || source.get(p) == '+')) {negExp = source.get(p) == '-'; p++;}
+			int e = 0;
+			long expStart = p;
+			for (; p<end; p++) {
+				int d = source.get(p) - '0';
+				if (d < 0 || d > 9 || e > 1000) {return slow(source, start, end);}
+				e = e*10 + d;
+			}
+			if (p == expStart) {return slow(source, start, end);}
+			exponent += negExp ? -e : e;
+		}
+		if (p != end) {return slow(source, start, end);} //Trailing characters (e.g. type suffix), let Java decide
+
+		double v;
+		if (mantissa == 0) {v = 0;}
+		else if (exponent >= 0 && exponent < POWERS.length) {v = mantissa * POWERS[exponent];}
+		else if (exponent < 0 && -exponent < POWERS.length) {v = mantissa / POWERS[-exponent];}
+		else {return slow(source, start, end);}
+		return negative ? -v : v;
+	}
+
+	/**Parse a float from the given range.  Equivalent to Float.parseFloat on the same text.**/
+	public static float parseFloat(MappedFile source, long start, long end) {
+		long p = start;
+		boolean negative = false;
+		if (p < end && (source.get(p) == '-' || source.get(p) == '+')) {negative = source.get(p) == '-'; p++;}
+
+		int mantissa = 0, significant = 0, exponent = 0;
+		boolean digits = false, fraction = false;
+		for (; p<end; p++) {
+			byte b = source.get(p);
+			if (b == '.' && !fraction) {fraction = true; continue;}
+			int d = b - '0';
+			if (d < 0 || d > 9) {break;}
+			digits = true;
+			if (mantissa != 0 || d != 0) {significant++;}
+			mantissa = mantissa*10 + d;
+			if (fraction) {exponent--;}
+			if (significant > 7) {break;}
+		}
+		if (!digits || p != end || -exponent >= FLOAT_POWERS.length) {
+			return Float.parseFloat(string(source, start, end));
+		}
+		float v = mantissa / FLOAT_POWERS[-exponent];
+		return negative ? -v : v;
+	}
+
+	private static double slow(MappedFile source, long start, long end) {
+		return Double.parseDouble(string(source, start, end));
+	}
+}
@@ -6,23 +6,35 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.imageio.ImageIO;
 
 import ar.Aggregates;
+import ar.Aggregator;
 import ar.Glyph;
 import ar.Glyphset;
+import ar.aggregates.AggregateUtils;
 import ar.glyphsets.SimpleGlyph;
 import ar.glyphsets.implicitgeometry.Indexed;
 import ar.glyphsets.implicitgeometry.Shaper;
 import ar.glyphsets.implicitgeometry.Valuer;
 import ar.glyphsets.implicitgeometry.Indexed.Converter;
+import ar.renderers.tasks.PixelParallelReduce;
+import ar.renderers.tasks.PixelParallelStats;
 import ar.util.memoryMapping.MemMapEncoder.TYPE;
 
 /**Collection of various utilities that don't have other homes.**/
@@ -118,6 +130,8 @@ public class Util {
 	/**Load a set of glyphs from a delimited reader, using the provided shaper and valuer.
 	 * 
 	 * This method creates concrete geometry, though it uses the implicit geometry system to achieve it. 
+	 * Loadable glyphsets receive all of the items as a single batch (see Glyphset.Loadable);
+	 * others have their "add" method called (reflectively) for each item.
 	 * 
 	 * @param glyphs Glyphset to load items into
 	 * @param reader Source of the glyph data
@@ -133,12 +147,8 @@ public class Util {
 			Shaper<G, Indexed> shaper, 
 			Valuer<Indexed, I> valuer) {
 		int count =0;
-		
-		Method m;
-		try {m = glyphs.getClass().getMethod("add", Glyph.class);}
-		catch (NoSuchMethodException | SecurityException e1) {throw new IllegalArgumentException("Cannot access 'add' on the passed glypshet.", e1);}
-		m.setAccessible(true); //Suppress java access checking.  Allows access to (for example) public methods of private classes
-
+		List<Glyph<G,I>> batch = glyphs instanceof Glyphset.Loadable ? new ArrayList<Glyph<G,I>>() : null;
+		Method m = batch == null ? adder(glyphs) : null;
 
 		while (reader.hasNext()) {
 			String[] parts = reader.next();
@@ -149,15 +159,66 @@ public class Util {
 			G shape = shaper.shape(item);
 
 			Glyph<G,I> g = new SimpleGlyph<G,I>(shape, value);
-			try {m.invoke(glyphs, g);}
-			catch (Exception e) {throw new RuntimeException("Error loading item number " + count, e);}
+			if (batch != null) {batch.add(g);}
+			else {
+				try {m.invoke(glyphs, g);}
+				catch (Exception e) {throw new RuntimeException("Error loading item number " + count, e);}
+			}
 			count++;
 		}
+		if (batch != null) {((Glyphset.Loadable<G,I>) glyphs).addAll(batch);}
 		//The check below causes an issue if memory is tight...the check has a non-trivial overhead on some glyphset types
 		if (count != glyphs.size()) {throw new RuntimeException(String.format("Error loading data; Read and retained glyph counts don't match (%s read vs %s retained).", count, glyphs.size()));}
 		return glyphs;
 	}
 	
+	/**Load a set of glyphs from a byte-level delimited reader, using the provided shaper and valuer.
+	 * 
+	 * Equivalent to the DelimitedReader-based load, but fields are parsed in place
+	 * (according to the types given to the reader) instead of being split into strings and re-parsed.
+	 * 
+	 * @param glyphs Glyphset to load items into
+	 * @param reader Source of the glyph data; must have been constructed with field types
+	 * @param shaper Convert the read item into a shape
+	 * @param valuer Convert the read item into a value
+	 * @return The glyphset passed in as a parameter (now with more glyphs)
+	 */
+	public static <G,I> Glyphset<G,I> load(
+			Glyphset<G,I> glyphs, 
+			ByteDelimitedReader reader, 
+			Shaper<G, Indexed> shaper, 
+			Valuer<Indexed, I> valuer) {
+		int count =0;
+		List<Glyph<G,I>> batch = glyphs instanceof Glyphset.Loadable ? new ArrayList<Glyph<G,I>>() : null;
+		Method m = batch == null ? adder(glyphs) : null;
+
+		while (reader.hasNext()) {
+			Indexed item;
+			try {item = reader.next();}
+			catch (Exception e) {throw new RuntimeException("Error reading item number " + count, e);}
+			
+			Glyph<G,I> g = new SimpleGlyph<G,I>(shaper.shape(item), valuer.value(item));
+			if (batch != null) {batch.add(g);}
+			else {
+				try {m.invoke(glyphs, g);}
+				catch (Exception e) {throw new RuntimeException("Error loading item number " + count, e);}
+			}
+			count++;
+		}
+		if (batch != null) {((Glyphset.Loadable<G,I>) glyphs).addAll(batch);}
+		if (count != glyphs.size()) {throw new RuntimeException(String.format("Error loading data; Read and retained glyph counts don't match (%s read vs %s retained).", count, glyphs.size()));}
+		return glyphs;
+	}
+	
+	/**Get the "add" method of a glyphset (used by the load methods).**/
+	private static Method adder(Glyphset<?,?> glyphs) {
+		Method m;
+		try {m = glyphs.getClass().getMethod("add", Glyph.class);}
+		catch (NoSuchMethodException | SecurityException e1) {throw new IllegalArgumentException("Cannot access 'add' on the passed glypshet.", e1);}
+		m.setAccessible(true); //Suppress java access checking.  Allows access to (for example) public methods of private classes
+		return m;
+	}
+	
 	/**Sort a set of colors.**/
 	public static final Comparator<Color> COLOR_SORTER  = new Comparator<Color>() {
 		public int compare(Color o1, Color o2) {
@@ -227,46 +288,48 @@ public class Util {
 	}
 
 
+	/**Thread-pool for parallel operations that are not given a renderer (e.g., stats and reduce).**/
+	private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	/**How small can a stats or reduce task get before it won't be subdivided anymore.**/
+	private static final long PIXEL_TASK_MIN = 100000;
+
 	/**What is the min/max/mean/stdev in the collection of aggregates (assuming its over numbers).
 	 * 
 	 * By default NaNs, Nulls and infinity are fully skipped.  
-	 * However, if the relevant parameters set to false they will be included in the "count" basis and thus influence the mean.
+	 * However, if the relevant parameters set to false they will be included in the "count" basis and thus influence the mean
+	 * (and the standard deviation) as if they were zeros.
 	 * 
+	 * Computed in parallel in a single pass (see PixelParallelStats); Renderer.stats does the same on the renderer's threads.
 	 * **/
 	public static <N extends Number> Stats<N> stats(Aggregates<? extends N> aggregates, boolean ignoreNulls, boolean ignoreNaNs, boolean ignoreInfinity) {
-		//For a single-test std. dev is based on: http://en.wikipedia.org/wiki/Standard_deviation#Rapid_calculation_methods
-		long count=0;
-		long nullCount=0;
-		long nanCount=0;
-		long infCount=0;
-		N min = null;
-		N max = null;
-		double sum=0;
-
-		for (N n: aggregates) {
-			if (n == null) {nullCount++; continue;}
-			
-			double v = n.doubleValue();
-			if (Double.isNaN(v)) {nanCount++; continue;}
-			if (Double.isInfinite(v)) {infCount++; continue;}
-			if (min == null || min.doubleValue() > v) {min = n;}
-			if (max == null || max.doubleValue() < v) {max = n;}
-			sum += v;
-			count++;
-		}
-		
-		final long fullCount = count + (ignoreNulls ? 0 : nullCount) + (ignoreNaNs ? 0 : nanCount) + (ignoreInfinity ? 0 : infCount);
+		return stats(pool, aggregates, ignoreNulls, ignoreNaNs, ignoreInfinity);
+	}
 
-		final double mean = sum/fullCount;
-		double acc =0;
+	/**Stats calculated on the given pool.**/
+	public static <N extends Number> Stats<N> stats(ForkJoinPool pool, Aggregates<? extends N> aggregates, boolean ignoreNulls, boolean ignoreNaNs, boolean ignoreInfinity) {
+		long taskSize = Math.max(PIXEL_TASK_MIN, AggregateUtils.size(aggregates)/pool.getParallelism());
+		PixelParallelStats<N> task = new PixelParallelStats<>(aggregates, taskSize, aggregates.lowX(), aggregates.lowY(), aggregates.highX(), aggregates.highY());
+		return pool.invoke(task).stats(ignoreNulls, ignoreNaNs, ignoreInfinity);
+	}
 
-		for (Number n: aggregates) {
-			if (n == null || Double.isNaN(n.doubleValue())) {continue;}
-			acc = Math.pow((n.doubleValue()-mean),2);
-		}
-		double stdev = Math.sqrt(acc/fullCount);
-		
-		return new Stats<>(min,max,mean,stdev,nullCount,nanCount);
+	/**Reduce a set of aggregates to a single value, in parallel.
+	 * 
+	 * Combine is used to fold aggregate values into partial results 
+	 * and rollup to merge partial results (see PixelParallelReduce).
+	 * For use where no renderer is available (e.g., in transfer specialization); otherwise, see Renderer.reduce.
+	 * 
+	 * @return Reduced value (the identity if the aggregates are empty)
+	 * **/
+	public static <IN,OUT> OUT reduce(Aggregates<? extends IN> aggregates, Aggregator<IN,OUT> op) {
+		return reduce(pool, aggregates, op);
+	}
+
+	/**Reduce calculated on the given pool.**/
+	public static <IN,OUT> OUT reduce(ForkJoinPool pool, Aggregates<? extends IN> aggregates, Aggregator<IN,OUT> op) {
+		long taskSize = Math.max(PIXEL_TASK_MIN, AggregateUtils.size(aggregates)/pool.getParallelism());
+		PixelParallelReduce<IN,OUT> task = new PixelParallelReduce<>(aggregates, op, taskSize, aggregates.lowX(), aggregates.lowY(), aggregates.highX(), aggregates.highY());
+		return pool.invoke(task);
 	}
 
 
@@ -277,17 +340,24 @@ public class Util {
 		public final N max;
 		public final double mean;
 		public final double stdev;
+		/**Number of values in the basis of the mean/stdev.**/
+		public final long count;
 		public final long nullCount;
 		public final long nanCount;
+		public final long infCount;
 		
-		public Stats(N min, N max, double mean, double stdev, long nullCount, long nanCount) {
+		public Stats(N min, N max, double mean, double stdev, long count, long nullCount, long nanCount, long infCount) {
 			this.min = min; 
 			this.max=max;
 			this.mean=mean;
 			this.stdev = stdev;
+			this.count = count;
 			this.nullCount = nullCount;
 			this.nanCount = nanCount;
+			this.infCount = infCount;
 		}
+		
+		public double variance() {return stdev*stdev;}
 		public String toString() {
 			if (min instanceof Integer || min instanceof Long) {
 				return String.format("Min: %d; Max: %d; Mean: %.3f; Stdev: %.3f", min,max,mean,stdev);
@@ -327,15 +397,14 @@ public class Util {
 			}
 			
 			//Remove alpha component because it was causing problems on some machines.
-			BufferedImage noAlpha = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_RGB);
-			Color bgColor = Color.white;
-			for (int x=0; x<src.getWidth(); x++) {
-				for (int y=0; y<src.getHeight();y++) {
-					Color fgColor = new Color(src.getRGB(x,y), true);
-					noAlpha.setRGB(x, y, premultiplyAlpha(fgColor, bgColor).getRGB());
-				}
-				
-			}
+			//Colors are blended onto white directly in a packed array (read without copying when src is a plain ARGB image).
+			int width = src.getWidth(), height = src.getHeight();
+			int[] argb = argb(src);
+			int[] rgb = new int[width*height];
+			for (int i=0; i<rgb.length; i++) {rgb[i] = premultiplyAlpha(argb[i], Color.white.getRGB());}
+			DataBufferInt buffer = new DataBufferInt(rgb, rgb.length);
+			WritableRaster raster = Raster.createPackedRaster(buffer, width, height, width, new int[]{0xFF0000, 0xFF00, 0xFF}, null);
+			BufferedImage noAlpha = new BufferedImage(new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF), raster, false, null);
 			
 			if (!f.getName().toUpperCase().endsWith("PNG")) {f = new File(f.getName()+".png");}
 			if (!ImageIO.write(noAlpha, "PNG", f)) {throw new RuntimeException("Could not find encoder for file:"+f.getName());}
@@ -344,6 +413,35 @@ public class Util {
 		}
 	}
 	
+	/**Packed colors of an image in row-major order.
+	 * Shares the image's storage if it is an unshifted TYPE_INT_ARGB image (such as a ColorAggregates view), 
+	 * so the result must not be modified.**/
+	private static int[] argb(BufferedImage img) {
+		int width = img.getWidth(), height = img.getHeight();
+		if (img.getType() == BufferedImage.TYPE_INT_ARGB
+				&& img.getRaster().getDataBuffer() instanceof DataBufferInt
+				&& img.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel) {
+			SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) img.getRaster().getSampleModel();
+			DataBufferInt buffer = (DataBufferInt) img.getRaster().getDataBuffer();
+			if (buffer.getNumBanks() == 1 && buffer.getOffset() == 0 
+					&& model.getScanlineStride() == width
+					&& img.getRaster().getSampleModelTranslateX() == 0 && img.getRaster().getSampleModelTranslateY() == 0
+					&& buffer.getData().length == width*height) {
+				return buffer.getData();
+			}
+		}
+		return img.getRGB(0, 0, width, height, null, 0, width);
+	}
+
+	/**Packed-color version of premultiplyAlpha; the result is opaque.**/
+	public static final int premultiplyAlpha(int fg, int bg) {
+		int a = fg >>> 24;
+		int r = (((fg >> 16) & 0xFF) * a + ((bg >> 16) & 0xFF) * (255-a))/255;
+		int g = (((fg >> 8) & 0xFF) * a + ((bg >> 8) & 0xFF) * (255-a))/255;
+		int b = ((fg & 0xFF) * a + (bg & 0xFF) * (255-a))/255;
+		return 0xFF000000 | (r << 16) | (g << 8) | b;
+	}
+
 	public static final Color premultiplyAlpha(Color fgColor, Color bgColor) {
 		int r, g, b;
 		r = fgColor.getRed() * fgColor.getAlpha() + bgColor.getRed() * (255 - fgColor.getAlpha());
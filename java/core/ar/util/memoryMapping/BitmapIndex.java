@@ -0,0 +1,297 @@
+package ar.util.memoryMapping;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import ar.Glyphset;
+import ar.glyphsets.GlyphRanges;
+import ar.glyphsets.implicitgeometry.IndexedEncoding;
+import ar.util.Util;
+import ar.util.memoryMapping.MemMapEncoder.TYPE;
+
+/**Run-length compressed bitmap index over one field of a row-major hbin file.
+ *
+ * For each distinct value of the field, the records holding that value are stored
+ * as a list of runs (start inclusive, end exclusive).  Intended for low-cardinality
+ * fields (category codes, flags); the number of runs for a value is at most the number
+ * of records with that value, and is much smaller when the records are clustered
+ * (e.g., sorted by the field or along a space-filling curve that correlates with it).
+ *
+ * "select" presents the matching runs as a random-access glyphset (see GlyphRanges),
+ * so only the matching records are visited and the result can still be segmented
+ * for parallel rendering.
+ *
+ * Indices are kept in a sidecar file for each indexed field (the hbin file name with
+ * ".f<field>.bitmap" appended).  The "main" method of this class builds one for an existing file.
+ *
+ * Sidecar format:
+ *
+ * + Version Number (Int): VERSION_ID
+ * + Source Length (Long): Size of the hbin file the index was computed for (used to detect stale sidecars)
+ * + Field (Int): Field that was indexed
+ * + Record Count (Long): Number of records in the hbin file
+ * + Value Count (Int)
+ * + Values: For each value (in ascending order), the value (Double), run count (Int) and runs (start Long, end Long)
+ */
+public class BitmapIndex {
+	/**(Magic) Number as the first value in a bitmap index sidecar.*/
+	public static final int VERSION_ID = -1;
+
+	/**Extension added to an hbin file name (after the field number) to get a bitmap index sidecar.**/
+	public static final String SIDECAR_EXTENSION = ".bitmap";
+
+	/**Default limit on the number of distinct values in an indexed field.**/
+	public static final int DEFAULT_MAX_VALUES = 1<<12;
+
+	private final int field;
+	private final long recordCount;
+	private final double[] values;
+	private final long[][] runs;
+
+	/**
+	 * @param field Field that was indexed
+	 * @param recordCount Number of records in the indexed file
+	 * @param values Distinct values of the field, in ascending order
+	 * @param runs For each value, the runs holding that value as start/end pairs (in ascending order)
+	 */
+	public BitmapIndex(int field, long recordCount, double[] values, long[][] runs) {
+		this.field = field;
+		this.recordCount = recordCount;
+		this.values = values;
+		this.runs = runs;
+	}
+
+	public int field() {return field;}
+	public long recordCount() {return recordCount;}
+
+	/**Distinct values of the field, in ascending order.**/
+	public double[] values() {return Arrays.copyOf(values, values.length);}
+
+	/**Runs for the given value as start/end pairs; empty if the value does not occur.**/
+	public long[] runs(double value) {
+		int i = Arrays.binarySearch(values, value);
+		return i < 0 ? new long[0] : runs[i];
+	}
+
+	/**Number of records with the given value.**/
+	public long count(double value) {
+		long[] r = runs(value);
+		long count = 0;
+		for (int i=0; i<r.length; i+=2) {count += r[i+1]-r[i];}
+		return count;
+	}
+
+	/**Runs of records holding any of the given values, as start/end pairs in ascending order.**/
+	public long[] runs(double... values) {
+		if (values.length == 1) {return runs(values[0]);}
+
+		//Union by marking run boundaries: +1 at starts, -1 at ends
+		int total = 0;
+		for (double v: values) {total += runs(v).length;}
+		long[] events = new long[total];
+		int e = 0;
+		for (double v: values) {
+			long[] r = runs(v);
+			for (int i=0; i<r.length; i+=2) {
+				events[e++] = r[i] << 1 | 1;
+				events[e++] = r[i+1] << 1;
+			}
+		}
+		Arrays.sort(events); //Ends sort before starts at the same position, so adjacent runs merge below
+
+		long[] merged = new long[total];
+		int m = 0, depth = 0;
+		for (long event: events) {
+			long pos = event >> 1;
+			if ((event & 1) == 1) {
+				if (depth == 0) {
+					if (m > 0 && merged[m-1] == pos) {m--;} //Touching the previous run; extend it
+					else {merged[m++] = pos;}
+				}
+				depth++;
+			} else {
+				depth--;
+				if (depth == 0) {merged[m++] = pos;}
+			}
+		}
+		return Arrays.copyOf(merged, m);
+	}
+
+	/**Glyphset of the records of base that hold any of the given values.
+	 * @param base Glyphset of the indexed file (item i must be record i)
+	 */
+	public <G,I> Glyphset.RandomAccess<G,I> select(Glyphset.RandomAccess<G,I> base, double... values) {
+		if (base.size() != recordCount) {
+			throw new IllegalArgumentException(String.format("Index is for %,d records but glyphset has %,d items.", recordCount, base.size()));
+		}
+		long[] r = runs(values);
+		long[] starts = new long[r.length/2];
+		long[] ends = new long[r.length/2];
+		for (int i=0; i<starts.length; i++) {
+			starts[i] = r[i*2];
+			ends[i] = r[i*2+1];
+		}
+		return new GlyphRanges<>(base, starts, ends, null);
+	}
+
+
+	/**Sidecar file for the given hbin file and field.**/
+	public static File sidecarFor(File hbin, int field) {return new File(hbin.getPath() + ".f" + field + SIDECAR_EXTENSION);}
+
+	/**Write this index as a sidecar.
+	 * @param target Sidecar file to write
+	 * @param sourceLength Length of the file the index describes
+	 */
+	public void write(File target, long sourceLength) throws IOException {
+		long size = TYPE.INT.bytes*3 + TYPE.LONG.bytes*2;
+		for (long[] r: runs) {size += TYPE.DOUBLE.bytes + TYPE.INT.bytes + r.length*TYPE.LONG.bytes;}
+		if (size > Integer.MAX_VALUE) {throw new IllegalArgumentException("Index too large to write; field is not low-cardinality or not clustered.");}
+
+		ByteBuffer bytes = ByteBuffer.allocate((int) size);
+		bytes.putInt(VERSION_ID);
+		bytes.putLong(sourceLength);
+		bytes.putInt(field);
+		bytes.putLong(recordCount);
+		bytes.putInt(values.length);
+		for (int i=0; i<values.length; i++) {
+			bytes.putDouble(values[i]);
+			bytes.putInt(runs[i].length/2);
+			for (long p: runs[i]) {bytes.putLong(p);}
+		}
+		bytes.flip();
+
+		if (target.exists()) {target.delete();}
+		try (RandomAccessFile file = new RandomAccessFile(target, "rw");
+			FileChannel channel = file.getChannel()) {
+			while (bytes.hasRemaining()) {channel.write(bytes);}
+		}
+	}
+
+	/**Read a bitmap index sidecar.
+	 * @param sidecar File to read
+	 * @param sourceLength Expected length of the described file; if it does not match, null is returned.  Negative to skip the check.
+	 * @return The index or null if it does not match the source length
+	 */
+	public static BitmapIndex read(File sidecar, long sourceLength) throws IOException {
+		MappedFile buffer = new FileByteBuffer(sidecar, 0, sidecar.length());
+		int version = buffer.getInt();
+		if (version != VERSION_ID) {
+			throw new IllegalArgumentException(String.format("Unexpected version number in bitmap index %d; expected %d", version, VERSION_ID));
+		}
+		long length = buffer.getLong();
+		if (sourceLength >= 0 && length != sourceLength) {return null;}
+
+		int field = buffer.getInt();
+		long recordCount = buffer.getLong();
+		int count = buffer.getInt();
+		double[] values = new double[count];
+		long[][] runs = new long[count][];
+		for (int i=0; i<count; i++) {
+			values[i] = buffer.getDouble();
+			runs[i] = new long[buffer.getInt()*2];
+			for (int r=0; r<runs[i].length; r++) {runs[i][r] = buffer.getLong();}
+		}
+		return new BitmapIndex(field, recordCount, values, runs);
+	}
+
+	/**Load the sidecar bitmap index for a field of an hbin file.
+	 * @return The index or null if there is no sidecar or if it is stale.
+	 */
+	public static BitmapIndex loadFor(File hbin, int field) {
+		File sidecar = sidecarFor(hbin, field);
+		if (!sidecar.exists()) {return null;}
+		try {return read(sidecar, hbin.length());}
+		catch (Exception e) {return null;}
+	}
+
+	/**Accumulate an index one record at a time (records must be supplied in order).**/
+	public static final class Builder {
+		private final int field;
+		private final int maxValues;
+		private final Map<Double, Runs> runs = new HashMap<>();
+		private long records = 0;
+
+		/**
+		 * @param field Field being indexed
+		 * @param maxValues Limit on the number of distinct values; exceeding it is an error
+		 */
+		public Builder(int field, int maxValues) {
+			this.field = field;
+			this.maxValues = maxValues;
+		}
+
+		/**Include the value of the next record.**/
+		public void add(double value) {
+			Runs r = runs.get(value);
+			if (r == null) {
+				if (runs.size() == maxValues) {
+					throw new IllegalArgumentException(String.format("More than %,d distinct values in field %d; not suitable for a bitmap index.", maxValues, field));
+				}
+				r = new Runs();
+				runs.put(value, r);
+			}
+			r.add(records++);
+		}
+
+		public BitmapIndex build() {
+			double[] values = new double[runs.size()];
+			int i = 0;
+			for (Double v: runs.keySet()) {values[i++] = v;}
+			Arrays.sort(values);
+			long[][] r = new long[values.length][];
+			for (i=0; i<values.length; i++) {
+				Runs run = runs.get(values[i]);
+				r[i] = Arrays.copyOf(run.bounds, run.size);
+			}
+			return new BitmapIndex(field, records, values, r);
+		}
+	}
+
+	/**Growable list of start/end pairs.**/
+	private static final class Runs {
+		long[] bounds = new long[16];
+		int size = 0;
+
+		public void add(long record) {
+			if (size > 0 && bounds[size-1] == record) {bounds[size-1] = record+1; return;} //Extend the current run
+			if (size == bounds.length) {bounds = Arrays.copyOf(bounds, size*2);}
+			bounds[size++] = record;
+			bounds[size++] = record+1;
+		}
+	}
+
+	/**Compute the index of a field of an existing row-major hbin file.**/
+	public static BitmapIndex build(File hbin, int field, int maxValues) throws IOException {
+		MappedFile buffer = MappedFile.Util.make(hbin, FileChannel.MapMode.READ_ONLY, Integer.MAX_VALUE);
+		MemMapEncoder.Header header = MemMapEncoder.Header.from(buffer);
+		long records = header.records(buffer.capacity());
+
+		Builder builder = new Builder(field, maxValues);
+		IndexedEncoding entry = new IndexedEncoding(header.types, header.dataTableOffset, buffer);
+		for (long r=0; r<records; r++) {
+			entry.moveTo(header.dataTableOffset + r*header.recordLength);
+			builder.add(entry.getDouble(field));
+		}
+		return builder.build();
+	}
+
+	/**Utility for building bitmap index sidecars for existing hbin files.**/
+	public static void main(String[] args) throws Exception {
+		System.out.println("Usage: BitmapIndex -in <file> -field <int> [-max <int>]");
+		System.out.println("Writes the bitmap index for the given field to <file>.f<field>" + SIDECAR_EXTENSION);
+		System.out.println();
+
+		File in = new File(Util.argKey(args, "-in", null));
+		int field = Integer.parseInt(Util.argKey(args, "-field", null));
+		int maxValues = Integer.parseInt(Util.argKey(args, "-max", Integer.toString(DEFAULT_MAX_VALUES)));
+		BitmapIndex index = build(in, field, maxValues);
+		index.write(sidecarFor(in, field), in.length());
+		System.out.printf("Wrote index of %,d values for %,d records.\n", index.values.length, index.recordCount());
+	}
+}
@@ -0,0 +1,169 @@
+package ar.util.memoryMapping;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**Read-only view of a (possibly very large) file mapped once as a set of fixed-size chunks.
+ *
+ * nio memory maps are limited to int-indices, so a file larger than 2GB cannot be
+ * mapped as a single buffer.  BigFileByteBuffer addresses this by sliding a window
+ * across the file, but that requires remapping whenever a read falls outside of the window.
+ * This class instead maps the whole file up front as an array of chunks (each a power-of-two
+ * size) and resolves a long position to a chunk with a shift and a mask.
+ *
+ * Values that straddle a chunk boundary are assembled byte-by-byte (big-endian,
+ * to match java.nio.ByteBuffer defaults).
+ *
+ * The absolute-position get methods do not modify any shared state, so a single instance
+ * can be read from many threads without synchronization.  The relative get methods
+ * use a cursor and are NOT thread safe.
+ *
+ * Sub-ranges of the file can be viewed with "slice".  Slices share the underlying maps
+ * (nothing is remapped) and are zero-based relative to the start of the slice.
+ *
+ * THIS CLASS ASSUMES THE FILE SIZE DOES NOT CHANGE.
+ */
+public class ChunkedFileByteBuffer implements MappedFile {
+	/**Default chunk size (1GB).**/
+	public static final int DEFAULT_CHUNK_SIZE = 1<<30;
+
+	private final MappedByteBuffer[] chunks;
+	private final int shift;
+	private final long mask;
+	private final long start;
+	private final long end;
+	private long cursor=0;
+
+	/**Map the whole file using the default chunk size.**/
+	public ChunkedFileByteBuffer(File source) throws IOException {this(source, DEFAULT_CHUNK_SIZE);}
+
+	/**
+	 * @param source File to map
+	 * @param chunkSize Size of each mapped chunk; must be a power of two
+	 * @throws IOException Thrown when file opening or memory mapping fails.
+	 */
+	public ChunkedFileByteBuffer(File source, int chunkSize) throws IOException {
+		if (chunkSize <= 0 || Integer.bitCount(chunkSize) != 1) {
+			throw new IllegalArgumentException("Chunk size must be a positive power of two; found " + chunkSize);
+		}
+
+		this.shift = Integer.numberOfTrailingZeros(chunkSize);
+		this.mask = chunkSize-1;
+
+		try (RandomAccessFile file = new RandomAccessFile(source, "r");
+			FileChannel channel = file.getChannel()) {
+			long size = channel.size();
+			int count = (int) ((size+mask) >>> shift);
+			chunks = new MappedByteBuffer[count];
+			for (int i=0; i<count; i++) {
+				long offset = ((long) i) << shift;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(chunkSize, size-offset));
+			}
+			this.start = 0;
+			this.end = size;
+		}
+	}
+
+	private ChunkedFileByteBuffer(MappedByteBuffer[] chunks, int shift, long start, long end) {
+		this.chunks = chunks;
+		this.shift = shift;
+		this.mask = (1L<<shift)-1;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**View of the indicated range of this buffer.
+	 * Offsets are relative to this buffer; the returned buffer is zero-based at "from".
+	 * No remapping is done, the new view shares all chunks with this one.
+	 *
+	 * @param from Inclusive start of the range
+	 * @param to Exclusive end of the range
+	 */
+	public ChunkedFileByteBuffer slice(long from, long to) {
+		if (from < 0 || to < from || start+to > end) {
+			throw new IllegalArgumentException(String.format("Invalid slice %d-%d of buffer with capacity %d", from, to, capacity()));
+		}
+		return new ChunkedFileByteBuffer(chunks, shift, start+from, start+to);
+	}
+
+	private int chunk(long filePos) {return (int) (filePos >>> shift);}
+	private int offset(long filePos) {return (int) (filePos & mask);}
+
+	/**Can a value of the given width be read from a single chunk?**/
+	private boolean within(long filePos, int bytes) {return offset(filePos) + bytes <= (mask+1);}
+
+	/**Assemble a big-endian value from bytes that may span chunks.**/
+	private long straddle(long filePos, int bytes) {
+		long v = 0;
+		for (int i=0; i<bytes; i++) {
+			long p = filePos+i;
+			v = (v << 8) | (chunks[chunk(p)].get(offset(p)) & 0xFF);
+		}
+		return v;
+	}
+
+	public byte get(long pos) {
+		long p = start+pos;
+		return chunks[chunk(p)].get(offset(p));
+	}
+
+	public short getShort(long pos) {
+		long p = start+pos;
+		if (within(p, 2)) {return chunks[chunk(p)].getShort(offset(p));}
+		return (short) straddle(p, 2);
+	}
+
+	public int getInt(long pos) {
+		long p = start+pos;
+		if (within(p, 4)) {return chunks[chunk(p)].getInt(offset(p));}
+		return (int) straddle(p, 4);
+	}
+
+	public long getLong(long pos) {
+		long p = start+pos;
+		if (within(p, 8)) {return chunks[chunk(p)].getLong(offset(p));}
+		return straddle(p, 8);
+	}
+
+	public char getChar(long pos) {
+		long p = start+pos;
+		if (within(p, 2)) {return chunks[chunk(p)].getChar(offset(p));}
+		return (char) straddle(p, 2);
+	}
+
+	public float getFloat(long pos) {return Float.intBitsToFloat(getInt(pos));}
+	public double getDouble(long pos) {return Double.longBitsToDouble(getLong(pos));}
+
+	public byte get() {byte v = get(cursor); cursor+=1; return v;}
+	public short getShort() {short v = getShort(cursor); cursor+=2; return v;}
+	public int getInt() {int v = getInt(cursor); cursor+=4; return v;}
+	public long getLong() {long v = getLong(cursor); cursor+=8; return v;}
+	public char getChar() {char v = getChar(cursor); cursor+=2; return v;}
+	public float getFloat() {float v = getFloat(cursor); cursor+=4; return v;}
+	public double getDouble() {double v = getDouble(cursor); cursor+=8; return v;}
+
+	/**Copy "length" bytes, starting at buffer position "offset", into the target array.**/
+	public void get(byte[] target, long offset, int length) {
+		int copied = 0;
+		while (copied < length) {
+			long p = start+offset+copied;
+			int len = (int) Math.min(length-copied, (mask+1)-offset(p));
+			ByteBuffer chunk = chunks[chunk(p)].duplicate();
+			chunk.position(offset(p));
+			chunk.get(target, copied, len);
+			copied += len;
+		}
+	}
+
+	public long capacity() {return end-start;}
+	public long position() {return cursor;}
+
+	/**Set the cursor used by the relative get methods.**/
+	public void position(long pos) {this.cursor = pos;}
+
+	public long filePosition() {return start;}
+}
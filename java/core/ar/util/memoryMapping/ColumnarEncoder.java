@@ -0,0 +1,402 @@
+package ar.util.memoryMapping;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import ar.glyphsets.implicitgeometry.IndexedEncoding;
+import ar.util.DelimitedReader;
+import ar.util.Util;
+import ar.util.memoryMapping.MemMapEncoder.TYPE;
+
+/**Utility for encoding data into the columnar, chunked binary format (hbin version 2).
+ *
+ * The row-major format produced by MemMapEncoder stores one fixed-width record after another.
+ * This format instead groups records into chunks and stores each chunk column-by-column.
+ * Each chunk carries the min/max/count of every column, so readers can (1) touch only the
+ * columns they need and (2) skip entire chunks based on their statistics without
+ * reading any of the chunk's data pages.
+ *
+ * Field types are described with the same type characters as MemMapEncoder
+ * (s/i/l/f/d/c/b, with 'x' to skip a source field).
+ *
+ * File format: header + chunks + directory
+ *
+ * Header:
+ *
+ * + Version Number (Int): Always VERSION_ID for this format
+ * + Field Count (Int): How many fields are in each record
+ * + Field Types ([Char]): Type characters, one for each field.  Cannot include 'x'
+ * + Chunk Records (Int): Number of records in each chunk (the last chunk may have fewer)
+ * + Record Count (Long): Total number of records in the file
+ * + Directory Offset (Long): Where the chunk directory starts
+ *
+ * Chunk: The column values of the chunk's records, first all values of field 0, then field 1, etc.
+ *
+ * Directory:
+ *
+ * + Chunk Count (Int)
+ * + File statistics: For each field, min (Double), max (Double) and count of non-NaN values (Long)
+ * + Chunk entries: For each chunk, record count (Int) and then for each field
+ *   the column offset (Long), min (Double), max (Double) and count of non-NaN values (Long)
+ *
+ * Min/max are stored as doubles regardless of the field type.
+ */
+public class ColumnarEncoder {
+	/**(Magic) Number as the first value in the file to indicate the columnar format.*/
+	public static final int VERSION_ID = -2;
+
+	/**Default number of records in a chunk.**/
+	public static final int DEFAULT_CHUNK_RECORDS = 1<<16;
+
+	/**Information found in the header and directory of a columnar file.**/
+	@SuppressWarnings("javadoc")
+	public static final class Header {
+		public final int version;
+		public final TYPE[] types;
+		public final int chunkRecords;
+		public final long recordCount;
+		public final long directoryOffset;
+
+		/**File-wide statistics, indexed by field.**/
+		public final double[] min, max;
+		public final long[] count;
+
+		/**Per-chunk information, indexed by chunk then field.**/
+		public final int[] chunkSizes;
+		public final long[][] columnOffsets;
+		public final double[][] chunkMin, chunkMax;
+		public final long[][] chunkCount;
+
+		private Header(int version, TYPE[] types, int chunkRecords, long recordCount, long directoryOffset,
+				double[] min, double[] max, long[] count,
+				int[] chunkSizes, long[][] columnOffsets, double[][] chunkMin, double[][] chunkMax, long[][] chunkCount) {
+			this.version = version;
+			this.types = types;
+			this.chunkRecords = chunkRecords;
+			this.recordCount = recordCount;
+			this.directoryOffset = directoryOffset;
+			this.min = min;
+			this.max = max;
+			this.count = count;
+			this.chunkSizes = chunkSizes;
+			this.columnOffsets = columnOffsets;
+			this.chunkMin = chunkMin;
+			this.chunkMax = chunkMax;
+			this.chunkCount = chunkCount;
+		}
+
+		/**How many chunks are in the file?**/
+		public int chunks() {return chunkSizes.length;}
+
+		/**Parse the header and directory of the given file.**/
+		public static Header from(MappedFile buffer) {
+			long cursor = 0;
+			int version = buffer.getInt(cursor); cursor += TYPE.INT.bytes;
+			if (version != VERSION_ID) {
+				throw new IllegalArgumentException(String.format("Unexpected version number in file %d; expected %d", version, VERSION_ID));
+			}
+
+			int fields = buffer.getInt(cursor); cursor += TYPE.INT.bytes;
+			TYPE[] types = new TYPE[fields];
+			for (int f=0; f<fields; f++) {
+				types[f] = TYPE.typeFor(buffer.getChar(cursor));
+				cursor += TYPE.CHAR.bytes;
+			}
+			int chunkRecords = buffer.getInt(cursor); cursor += TYPE.INT.bytes;
+			long recordCount = buffer.getLong(cursor); cursor += TYPE.LONG.bytes;
+			long directoryOffset = buffer.getLong(cursor);
+
+			cursor = directoryOffset;
+			int chunks = buffer.getInt(cursor); cursor += TYPE.INT.bytes;
+
+			double[] min = new double[fields];
+			double[] max = new double[fields];
+			long[] count = new long[fields];
+			for (int f=0; f<fields; f++) {
+				min[f] = buffer.getDouble(cursor); cursor += TYPE.DOUBLE.bytes;
+				max[f] = buffer.getDouble(cursor); cursor += TYPE.DOUBLE.bytes;
+				count[f] = buffer.getLong(cursor); cursor += TYPE.LONG.bytes;
+			}
+
+			int[] chunkSizes = new int[chunks];
+			long[][] columnOffsets = new long[chunks][fields];
+			double[][] chunkMin = new double[chunks][fields];
+			double[][] chunkMax = new double[chunks][fields];
+			long[][] chunkCount = new long[chunks][fields];
+			for (int c=0; c<chunks; c++) {
+				chunkSizes[c] = buffer.getInt(cursor); cursor += TYPE.INT.bytes;
+				for (int f=0; f<fields; f++) {
+					columnOffsets[c][f] = buffer.getLong(cursor); cursor += TYPE.LONG.bytes;
+					chunkMin[c][f] = buffer.getDouble(cursor); cursor += TYPE.DOUBLE.bytes;
+					chunkMax[c][f] = buffer.getDouble(cursor); cursor += TYPE.DOUBLE.bytes;
+					chunkCount[c][f] = buffer.getLong(cursor); cursor += TYPE.LONG.bytes;
+				}
+			}
+
+			return new Header(version, types, chunkRecords, recordCount, directoryOffset,
+					min, max, count,
+					chunkSizes, columnOffsets, chunkMin, chunkMax, chunkCount);
+		}
+	}
+
+	/**Accumulates records into column buffers and writes a chunk each time the buffers fill.
+	 * Records are added a field at a time with "put" and completed with "endRecord".
+	 * Call "close" after the last record to write the directory.
+	 */
+	public static final class Writer implements AutoCloseable {
+		private final RandomAccessFile file;
+		private final FileChannel channel;
+		private final TYPE[] types;
+		private final int chunkRecords;
+		private final ByteBuffer[] columns;
+		private final long recordCountOffset;
+
+		private final double[] min, max;
+		private final long[] count;
+		private final double[] currentMin, currentMax;
+		private final long[] currentCount;
+		private int currentRecords = 0;
+		private long recordCount = 0;
+		private long position;
+
+		private ByteBuffer directory = ByteBuffer.allocate(1024);
+		private int chunks = 0;
+
+		/**@param target File to write into (existing contents are replaced)
+		 * @param types Type of each field (cannot include 'x')
+		 * @param chunkRecords Number of records per chunk
+		 */
+		public Writer(File target, TYPE[] types, int chunkRecords) throws IOException {
+			if (chunkRecords <= 0) {throw new IllegalArgumentException("Chunk records must be positive; found " + chunkRecords);}
+			for (TYPE t: types) {
+				if (t == TYPE.X) {throw new IllegalArgumentException("Skip type 'x' cannot be written to the output.");}
+			}
+
+			this.types = types;
+			this.chunkRecords = chunkRecords;
+			this.min = filled(types.length, Double.POSITIVE_INFINITY);
+			this.max = filled(types.length, Double.NEGATIVE_INFINITY);
+			this.count = new long[types.length];
+			this.currentMin = new double[types.length];
+			this.currentMax = new double[types.length];
+			this.currentCount = new long[types.length];
+			resetChunkStats();
+
+			this.columns = new ByteBuffer[types.length];
+			for (int f=0; f<types.length; f++) {
+				columns[f] = ByteBuffer.allocateDirect(chunkRecords * types[f].bytes);
+			}
+
+			if (target.exists()) {target.delete();}
+			this.file = new RandomAccessFile(target, "rw");
+			this.channel = file.getChannel();
+
+			ByteBuffer header = ByteBuffer.allocate(TYPE.INT.bytes*3 + TYPE.CHAR.bytes*types.length + TYPE.LONG.bytes*2);
+			header.putInt(VERSION_ID);
+			header.putInt(types.length);
+			for (TYPE t: types) {header.putChar(MemMapEncoder.typeChar(t));}
+			header.putInt(chunkRecords);
+			recordCountOffset = header.position();
+			header.putLong(0);	//Record count, filled in on close
+			header.putLong(-1); //Directory offset, filled in on close
+			header.flip();
+			position = write(header, 0);
+		}
+
+		private static double[] filled(int length, double v) {
+			double[] vs = new double[length];
+			Arrays.fill(vs, v);
+			return vs;
+		}
+
+		private void resetChunkStats() {
+			Arrays.fill(currentMin, Double.POSITIVE_INFINITY);
+			Arrays.fill(currentMax, Double.NEGATIVE_INFINITY);
+			Arrays.fill(currentCount, 0);
+		}
+
+		private long write(ByteBuffer bytes, long at) throws IOException {
+			while (bytes.hasRemaining()) {at += channel.write(bytes, at);}
+			return at;
+		}
+
+		/**Write a value into the given field of the current record.
+		 * Strings are parsed according to the field type, numbers are converted.**/
+		public void put(int field, Object value) {
+			ByteBuffer col = columns[field];
+			double v;
+			switch (types[field]) {
+				case SHORT: {short s = value instanceof Number ? ((Number) value).shortValue() : Short.parseShort(value.toString()); col.putShort(s); v=s; break;}
+				case INT: {int i = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString()); col.putInt(i); v=i; break;}
+				case LONG: {long l = value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString()); col.putLong(l); v=l; break;}
+				case FLOAT: {float fl = value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(value.toString()); col.putFloat(fl); v=fl; break;}
+				case DOUBLE: {double d = value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString()); col.putDouble(d); v=d; break;}
+				case BYTE: {byte b = value instanceof Number ? ((Number) value).byteValue() : Byte.parseByte(value.toString()); col.put(b); v=b; break;}
+				case CHAR: {char c = value instanceof Character ? (Character) value : value.toString().charAt(0); col.putChar(c); v=c; break;}
+				case STRING: {
+					//Only string codes can be stored; the dictionary stays with the source hbin file (see StringTable.loadFor) 
+					if (!(value instanceof Number)) {throw new IllegalArgumentException("String fields can only be written as codes (convert from an hbin file).");}
+					int i = ((Number) value).intValue(); col.putInt(i); v=i; break;}
+				default: throw new IllegalArgumentException("Unknown type: " + types[field]);
+			}
+
+			if (!Double.isNaN(v)) {
+				currentMin[field] = Math.min(currentMin[field], v);
+				currentMax[field] = Math.max(currentMax[field], v);
+				currentCount[field]++;
+			}
+		}
+
+		/**Mark the current record complete.  Writes out the chunk if it is full.**/
+		public void endRecord() throws IOException {
+			currentRecords++;
+			recordCount++;
+			if (currentRecords == chunkRecords) {flushChunk();}
+		}
+
+		private void flushChunk() throws IOException {
+			if (currentRecords == 0) {return;}
+
+			ensureDirectory(TYPE.INT.bytes + types.length*(TYPE.LONG.bytes*2 + TYPE.DOUBLE.bytes*2));
+			directory.putInt(currentRecords);
+			for (int f=0; f<types.length; f++) {
+				ByteBuffer col = columns[f];
+				col.flip();
+				directory.putLong(position);
+				directory.putDouble(currentMin[f]);
+				directory.putDouble(currentMax[f]);
+				directory.putLong(currentCount[f]);
+				position = write(col, position);
+				col.clear();
+
+				min[f] = Math.min(min[f], currentMin[f]);
+				max[f] = Math.max(max[f], currentMax[f]);
+				count[f] += currentCount[f];
+			}
+			chunks++;
+			currentRecords = 0;
+			resetChunkStats();
+		}
+
+		/**Grow the (in memory) directory so it can take the given number of bytes.**/
+		private void ensureDirectory(int bytes) {
+			if (directory.remaining() < bytes) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(directory.capacity()*2, directory.position() + bytes));
+				directory.flip();
+				larger.put(directory);
+				directory = larger;
+			}
+		}
+
+		/**Write remaining records, the directory and the final header values.**/
+		public void close() throws IOException {
+			try {
+				flushChunk();
+				long directoryOffset = position;
+
+				ByteBuffer stats = ByteBuffer.allocate(TYPE.INT.bytes + types.length*(TYPE.DOUBLE.bytes*2 + TYPE.LONG.bytes));
+				stats.putInt(chunks);
+				for (int f=0; f<types.length; f++) {
+					stats.putDouble(min[f]);
+					stats.putDouble(max[f]);
+					stats.putLong(count[f]);
+				}
+				stats.flip();
+				position = write(stats, position);
+				directory.flip();
+				position = write(directory, position);
+
+				ByteBuffer fixup = ByteBuffer.allocate(TYPE.LONG.bytes*2);
+				fixup.putLong(recordCount);
+				fixup.putLong(directoryOffset);
+				fixup.flip();
+				write(fixup, recordCountOffset);
+			} finally {
+				channel.close();
+				file.close();
+			}
+		}
+	}
+
+	/**Write from source text to the indicated binary file.
+	 *
+	 * @param sourceFile Delimited text file
+	 * @param skip Number of header lines in the source file
+	 * @param target Binary file to write
+	 * @param types Type characters, one per source field ('x' to skip a field)
+	 * @param chunkRecords Number of records per chunk
+	 */
+	public static void write(File sourceFile, int skip, File target, char[] types, int chunkRecords) throws Exception {
+		TYPE[] allTypes = new TYPE[types.length];
+		int kept = 0;
+		for (int i=0; i<types.length; i++) {
+			allTypes[i] = TYPE.typeFor(types[i]);
+			if (allTypes[i] != TYPE.X) {kept++;}
+		}
+
+		TYPE[] keep = new TYPE[kept];
+		for (int i=0, k=0; i<allTypes.length; i++) {
+			if (allTypes[i] != TYPE.X) {keep[k++] = allTypes[i];}
+		}
+
+		DelimitedReader source = new DelimitedReader(sourceFile, skip, DelimitedReader.CSV);
+		long entriesRead = 0;
+		try (Writer writer = new Writer(target, keep, chunkRecords)) {
+			while (source.hasNext()) {
+				String[] entry = source.next();
+				if (entry == null) {continue;}
+				for (int i=0, f=0; i<allTypes.length; i++) {
+					if (allTypes[i] == TYPE.X) {continue;}
+					writer.put(f++, entry[i]);
+				}
+				writer.endRecord();
+				entriesRead++;
+				if (entriesRead % 100000 ==0) {System.out.printf("Processed %,d entries.\n", entriesRead);}
+			}
+			System.out.printf("Processed %,d entries.\n", entriesRead);
+		} catch (Exception e) {
+			throw new RuntimeException(String.format("Error on or near entry %,d", entriesRead), e);
+		}
+	}
+
+	/**Convert a row-major file produced by MemMapEncoder into the columnar format.**/
+	public static void convert(File source, File target, int chunkRecords) throws Exception {
+		MappedFile buffer = MappedFile.Util.make(source, FileChannel.MapMode.READ_ONLY, Integer.MAX_VALUE);
+		MemMapEncoder.Header header = MemMapEncoder.Header.from(buffer);
+		int[] offsets = MemMapEncoder.recordOffsets(header.types);
+		long entries = header.records(buffer.capacity());
+
+		try (Writer writer = new Writer(target, header.types, chunkRecords)) {
+			for (long i=0; i<entries; i++) {
+				long recordOffset = (i*header.recordLength)+header.dataTableOffset;
+				IndexedEncoding entry = new IndexedEncoding(header.types, recordOffset, buffer, offsets);
+				for (int f=0; f<header.types.length; f++) {writer.put(f, entry.get(f));}
+				writer.endRecord();
+			}
+		}
+	}
+
+	/**Utility for converting CSVs (or row-major hbin files) to columnar binary encodings.**/
+	public static void main(String[] args) throws Exception {
+		System.out.println("Usage: ColumnarEncoder -in <file> -out <file> [-skip <int> -types <string>] [-chunk <int>]");
+		System.out.println("Type string is a string made up of s/i/l/f/d/c/b for short/int/long/float/double/char/byte ('x' to skip).");
+		System.out.println("If the input file ends with .hbin, it is converted from the row-major format and -skip/-types are ignored.");
+		System.out.println();
+
+		File in = new File(Util.argKey(args, "-in", null));
+		File out = new File(Util.argKey(args, "-out", null));
+		int chunk = Integer.parseInt(Util.argKey(args, "-chunk", Integer.toString(DEFAULT_CHUNK_RECORDS)));
+
+		if (in.getName().endsWith(".hbin")) {
+			convert(in, out, chunk);
+		} else {
+			int skip = Integer.parseInt(Util.argKey(args, "-skip", "1"));
+			char[] types = Util.argKey(args, "-types", "").toCharArray();
+			write(in, skip, out, types, chunk);
+		}
+	}
+}
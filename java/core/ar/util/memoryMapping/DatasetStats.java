@@ -0,0 +1,344 @@
+package ar.util.memoryMapping;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import ar.glyphsets.implicitgeometry.IndexedEncoding;
+import ar.glyphsets.implicitgeometry.Shaper;
+import ar.util.Util;
+import ar.util.memoryMapping.MemMapEncoder.TYPE;
+
+/**Whole-file statistics for an hbin file: per-field min, max, count and sum,
+ * plus a cache of dataset bounds computed for particular shapers.
+ *
+ * Statistics are kept in a sidecar file (the hbin file name with ".stats" appended).
+ * The encoders write the sidecar when they encode a file and the "main" method
+ * of this class rebuilds it (and the zone map) for an existing file.
+ *
+ * Bounds depend on the shaper, so they cannot be computed when a file is encoded.
+ * Instead, the first time MemMapList scans for bounds they are added to the sidecar,
+ * keyed by the shaper's class and description (see Shaper.Described; bounds are not 
+ * recorded for other shapers).  Later opens with an equivalent shaper read the bounds 
+ * instead of scanning the file.
+ *
+ * Sidecars are written to a temporary file and then renamed over the old sidecar,
+ * so readers see either the old or the new sidecar, never a partial one.
+ *
+ * Sidecar format:
+ *
+ * + Version Number (Int): VERSION_ID
+ * + Source Length (Long): Size of the hbin file the stats were computed for (used to detect stale sidecars)
+ * + Record Count (Long)
+ * + Field Count (Int)
+ * + Field Types ([Char]): One type character per field (as in the hbin header)
+ * + Fields: For each field min (Double), max (Double), count (Long) and sum (Double)
+ * + Bounds Count (Int)
+ * + Bounds: For each entry key length (Int), key ([Byte]), then x, y, width and height (Double)
+ */
+public class DatasetStats {
+	/**(Magic) Number as the first value in a stats sidecar.*/
+	public static final int VERSION_ID = -1;
+
+	/**Extension added to an hbin file name to get its stats sidecar.**/
+	public static final String SIDECAR_EXTENSION = ".stats";
+
+	private final long recordCount;
+	private final TYPE[] types;
+	private final double[] min, max, sum;
+	private final long[] count;
+	private final List<byte[]> boundsKeys;
+	private final List<Rectangle2D> bounds;
+
+	/**
+	 * @param recordCount Total number of records
+	 * @param types Types of the fields
+	 * @param min Minimum value of each field
+	 * @param max Maximum value of each field
+	 * @param count Number of values in each field
+	 * @param sum Sum of the values in each field
+	 */
+	public DatasetStats(long recordCount, TYPE[] types, double[] min, double[] max, long[] count, double[] sum) {
+		this(recordCount, types, min, max, count, sum, new ArrayList<byte[]>(), new ArrayList<Rectangle2D>());
+	}
+
+	private DatasetStats(long recordCount, TYPE[] types, double[] min, double[] max, long[] count, double[] sum,
+			List<byte[]> boundsKeys, List<Rectangle2D> bounds) {
+		this.recordCount = recordCount;
+		this.types = types;
+		this.min = min;
+		this.max = max;
+		this.count = count;
+		this.sum = sum;
+		this.boundsKeys = boundsKeys;
+		this.bounds = bounds;
+	}
+
+	public long recordCount() {return recordCount;}
+	public TYPE[] types() {return types;}
+	public double min(int field) {return min[field];}
+	public double max(int field) {return max[field];}
+	public long count(int field) {return count[field];}
+	public double sum(int field) {return sum[field];}
+	public double mean(int field) {return sum[field]/count[field];}
+
+	/**Bounds previously recorded for the shaper; null if there are none.**/
+	public Rectangle2D bounds(Shaper<?,?> shaper) {
+		byte[] key = key(shaper);
+		if (key == null) {return null;}
+		for (int i=0; i<boundsKeys.size(); i++) {
+			if (Arrays.equals(key, boundsKeys.get(i))) {return bounds.get(i);}
+		}
+		return null;
+	}
+
+	/**New stats object that also records the given bounds for the shaper (replacing any already recorded).
+	 * If the shaper has no key, this object is returned unchanged.
+	 */
+	public DatasetStats withBounds(Shaper<?,?> shaper, Rectangle2D r) {
+		byte[] key = key(shaper);
+		if (key == null) {return this;}
+		List<byte[]> keys = new ArrayList<>();
+		List<Rectangle2D> rs = new ArrayList<>();
+		for (int i=0; i<boundsKeys.size(); i++) {
+			if (Arrays.equals(key, boundsKeys.get(i))) {continue;}
+			keys.add(boundsKeys.get(i));
+			rs.add(bounds.get(i));
+		}
+		keys.add(key);
+		rs.add(r);
+		return new DatasetStats(recordCount, types, min, max, count, sum, keys, rs);
+	}
+
+	/**Key used to identify equivalent shapers: the class name and description of a Shaper.Described;
+	 * null for other shapers.
+	 */
+	private static byte[] key(Shaper<?,?> shaper) {
+		if (!(shaper instanceof Shaper.Described)) {return null;}
+		String description = ((Shaper.Described<?,?>) shaper).description();
+		if (description == null) {return null;}
+		return (shaper.getClass().getName() + ":" + description).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**Sidecar file for the given hbin file.**/
+	public static File sidecarFor(File hbin) {return new File(hbin.getPath() + SIDECAR_EXTENSION);}
+
+	/**Write these stats as a sidecar.
+	 * @param target Sidecar file to write
+	 * @param sourceLength Length of the file the stats describe
+	 */
+	public void write(File target, long sourceLength) throws IOException {
+		int fields = types.length;
+		int size = TYPE.INT.bytes*3 + TYPE.LONG.bytes*2 + TYPE.CHAR.bytes*fields + fields*(TYPE.DOUBLE.bytes*3+TYPE.LONG.bytes);
+		for (byte[] key: boundsKeys) {size += TYPE.INT.bytes + key.length + TYPE.DOUBLE.bytes*4;}
+
+		ByteBuffer bytes = ByteBuffer.allocate(size);
+		bytes.putInt(VERSION_ID);
+		bytes.putLong(sourceLength);
+		bytes.putLong(recordCount);
+		bytes.putInt(fields);
+		for (TYPE t: types) {bytes.putChar(MemMapEncoder.typeChar(t));}
+		for (int f=0; f<fields; f++) {
+			bytes.putDouble(min[f]);
+			bytes.putDouble(max[f]);
+			bytes.putLong(count[f]);
+			bytes.putDouble(sum[f]);
+		}
+		bytes.putInt(boundsKeys.size());
+		for (int i=0; i<boundsKeys.size(); i++) {
+			Rectangle2D r = bounds.get(i);
+			bytes.putInt(boundsKeys.get(i).length);
+			bytes.put(boundsKeys.get(i));
+			bytes.putDouble(r.getX());
+			bytes.putDouble(r.getY());
+			bytes.putDouble(r.getWidth());
+			bytes.putDouble(r.getHeight());
+		}
+		bytes.flip();
+
+		File temp = File.createTempFile(target.getName(), ".tmp", target.getAbsoluteFile().getParentFile());
+		try {
+			try (RandomAccessFile file = new RandomAccessFile(temp, "rw");
+				FileChannel channel = file.getChannel()) {
+				while (bytes.hasRemaining()) {channel.write(bytes);}
+			}
+			try {Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);}
+			catch (AtomicMoveNotSupportedException e) {Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);}
+		} finally {
+			if (temp.exists()) {temp.delete();}
+		}
+	}
+
+	/**Read a stats sidecar.
+	 * @param sidecar File to read
+	 * @param sourceLength Expected length of the described file; if it does not match, null is returned.  Negative to skip the check.
+	 * @return The stats or null if they do not match the source length
+	 */
+	public static DatasetStats read(File sidecar, long sourceLength) throws IOException {
+		MappedFile buffer = new FileByteBuffer(sidecar, 0, sidecar.length());
+		int version = buffer.getInt();
+		if (version != VERSION_ID) {
+			throw new IllegalArgumentException(String.format("Unexpected version number in stats file %d; expected %d", version, VERSION_ID));
+		}
+		long length = buffer.getLong();
+		if (sourceLength >= 0 && length != sourceLength) {return null;}
+
+		long recordCount = buffer.getLong();
+		int fields = buffer.getInt();
+		TYPE[] types = new TYPE[fields];
+		for (int f=0; f<fields; f++) {types[f] = TYPE.typeFor(buffer.getChar());}
+		double[] min = new double[fields], max = new double[fields], sum = new double[fields];
+		long[] count = new long[fields];
+		for (int f=0; f<fields; f++) {
+			min[f] = buffer.getDouble();
+			max[f] = buffer.getDouble();
+			count[f] = buffer.getLong();
+			sum[f] = buffer.getDouble();
+		}
+
+		int entries = buffer.getInt();
+		List<byte[]> keys = new ArrayList<>();
+		List<Rectangle2D> bounds = new ArrayList<>();
+		for (int i=0; i<entries; i++) {
+			byte[] key = new byte[buffer.getInt()];
+			for (int b=0; b<key.length; b++) {key[b] = buffer.get();}
+			keys.add(key);
+			bounds.add(new Rectangle2D.Double(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble()));
+		}
+		return new DatasetStats(recordCount, types, min, max, count, sum, keys, bounds);
+	}
+
+	/**Load the stats sidecar of an hbin file.
+	 * @return The stats or null if there is no sidecar or if it is stale.
+	 */
+	public static DatasetStats loadFor(File hbin) {
+		File sidecar = sidecarFor(hbin);
+		if (!sidecar.exists()) {return null;}
+		try {return read(sidecar, hbin.length());}
+		catch (Exception e) {return null;}
+	}
+
+	/**Accumulate stats one record at a time.
+	 * Values are supplied field-by-field with "add" and records are completed with "endRecord".
+	 */
+	public static final class Builder {
+		private final TYPE[] types;
+		private final double[] min, max, sum;
+		private final long[] count;
+		private long records = 0;
+
+		public Builder(TYPE[] types) {
+			this.types = types;
+			min = new double[types.length];
+			max = new double[types.length];
+			sum = new double[types.length];
+			count = new long[types.length];
+			Arrays.fill(min, Double.POSITIVE_INFINITY);
+			Arrays.fill(max, Double.NEGATIVE_INFINITY);
+		}
+
+		/**Include a value for the given field of the current record.**/
+		public void add(int field, double value) {
+			if (value < min[field]) {min[field] = value;}
+			if (value > max[field]) {max[field] = value;}
+			sum[field] += value;
+			count[field]++;
+		}
+
+		/**Mark the current record complete.**/
+		public void endRecord() {records++;}
+
+		/**Include everything accumulated by another builder.**/
+		public Builder merge(Builder other) {
+			for (int f=0; f<types.length; f++) {
+				min[f] = Math.min(min[f], other.min[f]);
+				max[f] = Math.max(max[f], other.max[f]);
+				sum[f] += other.sum[f];
+				count[f] += other.count[f];
+			}
+			records += other.records;
+			return this;
+		}
+
+		public DatasetStats build() {
+			return new DatasetStats(records, types, min.clone(), max.clone(), count.clone(), sum.clone());
+		}
+	}
+
+	/**Compute the stats of an existing row-major hbin file.**/
+	public static DatasetStats build(File hbin) throws IOException {
+		final MappedFile buffer = new ChunkedFileByteBuffer(hbin);
+		final MemMapEncoder.Header header = MemMapEncoder.Header.from(buffer);
+		final long records = header.records(buffer.capacity());
+
+		ForkJoinPool pool = new ForkJoinPool();
+		try {return pool.invoke(new BuildTask(buffer, header, 0, records)).build();}
+		finally {pool.shutdown();}
+	}
+
+	/**Computes the stats of a range of records, splitting the range across threads.**/
+	private static final class BuildTask extends RecursiveTask<Builder> {
+		private static final long serialVersionUID = 4707062553146203155L;
+		private static final long TASK_SIZE = 100000;
+		private final MappedFile buffer;
+		private final MemMapEncoder.Header header;
+		private final long low, high;
+
+		public BuildTask(MappedFile buffer, MemMapEncoder.Header header, long low, long high) {
+			this.buffer = buffer;
+			this.header = header;
+			this.low = low;
+			this.high = high;
+		}
+
+		@Override
+		protected Builder compute() {
+			if (high-low > TASK_SIZE) {
+				long mid = Util.mean(low, high);
+				BuildTask top = new BuildTask(buffer, header, low, mid);
+				BuildTask bottom = new BuildTask(buffer, header, mid, high);
+				invokeAll(top, bottom);
+				return top.getRawResult().merge(bottom.getRawResult());
+			}
+
+			Builder stats = new Builder(header.types);
+			int[] offsets = MemMapEncoder.recordOffsets(header.types);
+			for (long r=low; r<high; r++) {
+				IndexedEncoding entry = new IndexedEncoding(header.types, header.dataTableOffset + r*header.recordLength, buffer, offsets);
+				for (int f=0; f<header.types.length; f++) {
+					Object v = entry.get(f);
+					stats.add(f, v instanceof Character ? (Character) v : ((Number) v).doubleValue());
+				}
+				stats.endRecord();
+			}
+			return stats;
+		}
+	}
+
+	/**Utility for rebuilding the metadata sidecars (stats and zone map) of existing hbin files.**/
+	public static void main(String[] args) throws Exception {
+		System.out.println("Usage: DatasetStats -in <file> [-zone <int>]");
+		System.out.println("Rebuilds <file>" + SIDECAR_EXTENSION + " and <file>" + ZoneMap.SIDECAR_EXTENSION);
+		System.out.println();
+
+		File in = new File(Util.argKey(args, "-in", null));
+		int zoneRecords = Integer.parseInt(Util.argKey(args, "-zone", Integer.toString(ZoneMap.DEFAULT_ZONE_RECORDS)));
+		DatasetStats stats = build(in);
+		stats.write(sidecarFor(in), in.length());
+		ZoneMap zones = ZoneMap.build(in, zoneRecords);
+		zones.write(ZoneMap.sidecarFor(in), in.length());
+		System.out.printf("Wrote stats and %,d zones for %,d records.\n", zones.zones(), stats.recordCount());
+	}
+}
@@ -34,6 +34,8 @@ public interface MappedFile {
 		public static final MappedFile make(File f, FileChannel.MapMode mode, int bufferSize) throws IOException {
 			if (mode == FileChannel.MapMode.READ_ONLY && f != null && f.length() < Integer.MAX_VALUE) {
 				return new FileByteBuffer(f, 0, f.length());
+			} else if (mode == FileChannel.MapMode.READ_ONLY && f != null) {
+				return new ChunkedFileByteBuffer(f);
 			} else {
 				return new BigFileByteBuffer(f, bufferSize);
 			}
@@ -48,6 +50,8 @@ public interface MappedFile {
 			if (mode == FileChannel.MapMode.READ_ONLY 
 					&& (end > 0 && (end-offset) < Integer.MAX_VALUE)) {
 				return new FileByteBuffer(f, offset, end);
+			} else if (mode == FileChannel.MapMode.READ_ONLY && end > 0) {
+				return new ChunkedFileByteBuffer(f).slice(offset, end);
 			} else {
 				BigFileByteBuffer bf = new BigFileByteBuffer(f, bufferSize);
 				if (offset >= 0) {bf.position(offset);}
@@ -3,6 +3,7 @@ package ar.util.memoryMapping;
 import java.nio.*;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.io.*;
 
 import ar.glyphsets.implicitgeometry.IndexedEncoding;
@@ -22,34 +23,43 @@ import ar.util.DelimitedReader;
  *   + d -- Double (eight bytes)
  *   + c -- Char (two bytes)
  *   + b -- Byte (one byte)
- *   + v -- VarChar (eight bytes) 
+ *   + v -- String (four bytes) 
  *
  * Additionally 'x' can be used to indicate that a source-file field should not
- * be included in the output file. VarChar ('v') entries are actually pointers to the string table.
+ * be included in the output file. String ('v') entries are codes into the string table
+ * (one dictionary per file, see StringTable), so repeated categories take four bytes per record
+ * and can be compared without decoding.
  * 
- * NOTE: 'v' does not work yet. 
- * 
- * File format: header + info + strings + data
+ * File format: header + info + data + strings
  * 
  * Header:
  * 
  * + Version Number (Int): Decoders should verify that they are ready for files encoded with the given version
  * + Data Offset (Long): Where is the first data record
- * + String Offset (Long): Where is the string table? (negative if there is no string table)
+ * + String Offset (Long): Where is the string table? (negative if there is no string table; data runs to the end of the file)
  * + Record Size (Int): How many fields are in each record
  * + Record Types ([Char]): Type characters (described above), one for each field.  Cannot include 'x'
  * + Info Records: Metadata not be required to interpret the file.  Currently two data records to provide max/min values for columns.  
+ * + Ordering (optional): Present when records were sorted along a space-filling curve (see "sort").
+ *       Marker Int (ORDERING_ID), curve code Char (see SpatialOrder) and the x and y field indices (Int, Int).
+ *       Readers that do not understand the ordering can ignore it because the data offset skips past it.
  */
 public class MemMapEncoder {
 	/**(Magic) Number as the first value in the file to indicate what version of the format was used.*/
 	public static final int VERSION_ID = -1;
 	
+	/**Marker at the start of the (optional) ordering information in the header.**/
+	public static final int ORDERING_ID = 0x4F524452;
+	
+	/**Bytes used by the ordering information in the header.**/
+	private static final int ORDERING_BYTES = TYPE.INT.bytes*3 + TYPE.CHAR.bytes;
+	
 	/**Types the encoder understands.
 	 * The "X" type is used to indicate that the field is being skipped.
 	 */
 	@SuppressWarnings("javadoc")
 	public enum TYPE {
-		INT(4), DOUBLE(8), LONG(8), SHORT(2), BYTE(1), CHAR(2), FLOAT(4), X(0);
+		INT(4), DOUBLE(8), LONG(8), SHORT(2), BYTE(1), CHAR(2), FLOAT(4), STRING(4), X(0);
 		
 		/**How many bytes is this type encoded with?**/
 		public final int bytes;
@@ -63,28 +73,59 @@ public class MemMapEncoder {
 			else if (t=='f') {return TYPE.FLOAT;}
 			else if (t=='b') {return TYPE.BYTE;}
 			else if (t=='c') {return TYPE.CHAR;}
+			else if (t=='v') {return TYPE.STRING;}
 			else if (t=='x') {return TYPE.X;}
 			else {throw new RuntimeException(String.format("Unknown type indicator '%s'", t));}
 		}
 	}
 	
+	/**Type character for the given type (inverse of TYPE.typeFor).**/
+	public static char typeChar(TYPE t) {
+		switch (t) {
+			case INT: return 'i';
+			case LONG: return 'l';
+			case SHORT: return 's';
+			case DOUBLE: return 'd';
+			case FLOAT: return 'f';
+			case BYTE: return 'b';
+			case CHAR: return 'c';
+			case STRING: return 'v';
+			default: return 'x';
+		}
+	}
+
 	/**Container for information found in the header.**/
 	@SuppressWarnings("javadoc")
 	public static final class Header {
 		public final int version;
 		public final long dataTableOffset;
+		/**Where the string table starts; negative if there is no string table.**/
+		public final long stringTableOffset;
 		public final TYPE[] types;
 		public final int recordLength;
 		public final long maximaRecordOffset;
 		public final long minimaRecordOffset;
 		
+		/**Space-filling curve the records are sorted along; null if the records are not sorted.**/
+		public final SpatialOrder ordering;
+		/**Fields used as x and y for the ordering; -1 if the records are not sorted.**/
+		public final int orderX, orderY;
+		
 		public Header(int version, TYPE[] types, long dataTableOffset, long infoRecordOffset) {
+			this(version, types, dataTableOffset, -1, infoRecordOffset, null, -1, -1);
+		}
+		
+		public Header(int version, TYPE[] types, long dataTableOffset, long stringTableOffset, long infoRecordOffset, SpatialOrder ordering, int orderX, int orderY) {
 			this.version = version;
 			this.dataTableOffset = dataTableOffset;
+			this.stringTableOffset = stringTableOffset;
 			this.types = types;
 			this.recordLength = recordLength(types);
 			this.maximaRecordOffset = infoRecordOffset;
 			this.minimaRecordOffset = infoRecordOffset+recordLength;
+			this.ordering = ordering;
+			this.orderX = orderX;
+			this.orderY = orderY;
 		}
 		
 		/**Parse a given file, return a Header object.**/
@@ -95,9 +136,7 @@ public class MemMapEncoder {
 			}
 
 			long dataTableOffset = buffer.getLong();
-			
-			@SuppressWarnings("unused")
-			long stringTableOffset = buffer.getLong(); //Ignored; placed for future expansion
+			long stringTableOffset = buffer.getLong();
 			
 			int recordEntries = buffer.getInt();
 
@@ -109,10 +148,24 @@ public class MemMapEncoder {
 			
 			long infoRecordOffset = buffer.position();
 			
+			long orderingOffset = infoRecordOffset + 2*recordLength(types);
+			if (orderingOffset + ORDERING_BYTES <= dataTableOffset 
+					&& buffer.getInt(orderingOffset) == ORDERING_ID) {
+				SpatialOrder ordering = SpatialOrder.fromCode(buffer.getChar(orderingOffset+TYPE.INT.bytes));
+				int orderX = buffer.getInt(orderingOffset+TYPE.INT.bytes+TYPE.CHAR.bytes);
+				int orderY = buffer.getInt(orderingOffset+TYPE.INT.bytes*2+TYPE.CHAR.bytes);
+				return new Header(version, types, dataTableOffset, stringTableOffset, infoRecordOffset, ordering, orderX, orderY);
+			}
 			
-			return new Header(version, types, dataTableOffset, infoRecordOffset);
+			return new Header(version, types, dataTableOffset, stringTableOffset, infoRecordOffset, null, -1, -1);
 		}
 		
+		/**Where the data records end in a file of the given size.**/
+		public long dataEnd(long fileSize) {return stringTableOffset < 0 ? fileSize : stringTableOffset;}
+		
+		/**How many records are in a file of the given size.**/
+		public long records(long fileSize) {return (dataEnd(fileSize)-dataTableOffset)/recordLength;}
+		
 	}
 	
 	
@@ -133,11 +186,11 @@ public class MemMapEncoder {
 	
 
 	/**Which are the types of the fields kept (e.g. are not 'x')**/
-	private static char[] keepTypes(char[] types) {
+	static char[] keepTypes(char[] types) {
 		ArrayList<Character> keeping = new ArrayList<Character>();
 		for (char c: types) {
-			if (c != 's' && c != 'i' && c != 'c' && c != 'd' && c != 'f' && c != 'l' && c != 'x') {
-				throw new IllegalArgumentException("Invalid type marker; only i,s,l,d,f,c,x allowed, found  '" + c + "'");
+			if (c != 's' && c != 'i' && c != 'c' && c != 'd' && c != 'f' && c != 'l' && c != 'v' && c != 'x') {
+				throw new IllegalArgumentException("Invalid type marker; only i,s,l,d,f,c,v,x allowed, found  '" + c + "'");
 			} else if(c!='x') {keeping.add(c);}
 		}
 		char[] keep = new char[keeping.size()];
@@ -171,16 +224,23 @@ public class MemMapEncoder {
 	
 
 	/**Construct a header with spaces for string offset, data offset and info records to be filled in later.**/
-	private static byte[] makeHeader(char[] types) {
+	static byte[] makeHeader(char[] types) {return makeHeader(types, null, -1, -1);}
+	
+	/**Construct a header with spaces for info records to be filled in later.
+	 * If ordering is not null, the ordering information is included as well.
+	 */
+	private static byte[] makeHeader(char[] types, SpatialOrder ordering, int orderX, int orderY) {
 		byte[] version = intBytes(VERSION_ID);
 		byte[] recordHeader= recordHeader(types);
 		byte[] stringOffset = longBytes(-1);
 		byte[] minRecord = new byte[recordLength(types)];
 		byte[] maxRecord = new byte[recordLength(types)];
-		int headerSize = version.length+recordHeader.length+stringOffset.length+minRecord.length+maxRecord.length+TYPE.LONG.bytes;
+		byte[] order = ordering == null ? new byte[0] 
+				: append(intBytes(ORDERING_ID), charBytes(ordering.code), intBytes(orderX), intBytes(orderY));
+		int headerSize = version.length+recordHeader.length+stringOffset.length+minRecord.length+maxRecord.length+order.length+TYPE.LONG.bytes;
 		byte[] dataOffset = longBytes(headerSize);
 		
-		return append(version, dataOffset, stringOffset, recordHeader, minRecord, maxRecord);
+		return append(version, dataOffset, stringOffset, recordHeader, minRecord, maxRecord, order);
 	}
 	
 	/**Type header for the individual records.**/
@@ -213,6 +273,9 @@ public class MemMapEncoder {
 	}
 
 
+	/**Offset of the string offset in the header.**/
+	static final int STRING_OFFSET_POSITION = TYPE.INT.bytes + TYPE.LONG.bytes;
+	
 	/**Get a byte array of a single data value**/
 	private static byte[] asBinary(String value, char type) {
 		switch (type) {
@@ -232,30 +295,168 @@ public class MemMapEncoder {
 		
 		
 		int entriesRead = 0;
-		try(FileOutputStream file = new FileOutputStream(target)) {
-			byte[] header = makeHeader(types); 
-			file.write(header);
+		char[] keep = keepTypes(types);
+		TYPE[] keepTypes = new TYPE[keep.length];
+		for (int i=0; i<keep.length; i++) {keepTypes[i] = TYPE.typeFor(keep[i]);}
+		ZoneMap.Builder zones = new ZoneMap.Builder(keepTypes, ZoneMap.DEFAULT_ZONE_RECORDS);
+		DatasetStats.Builder stats = new DatasetStats.Builder(keepTypes);
+		StringTable.Builder strings = new StringTable.Builder();
+		
+		try {
+			try(FileOutputStream file = new FileOutputStream(target)) {
+				byte[] header = makeHeader(types); 
+				file.write(header);
 
-			while(source.hasNext()) {
-				String[] entry = source.next();
-				if (entry == null) {continue;}
-				for (int i=0;i<types.length;i++) {
-					if (types[i]=='x') {continue;}
-					byte[] value = asBinary(entry[i], types[i]);
-					file.write(value);						
+				while(source.hasNext()) {
+					String[] entry = source.next();
+					if (entry == null) {continue;}
+					for (int i=0, field=0;i<types.length;i++) {
+						if (types[i]=='x') {continue;}
+						double v;
+						if (types[i] == 'v') {
+							int code = strings.code(entry[i]);
+							file.write(intBytes(code));
+							v = code;
+						} else {
+							file.write(asBinary(entry[i], types[i]));
+							v = types[i] == 'c' ? entry[i].charAt(0) : Double.parseDouble(entry[i]);
+						}
+						zones.add(field, v);
+						stats.add(field, v);
+						field++;
+					}
+					zones.endRecord();
+					stats.endRecord();
+					entriesRead++;
+					if (entriesRead % 100000 ==0) {System.out.printf("Processed %,d entries.\n", entriesRead);}
 				}
-				entriesRead++;
-				if (entriesRead % 100000 ==0) {System.out.printf("Processed %,d entries.\n", entriesRead);}
+				System.out.printf("Processed %,d entries.\n", entriesRead);
+				if (hasStrings(keep)) {writeStrings(file.getChannel(), strings.bytes());}
 			}
-			System.out.printf("Processed %,d entries.\n", entriesRead);
 			updateMinMax(target);
-			
+			zones.build().write(ZoneMap.sidecarFor(target), target.length());
+			stats.build().write(DatasetStats.sidecarFor(target), target.length());
 		}catch (Exception e) {
 			throw new RuntimeException(String.format("Error on or near entry %,d", entriesRead), e);
 		}
 	}
 
 
+	/**Are there any string fields in the (kept) types?**/
+	static boolean hasStrings(char[] keep) {
+		for (char c: keep) {if (c == 'v') {return true;}}
+		return false;
+	}
+	
+	/**Append a string table to the end of the file and point the header at it.**/
+	static void writeStrings(FileChannel file, byte[] table) throws IOException {
+		long offset = file.size();
+		ByteBuffer bytes = ByteBuffer.wrap(table);
+		while (bytes.hasRemaining()) {file.write(bytes, offset + bytes.position());}
+		ByteBuffer position = ByteBuffer.wrap(longBytes(offset));
+		while (position.hasRemaining()) {file.write(position, STRING_OFFSET_POSITION + position.position());}
+	}
+
+	/**Write from source text to indicated binary file, with records sorted along a space-filling curve.
+	 * 
+	 * @param ordering Curve to sort along; null to leave records in source order
+	 * @param xField Field (in the output record, so 'x' fields are not counted) used as the x coordinate
+	 * @param yField Field (in the output record) used as the y coordinate
+	 */
+	public static void write(File sourceFile, int skip, File target, char[] types, SpatialOrder ordering, int xField, int yField) throws Exception {
+		write(sourceFile, skip, target, types, ordering, xField, yField, false);
+	}
+	
+	/**Write from source text to indicated binary file, optionally sorted and optionally using the ParallelEncoder.**/
+	private static void write(File sourceFile, int skip, File target, char[] types, SpatialOrder ordering, int xField, int yField, boolean parallel) throws Exception {
+		File unsorted = ordering == null ? target : new File(target.getPath() + ".unsorted");
+		if (parallel) {ParallelEncoder.write(sourceFile, skip, unsorted, types);}
+		else {write(sourceFile, skip, unsorted, types);}
+		if (ordering == null) {return;}
+		
+		sort(unsorted, target, ordering, xField, yField);
+		if (!unsorted.delete()) {unsorted.deleteOnExit();} //File may still be mapped on some platforms
+		ZoneMap.sidecarFor(unsorted).delete();
+		DatasetStats.sidecarFor(unsorted).delete();
+	}
+	
+	/**Copy an hbin file, arranging the records along a space-filling curve over the given fields.
+	 * 
+	 * Records that are close in space end up close in the file, so each segment of the file
+	 * covers a compact region.  This keeps per-task aggregates small, makes zone maps 
+	 * selective and gives sequential page access when only part of the data is visible.
+	 * The ordering is recorded in the header of the target file and a zone map sidecar is written for it.
+	 * 
+	 * Sort keys are held in memory (8 bytes per record), so at most Integer.MAX_VALUE records can be sorted.
+	 * 
+	 * @param source hbin file to read
+	 * @param target File to write (must not be the source)
+	 * @param ordering Curve to sort along
+	 * @param xField Field used as the x coordinate
+	 * @param yField Field used as the y coordinate
+	 */
+	public static void sort(File source, File target, SpatialOrder ordering, int xField, int yField) throws IOException {
+		ChunkedFileByteBuffer buffer = new ChunkedFileByteBuffer(source);
+		Header header = Header.from(buffer);
+		long records = header.records(buffer.capacity());
+		if (records > Integer.MAX_VALUE) {throw new IllegalArgumentException(String.format("Too many records to sort (%,d).", records));}
+		
+		int[] offsets = recordOffsets(header.types);
+		IndexedEncoding max = new IndexedEncoding(header.types, header.maximaRecordOffset, buffer, offsets);
+		IndexedEncoding min = new IndexedEncoding(header.types, header.minimaRecordOffset, buffer, offsets);
+		double minX = asDouble(min.get(xField)), maxX = asDouble(max.get(xField));
+		double minY = asDouble(min.get(yField)), maxY = asDouble(max.get(yField));
+		
+		//Sort key in the high bits, record index in the low 31 bits
+		long[] keys = new long[(int) records];
+		for (int i=0; i<keys.length; i++) {
+			IndexedEncoding entry = new IndexedEncoding(header.types, header.dataTableOffset + ((long) i)*header.recordLength, buffer, offsets);
+			int x = SpatialOrder.cell(asDouble(entry.get(xField)), minX, maxX);
+			int y = SpatialOrder.cell(asDouble(entry.get(yField)), minY, maxY);
+			keys[i] = (ordering.key(x, y) << 31) | i;
+		}
+		Arrays.sort(keys);
+		
+		char[] typeChars = new char[header.types.length];
+		for (int i=0; i<typeChars.length; i++) {typeChars[i] = typeChar(header.types[i]);}
+		byte[] headerBytes = makeHeader(typeChars, ordering, xField, yField);
+		byte[] info = new byte[header.recordLength*2];
+		buffer.get(info, header.maximaRecordOffset, info.length);
+		System.arraycopy(info, 0, headerBytes, (int) header.maximaRecordOffset, info.length);
+		
+		//String codes do not change, so the table is copied after the records
+		if (header.stringTableOffset >= 0) {
+			long stringOffset = headerBytes.length + records*header.recordLength;
+			System.arraycopy(longBytes(stringOffset), 0, headerBytes, STRING_OFFSET_POSITION, TYPE.LONG.bytes);
+		}
+		
+		byte[] record = new byte[header.recordLength];
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target), 1<<20)) {
+			out.write(headerBytes);
+			for (int i=0; i<keys.length; i++) {
+				long index = keys[i] & Integer.MAX_VALUE;
+				buffer.get(record, header.dataTableOffset + index*header.recordLength, record.length);
+				out.write(record);
+			}
+			if (header.stringTableOffset >= 0) {
+				byte[] strings = new byte[(int) (buffer.capacity()-header.stringTableOffset)];
+				buffer.get(strings, header.stringTableOffset, strings.length);
+				out.write(strings);
+			}
+		}
+		
+		ZoneMap.build(target, ZoneMap.DEFAULT_ZONE_RECORDS).write(ZoneMap.sidecarFor(target), target.length());
+		
+		//Stats do not depend on record order, so they can be carried over
+		DatasetStats stats = DatasetStats.loadFor(source);
+		if (stats == null) {stats = DatasetStats.build(target);}
+		stats.write(DatasetStats.sidecarFor(target), target.length());
+	}
+	
+	private static double asDouble(Object v) {
+		return v instanceof Character ? (Character) v : ((Number) v).doubleValue();
+	}
+
 	@SuppressWarnings("resource")
 	private static void copy(File source, File target) throws Exception {
 		if (!target.exists()) {target.createNewFile();}
@@ -274,6 +475,12 @@ public class MemMapEncoder {
 		}
 	}
 	
+	private static void moveSidecar(File source, File target) throws Exception {
+		target.delete();
+		if (!source.renameTo(target)) {copy(source, target);}
+		source.delete();
+	}
+	
 	private static String entry(String[] args, String key, String defVal) {
 		int i=0;
 		key = key.toUpperCase();
@@ -292,6 +499,7 @@ public class MemMapEncoder {
 		case FLOAT : return floatBytes((Float) value);
 		case DOUBLE : return doubleBytes((Double) value);
 		case CHAR : return charBytes((Character) value);
+		case STRING : return intBytes((Integer) value);
 		default: throw new IllegalArgumentException("Unknown type: " + type);
 		}			
 	}
@@ -314,7 +522,7 @@ public class MemMapEncoder {
 		final BigFileByteBuffer buffer = new BigFileByteBuffer(out, 1000, FileChannel.MapMode.READ_WRITE);
 		Header header = Header.from(buffer);
 		
-		final long entries = (buffer.fileSize()-header.dataTableOffset)/header.recordLength;
+		final long entries = header.records(buffer.fileSize());
 		
 		final Number[] maxima = new Number[header.types.length];
 		final Number[] minima = new Number[header.types.length];
@@ -358,7 +566,10 @@ public class MemMapEncoder {
 	/**Utility for converting CSVs to header-carrying binary encodings.**/
 	public static void main(String[] args) throws Exception {
 		System.out.println("Usage: MemMapEncoder -in <file> -out <file> -skip <int> -types <string>");
-		System.out.println("Type string is a string made up of s/i/l/f/d/c for short/int/long/float/double/char.");
+		System.out.println("Type string is a string made up of s/i/l/f/d/c/v for short/int/long/float/double/char/string.");
+		System.out.println("Optional: -sort <hilbert|zorder|none> -sortx <int> -sorty <int> to sort records along a space-filling curve.");
+		System.out.println("          Sort fields are indices in the output record (skipped 'x' fields are not counted).");
+		System.out.println("Optional: -parallel true to parse with multiple threads (see ParallelEncoder).");
 		System.out.println();
 		
 		File temp;
@@ -387,13 +598,22 @@ public class MemMapEncoder {
 			int skip = Integer.parseInt(entry(args, "-skip", null));
 			char[] types = entry(args, "-types", "").toCharArray();
 			
-			write(in, skip, temp, types);
+			SpatialOrder ordering = SpatialOrder.fromName(entry(args, "-sort", "none"));
+			int sortX = Integer.parseInt(entry(args, "-sortx", "0"));
+			int sortY = Integer.parseInt(entry(args, "-sorty", "1"));
+			
+			boolean parallel = !entry(args, "-parallel", "FALSE").toUpperCase().equals("FALSE");
+			
+			write(in, skip, temp, types, ordering, sortX, sortY, parallel);
 			
 			if (!direct) {
 				try {
 					out.delete();
 					boolean moved = temp.renameTo(out);
 					if (!moved) {copy(temp, out);} //Needed because rename doesn't work across file systems
+					
+					moveSidecar(ZoneMap.sidecarFor(temp), ZoneMap.sidecarFor(out));
+					moveSidecar(DatasetStats.sidecarFor(temp), DatasetStats.sidecarFor(out));
 				} catch (Exception e) {throw new RuntimeException("Error moving temporaries to final destination file.",e);}
 				if (!out.exists()) {throw new RuntimeException("File could not be moved from temporary location to permanent location for unknown reason.");}
 			}
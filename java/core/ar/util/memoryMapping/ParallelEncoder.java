@@ -0,0 +1,379 @@
+package ar.util.memoryMapping;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ar.util.ByteDelimitedReader;
+import ar.util.memoryMapping.MemMapEncoder.TYPE;
+
+/**Multi-threaded encoder from delimited text to the hbin format (same output as MemMapEncoder.write).
+ *
+ * The source file is memory mapped and split into byte ranges on line boundaries.
+ * A first (parallel) pass counts the records in each range, which fixes where each
+ * range's records go in the output.  A second (parallel) pass parses each range into a
+ * direct buffer that is written to the target with positioned FileChannel writes.
+ * Min/max values (for the header), the zone map sidecar and the stats sidecar
+ * are accumulated while parsing, so the output is never re-read.
+ *
+ * Lines are tokenized and parsed in place by a ByteDelimitedReader, so no strings are created
+ * (except for string fields, which are added to a shared string table).
+ * String codes are assigned in the order threads first reach each string, so files with string
+ * fields are equivalent to (but not byte-identical with) the MemMapEncoder output.
+ * Blank lines are skipped.  Fields are separated by a single delimiter character
+ * and surrounding whitespace is ignored (quoted fields are not supported).
+ */
+public class ParallelEncoder {
+	/**Size of the output buffer used by each task.**/
+	public static int WRITE_BUFFER_BYTES = 1<<20;
+
+	/**How many ranges to create for each worker thread (more ranges balance load better).**/
+	public static int RANGES_PER_THREAD = 4;
+
+	/**Encode a comma-delimited file using a pool sized to the number of processors.**/
+	public static void write(File source, int skip, File target, char[] types) throws IOException {
+		write(source, skip, target, types, ',', Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param source Delimited text file to encode
+	 * @param skip Number of lines to skip (i.e., header lines)
+	 * @param target hbin file to write
+	 * @param types Type characters, one per source field (see MemMapEncoder)
+	 * @param delimiter Field delimiter
+	 * @param threads Number of worker threads
+	 */
+	public static void write(File source, int skip, File target, char[] types, char delimiter, int threads) throws IOException {
+		ChunkedFileByteBuffer input = new ChunkedFileByteBuffer(source);
+		long start = skipLines(input, 0, skip);
+		long[] bounds = split(input, start, threads*RANGES_PER_THREAD);
+
+		char[] keep = MemMapEncoder.keepTypes(types);
+		TYPE[] keepTypes = new TYPE[keep.length];
+		for (int i=0; i<keep.length; i++) {keepTypes[i] = TYPE.typeFor(keep[i]);}
+		byte[] header = MemMapEncoder.makeHeader(types);
+		int recordLength = MemMapEncoder.recordLength(keepTypes);
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try (RandomAccessFile file = new RandomAccessFile(target, "rw");
+			FileChannel channel = file.getChannel()) {
+
+			//Pass 1: Count records in each range to find where each range starts in the output
+			List<CountTask> counts = new ArrayList<>();
+			for (int i=0; i<bounds.length-1; i++) {counts.add(new CountTask(input, bounds[i], bounds[i+1]));}
+			pool.invoke(new All(counts));
+			long[] firstRecord = new long[counts.size()+1];
+			for (int i=0; i<counts.size(); i++) {firstRecord[i+1] = firstRecord[i] + counts.get(i).records;}
+			long records = firstRecord[counts.size()];
+
+			file.setLength(header.length + records*recordLength);
+			channel.write(ByteBuffer.wrap(header), 0);
+
+			//Pass 2: Parse and write each range
+			Zones zones = new Zones(keepTypes, ZoneMap.DEFAULT_ZONE_RECORDS, records);
+			StringTable.Builder strings = new StringTable.Builder();
+			List<EncodeTask> encoders = new ArrayList<>();
+			for (int i=0; i<bounds.length-1; i++) {
+				encoders.add(new EncodeTask(input, bounds[i], bounds[i+1], types, keepTypes, (byte) delimiter,
+						channel, header.length + firstRecord[i]*recordLength, firstRecord[i], zones, strings));
+			}
+			pool.invoke(new All(encoders));
+
+			//Merge the per-task extremes into the header info records
+			Extremes extremes = new Extremes(keepTypes);
+			for (EncodeTask t: encoders) {extremes.merge(t.extremes);}
+			ByteBuffer info = ByteBuffer.allocate(recordLength*2);
+			extremes.putMax(info);
+			extremes.putMin(info);
+			info.flip();
+			channel.write(info, header.length - recordLength*2);
+			if (MemMapEncoder.hasStrings(keep)) {MemMapEncoder.writeStrings(channel, strings.bytes());}
+
+			DatasetStats.Builder stats = new DatasetStats.Builder(keepTypes);
+			for (EncodeTask t: encoders) {stats.merge(t.stats);}
+			
+			zones.build().write(ZoneMap.sidecarFor(target), channel.size());
+			stats.build().write(DatasetStats.sidecarFor(target), channel.size());
+			System.out.printf("Processed %,d entries.\n", records);
+		} finally {pool.shutdown();}
+	}
+
+	/**Position just after the given number of lines, starting from "pos".**/
+	private static long skipLines(MappedFile input, long pos, int lines) {
+		long end = input.capacity();
+		while (lines > 0 && pos < end) {
+			if (input.get(pos) == '\n') {lines--;}
+			pos++;
+		}
+		return pos;
+	}
+
+	/**Split [start, capacity) into (up to) the requested number of ranges, each ending at a line boundary.**/
+	private static long[] split(MappedFile input, long start, int ranges) {
+		long end = input.capacity();
+		long step = Math.max(1, (end-start)/ranges);
+		long[] bounds = new long[ranges+1];
+		int count = 0;
+		bounds[count++] = start;
+		for (long p = start+step; p < end && count < ranges; p += step) {
+			long b = skipLines(input, p, 1);
+			if (b > bounds[count-1] && b < end) {bounds[count++] = b;}
+			p = Math.max(p, b);
+		}
+		bounds[count++] = end;
+		return Arrays.copyOf(bounds, count);
+	}
+
+	private static boolean isSpace(byte b) {return b == ' ' || b == '\t' || b == '\r';}
+
+	/**Runs a list of tasks in the pool, waiting for all of them.**/
+	private static final class All extends RecursiveAction {
+		private static final long serialVersionUID = 6230911542368327271L;
+		private final List<? extends RecursiveAction> tasks;
+		public All(List<? extends RecursiveAction> tasks) {this.tasks = tasks;}
+		protected void compute() {invokeAll(tasks);}
+	}
+
+	/**Counts non-blank lines in a range.**/
+	private static final class CountTask extends RecursiveAction {
+		private static final long serialVersionUID = -5032553618262340711L;
+		private final MappedFile input;
+		private final long low, high;
+		long records;
+
+		public CountTask(MappedFile input, long low, long high) {
+			this.input = input;
+			this.low = low;
+			this.high = high;
+		}
+
+		protected void compute() {
+			boolean content = false;
+			long count = 0;
+			for (long p=low; p<high; p++) {
+				byte b = input.get(p);
+				if (b == '\n') {
+					if (content) {count++;}
+					content = false;
+				} else if (!isSpace(b)) {content = true;}
+			}
+			if (content) {count++;}
+			records = count;
+		}
+	}
+
+	/**Parses a range of lines and writes the encoded records.**/
+	private static final class EncodeTask extends RecursiveAction {
+		private static final long serialVersionUID = 2826327806419744593L;
+		private final MappedFile input;
+		private final long low, high;
+		private final char[] types;
+		private final TYPE[] keepTypes;
+		private final byte delimiter;
+		private final FileChannel channel;
+		private final long outputOffset;
+		private final long firstRecord;
+		private final Zones zones;
+		private final StringTable.Builder strings;
+		final Extremes extremes;
+		final DatasetStats.Builder stats;
+
+		public EncodeTask(MappedFile input, long low, long high, char[] types, TYPE[] keepTypes, byte delimiter,
+				FileChannel channel, long outputOffset, long firstRecord, Zones zones, StringTable.Builder strings) {
+			this.input = input;
+			this.low = low;
+			this.high = high;
+			this.types = types;
+			this.keepTypes = keepTypes;
+			this.delimiter = delimiter;
+			this.channel = channel;
+			this.outputOffset = outputOffset;
+			this.firstRecord = firstRecord;
+			this.zones = zones;
+			this.strings = strings;
+			this.extremes = new Extremes(keepTypes);
+			this.stats = new DatasetStats.Builder(keepTypes);
+		}
+
+		protected void compute() {
+			int recordLength = MemMapEncoder.recordLength(keepTypes);
+			ByteBuffer out = ByteBuffer.allocateDirect(Math.max(1, WRITE_BUFFER_BYTES/recordLength)*recordLength);
+			ByteDelimitedReader reader = new ByteDelimitedReader(input, low, high, (char) delimiter);
+			Zones.Local zone = zones.local();
+			long written = outputOffset;
+			long record = firstRecord;
+
+			try {
+				while (reader.advance()) {
+					if (out.remaining() < recordLength) {written += flush(out, written);}
+					encode(reader, out, zone, record);
+					record++;
+				}
+				written += flush(out, written);
+			} catch (IOException e) {
+				throw new RuntimeException("Error writing encoded records", e);
+			} catch (RuntimeException e) {
+				throw new RuntimeException(String.format("Error on or near entry %,d", record), e);
+			}
+			zone.finish();
+		}
+
+		private long flush(ByteBuffer out, long position) throws IOException {
+			out.flip();
+			long count = 0;
+			while (out.hasRemaining()) {count += channel.write(out, position+count);}
+			out.clear();
+			return count;
+		}
+
+		/**Encode the current line of the reader into the output buffer.**/
+		private void encode(ByteDelimitedReader reader, ByteBuffer out, Zones.Local zone, long record) {
+			zone.record(record);
+			for (int i=0, field=0; i<types.length; i++) {
+				if (types[i] == 'x') {continue;}
+				double v = put(out, keepTypes[field], reader, i, field);
+				zone.add(field, v);
+				stats.add(field, v);
+				field++;
+			}
+			stats.endRecord();
+		}
+
+		/**Parse a value, add it to the output and update the extremes.  Returns the value as a double (for zone maps).**/
+		private double put(ByteBuffer out, TYPE type, ByteDelimitedReader reader, int source, int field) {
+			switch (type) {
+				case SHORT: {short v = reader.getShort(source); out.putShort(v); extremes.add(field, v); return v;}
+				case INT: {int v = reader.getInt(source); out.putInt(v); extremes.add(field, v); return v;}
+				case LONG: {long v = reader.getLong(source); out.putLong(v); extremes.add(field, v); return v;}
+				case CHAR: {char v = reader.getChar(source); out.putChar(v); extremes.add(field, v); return v;}
+				case FLOAT: {float v = reader.getFloat(source); out.putFloat(v); extremes.add(field, v); return v;}
+				case DOUBLE: {double v = reader.getDouble(source); out.putDouble(v); extremes.add(field, v); return v;}
+				case STRING: {int v = strings.code(reader.getString(source)); out.putInt(v); extremes.add(field, v); return v;}
+				default: throw new IllegalArgumentException("Unknown type: " + type);
+			}
+		}
+	}
+
+	/**Min/max of each field.  Integral types are tracked as longs, floating point types as doubles.**/
+	private static final class Extremes {
+		private final TYPE[] types;
+		private final long[] lmin, lmax;
+		private final double[] dmin, dmax;
+
+		public Extremes(TYPE[] types) {
+			this.types = types;
+			lmin = new long[types.length];
+			lmax = new long[types.length];
+			dmin = new double[types.length];
+			dmax = new double[types.length];
+			Arrays.fill(lmin, Long.MAX_VALUE);
+			Arrays.fill(lmax, Long.MIN_VALUE);
+			Arrays.fill(dmin, Double.POSITIVE_INFINITY);
+			Arrays.fill(dmax, Double.NEGATIVE_INFINITY);
+		}
+
+		public void add(int field, long v) {
+			if (v < lmin[field]) {lmin[field] = v;}
+			if (v > lmax[field]) {lmax[field] = v;}
+		}
+
+		public void add(int field, double v) {
+			if (v < dmin[field]) {dmin[field] = v;}
+			if (v > dmax[field]) {dmax[field] = v;}
+		}
+
+		public void merge(Extremes other) {
+			for (int f=0; f<types.length; f++) {
+				lmin[f] = Math.min(lmin[f], other.lmin[f]);
+				lmax[f] = Math.max(lmax[f], other.lmax[f]);
+				dmin[f] = Math.min(dmin[f], other.dmin[f]);
+				dmax[f] = Math.max(dmax[f], other.dmax[f]);
+			}
+		}
+
+		public void putMax(ByteBuffer target) {put(target, lmax, dmax);}
+		public void putMin(ByteBuffer target) {put(target, lmin, dmin);}
+
+		/**Put a record of extreme values; fields with no values are written as zero.**/
+		private void put(ByteBuffer target, long[] ls, double[] ds) {
+			for (int f=0; f<types.length; f++) {
+				long l = lmin[f] <= lmax[f] ? ls[f] : 0;
+				double d = dmin[f] <= dmax[f] ? ds[f] : 0;
+				switch (types[f]) {
+					case SHORT: target.putShort((short) l); break;
+					case INT: case STRING: target.putInt((int) l); break;
+					case LONG: target.putLong(l); break;
+					case CHAR: target.putChar((char) l); break;
+					case FLOAT: target.putFloat((float) d); break;
+					case DOUBLE: target.putDouble(d); break;
+					default: throw new IllegalArgumentException("Unknown type: " + types[f]);
+				}
+			}
+		}
+	}
+
+	/**Zone map accumulated concurrently by many tasks.
+	 * Each task works through a contiguous set of records, keeping the current zone's extremes locally
+	 * and merging them into the shared arrays when it moves to a new zone (or finishes).
+	 */
+	private static final class Zones {
+		private final TYPE[] types;
+		private final int zoneRecords;
+		private final long records;
+		private final double[][] min, max;
+
+		public Zones(TYPE[] types, int zoneRecords, long records) {
+			this.types = types;
+			this.zoneRecords = zoneRecords;
+			this.records = records;
+			int zones = (int) ((records + zoneRecords - 1)/zoneRecords);
+			min = new double[zones][types.length];
+			max = new double[zones][types.length];
+			for (int z=0; z<zones; z++) {
+				Arrays.fill(min[z], Double.POSITIVE_INFINITY);
+				Arrays.fill(max[z], Double.NEGATIVE_INFINITY);
+			}
+		}
+
+		public Local local() {return new Local();}
+
+		public ZoneMap build() {return new ZoneMap(zoneRecords, records, types, min, max);}
+
+		private synchronized void merge(int zone, double[] mins, double[] maxs) {
+			for (int f=0; f<types.length; f++) {
+				min[zone][f] = Math.min(min[zone][f], mins[f]);
+				max[zone][f] = Math.max(max[zone][f], maxs[f]);
+			}
+		}
+
+		/**Per-task accumulator.**/
+		public final class Local {
+			private final double[] mins = new double[types.length];
+			private final double[] maxs = new double[types.length];
+			private int zone = -1;
+
+			public void record(long record) {
+				int z = (int) (record/zoneRecords);
+				if (z != zone) {finish(); zone = z;}
+			}
+
+			public void add(int field, double v) {
+				if (v < mins[field]) {mins[field] = v;}
+				if (v > maxs[field]) {maxs[field] = v;}
+			}
+
+			public void finish() {
+				if (zone >= 0) {merge(zone, mins, maxs);}
+				Arrays.fill(mins, Double.POSITIVE_INFINITY);
+				Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+			}
+		}
+	}
+}
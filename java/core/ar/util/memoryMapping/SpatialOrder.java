@@ -0,0 +1,84 @@
+package ar.util.memoryMapping;
+
+/**Space-filling curves used to arrange records so that records near each other
+ * in the file are also near each other in space.
+ *
+ * Keys are computed over a 2^BITS x 2^BITS grid; callers quantize their
+ * coordinates into that range before asking for a key.
+ */
+public enum SpatialOrder {
+	/**Hilbert curve: consecutive keys are always adjacent cells (best locality).**/
+	HILBERT('h'),
+
+	/**Z-order (Morton) curve: bit-interleaved coordinates (cheaper, but with long jumps between quadrants).**/
+	ZORDER('z');
+
+	/**Bits of resolution in each dimension.**/
+	public static final int BITS = 16;
+
+	/**Number of cells across each dimension of the grid.**/
+	public static final int CELLS = 1<<BITS;
+
+	/**Character used to record this ordering in a file header.**/
+	public final char code;
+
+	private SpatialOrder(char code) {this.code = code;}
+
+	/**Ordering for the given header code; null if the code is not recognized.**/
+	public static SpatialOrder fromCode(char code) {
+		for (SpatialOrder o: values()) {if (o.code == code) {return o;}}
+		return null;
+	}
+
+	/**Ordering for the given name (case insensitive); null for "none" or null.**/
+	public static SpatialOrder fromName(String name) {
+		if (name == null || name.toUpperCase().equals("NONE")) {return null;}
+		return valueOf(name.toUpperCase());
+	}
+
+	/**Position along the curve of the given grid cell.
+	 * @param x Cell column in [0, CELLS)
+	 * @param y Cell row in [0, CELLS)
+	 */
+	public long key(int x, int y) {
+		switch (this) {
+			case HILBERT: return hilbert(x, y);
+			default: return morton(x, y);
+		}
+	}
+
+	/**Quantize a value into a grid cell, given the range of values.**/
+	public static int cell(double v, double min, double max) {
+		if (!(max > min)) {return 0;}
+		int c = (int) (((v-min)/(max-min)) * (CELLS-1));
+		return Math.max(0, Math.min(CELLS-1, c));
+	}
+
+	private static long hilbert(int x, int y) {
+		long d = 0;
+		for (int s=CELLS/2; s>0; s/=2) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += ((long) s) * s * ((3*rx) ^ ry);
+
+			//Rotate the quadrant so the sub-curve is oriented correctly
+			if (ry == 0) {
+				if (rx == 1) {
+					x = CELLS-1-x;
+					y = CELLS-1-y;
+				}
+				int t = x; x = y; y = t;
+			}
+		}
+		return d;
+	}
+
+	private static long morton(int x, int y) {
+		long d = 0;
+		for (int b=0; b<BITS; b++) {
+			d |= ((long) ((x >> b) & 1)) << (2*b);
+			d |= ((long) ((y >> b) & 1)) << (2*b+1);
+		}
+		return d;
+	}
+}
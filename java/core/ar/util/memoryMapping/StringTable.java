@@ -0,0 +1,122 @@
+package ar.util.memoryMapping;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**Dictionary of the strings in an hbin file.
+ *
+ * String ('v') fields are stored in records as an int code.  The code is the index
+ * of the string in this table.  There is one table per file (shared by all string fields),
+ * stored after the data records at the header's string table offset.
+ *
+ * The strings returned by "value" are the single shared instance for each code,
+ * so categories decoded from the same table can be compared by identity.
+ *
+ * Table format:
+ *
+ * + Count (Int): Number of strings
+ * + Strings: For each string, byte length (Int) and UTF-8 bytes
+ */
+public class StringTable implements Serializable {
+	private static final long serialVersionUID = 5129876420392648120L;
+
+	private final String[] values;
+	private transient Map<String, Integer> codes;
+
+	public StringTable(String[] values) {this.values = values;}
+
+	/**Number of distinct strings.**/
+	public int size() {return values.length;}
+
+	/**String for the given code.**/
+	public String value(int code) {return values[code];}
+
+	/**Code for the given string; -1 if the string is not in the table.**/
+	public int code(String value) {
+		if (codes == null) {
+			Map<String, Integer> c = new HashMap<>();
+			for (int i=0; i<values.length; i++) {c.put(values[i], i);}
+			codes = c;
+		}
+		Integer code = codes.get(value);
+		return code == null ? -1 : code;
+	}
+
+	/**Read the table starting at the given position.**/
+	public static StringTable read(MappedFile buffer, long offset) {
+		int count = buffer.getInt(offset);
+		long p = offset + MemMapEncoder.TYPE.INT.bytes;
+		String[] values = new String[count];
+		for (int i=0; i<count; i++) {
+			byte[] bytes = new byte[buffer.getInt(p)];
+			p += MemMapEncoder.TYPE.INT.bytes;
+			for (int b=0; b<bytes.length; b++) {bytes[b] = buffer.get(p+b);}
+			p += bytes.length;
+			values[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return new StringTable(values);
+	}
+
+	/**Load the string table of an hbin file.
+	 * @return The table or null if the file has no string table.
+	 */
+	public static StringTable loadFor(File hbin) throws IOException {
+		MappedFile buffer = MappedFile.Util.make(hbin, FileChannel.MapMode.READ_ONLY, Integer.MAX_VALUE);
+		MemMapEncoder.Header header = MemMapEncoder.Header.from(buffer);
+		if (header.stringTableOffset < 0) {return null;}
+		return read(buffer, header.stringTableOffset);
+	}
+
+	/**Assigns codes to strings as they are encountered.
+	 * Safe for use by multiple threads (though codes then depend on the order threads reach each string).
+	 */
+	public static final class Builder {
+		private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+		private final List<String> values = new ArrayList<>();
+
+		/**Code for the string, adding it to the table if it has not been seen before.**/
+		public int code(String value) {
+			Integer code = codes.get(value);
+			if (code != null) {return code;}
+			synchronized (values) {
+				code = codes.get(value);
+				if (code == null) {
+					code = values.size();
+					values.add(value);
+					codes.put(value, code);
+				}
+				return code;
+			}
+		}
+
+		public int size() {return values.size();}
+
+		public StringTable build() {
+			synchronized (values) {return new StringTable(values.toArray(new String[values.size()]));}
+		}
+
+		/**Table in its file encoding.**/
+		public byte[] bytes() {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			synchronized (values) {
+				out.write(ByteBuffer.allocate(MemMapEncoder.TYPE.INT.bytes).putInt(values.size()).array(), 0, MemMapEncoder.TYPE.INT.bytes);
+				for (String v: values) {
+					byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+					out.write(ByteBuffer.allocate(MemMapEncoder.TYPE.INT.bytes).putInt(bytes.length).array(), 0, MemMapEncoder.TYPE.INT.bytes);
+					out.write(bytes, 0, bytes.length);
+				}
+			}
+			return out.toByteArray();
+		}
+	}
+}
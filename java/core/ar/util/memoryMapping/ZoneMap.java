@@ -0,0 +1,323 @@
+package ar.util.memoryMapping;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ar.glyphsets.implicitgeometry.Indexed;
+import ar.glyphsets.implicitgeometry.IndexedEncoding;
+import ar.glyphsets.implicitgeometry.Shaper;
+import ar.util.Util;
+import ar.util.memoryMapping.MemMapEncoder.TYPE;
+
+/**Per-zone minimum and maximum values for each field of a record-oriented file.
+ *
+ * A zone is a fixed number of consecutive records (the last zone may be shorter).
+ * The min/max values of a zone can be used to rule out the whole zone for a query
+ * without reading any of its records.  For example, with a Shaper.SafeApproximate
+ * shaper the zone min/max give a bounding box for the zone.
+ *
+ * Zone maps for row-major hbin files are kept in a sidecar file (the hbin file name
+ * with ".zones" appended).  The MemMapEncoder writes the sidecar when it encodes a file,
+ * and the "main" method of this class builds one for an existing file.
+ *
+ * Sidecar format:
+ *
+ * + Version Number (Int): VERSION_ID
+ * + Source Length (Long): Size of the hbin file the zones were computed for (used to detect stale sidecars)
+ * + Zone Records (Int): Number of records in each zone
+ * + Record Count (Long): Number of records in the hbin file
+ * + Field Count (Int)
+ * + Field Types ([Char]): One type character per field (as in the hbin header)
+ * + Zone Count (Int)
+ * + Zones: For each zone, for each field, min (Double) and max (Double)
+ */
+public class ZoneMap {
+	/**(Magic) Number as the first value in a zone sidecar.*/
+	public static final int VERSION_ID = -1;
+
+	/**Default number of records in a zone.**/
+	public static final int DEFAULT_ZONE_RECORDS = 1<<16;
+
+	/**Extension added to an hbin file name to get its zone map sidecar.**/
+	public static final String SIDECAR_EXTENSION = ".zones";
+
+	private final int zoneRecords;
+	private final long recordCount;
+	private final TYPE[] types;
+	private final double[][] min;
+	private final double[][] max;
+
+	/**
+	 * @param zoneRecords Number of records per zone
+	 * @param recordCount Total number of records
+	 * @param types Types of the fields
+	 * @param min Minimum values, indexed by zone then field
+	 * @param max Maximum values, indexed by zone then field
+	 */
+	public ZoneMap(int zoneRecords, long recordCount, TYPE[] types, double[][] min, double[][] max) {
+		this.zoneRecords = zoneRecords;
+		this.recordCount = recordCount;
+		this.types = types;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**Number of zones.**/
+	public int zones() {return min.length;}
+
+	/**Number of records in each zone (except possibly the last).**/
+	public int zoneRecords() {return zoneRecords;}
+
+	/**Total number of records covered.**/
+	public long recordCount() {return recordCount;}
+
+	/**Index of the first record in the zone.**/
+	public long zoneStart(int zone) {return ((long) zone) * zoneRecords;}
+
+	/**Index one past the last record in the zone.**/
+	public long zoneEnd(int zone) {return Math.min(recordCount, zoneStart(zone) + zoneRecords);}
+
+	/**Smallest value of the field in the zone.**/
+	public double min(int zone, int field) {return min[zone][field];}
+
+	/**Largest value of the field in the zone.**/
+	public double max(int zone, int field) {return max[zone][field];}
+
+	/**Bounding box of each zone, given a shaper.
+	 * The shaper must be Shaper.SafeApproximate, otherwise null is returned.**/
+	public Rectangle2D[] bounds(Shaper<?,Indexed> shaper) {
+		if (!(shaper instanceof Shaper.SafeApproximate)) {return null;}
+		Rectangle2D[] bounds = new Rectangle2D[zones()];
+		for (int z=0; z<bounds.length; z++) {
+			Rectangle2D minBounds = Util.boundOne(shaper.shape(new Extreme(min[z], types)));
+			Rectangle2D maxBounds = Util.boundOne(shaper.shape(new Extreme(max[z], types)));
+			bounds[z] = Util.bounds(minBounds, maxBounds);
+		}
+		return bounds;
+	}
+
+	/**Presents a zone's per-field min or max as a record, so it can be passed through a shaper.**/
+	private static final class Extreme implements Indexed {
+		private static final long serialVersionUID = 2235719406124283657L;
+		private final double[] values;
+		private final TYPE[] types;
+		public Extreme(double[] values, TYPE[] types) {this.values = values; this.types = types;}
+		public Object get(int i) {
+			double v = values[i];
+			switch (types[i]) {
+				case INT: case STRING: return (int) v;
+				case SHORT: return (short) v;
+				case LONG: return (long) v;
+				case FLOAT: return (float) v;
+				case BYTE: return (byte) v;
+				case CHAR: return (char) v;
+				default: return v;
+			}
+		}
+	}
+
+	/**Sidecar file for the given hbin file.**/
+	public static File sidecarFor(File hbin) {return new File(hbin.getPath() + SIDECAR_EXTENSION);}
+
+	/**Write this zone map as a sidecar.
+	 * @param target Sidecar file to write
+	 * @param sourceLength Length of the file the zone map describes
+	 */
+	public void write(File target, long sourceLength) throws IOException {
+		int fields = types.length;
+		ByteBuffer bytes = ByteBuffer.allocate(TYPE.INT.bytes*4 + TYPE.LONG.bytes*2 + TYPE.CHAR.bytes*fields + zones()*fields*TYPE.DOUBLE.bytes*2);
+		bytes.putInt(VERSION_ID);
+		bytes.putLong(sourceLength);
+		bytes.putInt(zoneRecords);
+		bytes.putLong(recordCount);
+		bytes.putInt(fields);
+		for (TYPE t: types) {bytes.putChar(MemMapEncoder.typeChar(t));}
+		bytes.putInt(zones());
+		for (int z=0; z<zones(); z++) {
+			for (int f=0; f<fields; f++) {
+				bytes.putDouble(min[z][f]);
+				bytes.putDouble(max[z][f]);
+			}
+		}
+		bytes.flip();
+
+		if (target.exists()) {target.delete();}
+		try (RandomAccessFile file = new RandomAccessFile(target, "rw");
+			FileChannel channel = file.getChannel()) {
+			while (bytes.hasRemaining()) {channel.write(bytes);}
+		}
+	}
+
+	/**Read a zone map sidecar.
+	 * @param sidecar File to read
+	 * @param sourceLength Expected length of the described file; if it does not match, null is returned.  Negative to skip the check.
+	 * @return The zone map or null if it does not match the source length
+	 */
+	public static ZoneMap read(File sidecar, long sourceLength) throws IOException {
+		MappedFile buffer = new FileByteBuffer(sidecar, 0, sidecar.length());
+		int version = buffer.getInt();
+		if (version != VERSION_ID) {
+			throw new IllegalArgumentException(String.format("Unexpected version number in zone map %d; expected %d", version, VERSION_ID));
+		}
+		long length = buffer.getLong();
+		if (sourceLength >= 0 && length != sourceLength) {return null;}
+
+		int zoneRecords = buffer.getInt();
+		long recordCount = buffer.getLong();
+		int fields = buffer.getInt();
+		TYPE[] types = new TYPE[fields];
+		for (int f=0; f<fields; f++) {types[f] = TYPE.typeFor(buffer.getChar());}
+		int zones = buffer.getInt();
+		double[][] min = new double[zones][fields];
+		double[][] max = new double[zones][fields];
+		for (int z=0; z<zones; z++) {
+			for (int f=0; f<fields; f++) {
+				min[z][f] = buffer.getDouble();
+				max[z][f] = buffer.getDouble();
+			}
+		}
+		return new ZoneMap(zoneRecords, recordCount, types, min, max);
+	}
+
+	/**Load the sidecar zone map of an hbin file.
+	 * @return The zone map or null if there is no sidecar or if it is stale.
+	 */
+	public static ZoneMap loadFor(File hbin) {
+		File sidecar = sidecarFor(hbin);
+		if (!sidecar.exists()) {return null;}
+		try {return read(sidecar, hbin.length());}
+		catch (Exception e) {return null;}
+	}
+
+	/**Accumulate a zone map one record at a time.
+	 * Values are supplied field-by-field with "add" and records are completed with "endRecord".
+	 */
+	public static final class Builder {
+		private final int zoneRecords;
+		private final TYPE[] types;
+		private double[][] min = new double[16][];
+		private double[][] max = new double[16][];
+		private int zones = 0;
+		private long records = 0;
+
+		public Builder(TYPE[] types, int zoneRecords) {
+			this.types = types;
+			this.zoneRecords = zoneRecords;
+		}
+
+		private void startZone() {
+			if (zones == min.length) {
+				min = Arrays.copyOf(min, zones*2);
+				max = Arrays.copyOf(max, zones*2);
+			}
+			min[zones] = new double[types.length];
+			max[zones] = new double[types.length];
+			Arrays.fill(min[zones], Double.POSITIVE_INFINITY);
+			Arrays.fill(max[zones], Double.NEGATIVE_INFINITY);
+			zones++;
+		}
+
+		/**Include a value for the given field of the current record.**/
+		public void add(int field, double value) {
+			if (records/zoneRecords >= zones) {startZone();}
+			int z = zones-1;
+			if (value < min[z][field]) {min[z][field] = value;}
+			if (value > max[z][field]) {max[z][field] = value;}
+		}
+
+		/**Mark the current record complete.**/
+		public void endRecord() {records++;}
+
+		public ZoneMap build() {
+			return new ZoneMap(zoneRecords, records, types, Arrays.copyOf(min, zones), Arrays.copyOf(max, zones));
+		}
+	}
+
+	/**Compute the zone map of an existing row-major hbin file.**/
+	public static ZoneMap build(File hbin, int zoneRecords) throws IOException {
+		final MappedFile buffer = MappedFile.Util.make(hbin, FileChannel.MapMode.READ_ONLY, Integer.MAX_VALUE);
+		final MemMapEncoder.Header header = MemMapEncoder.Header.from(buffer);
+		final long records = header.records(buffer.capacity());
+		final int zones = (int) ((records + zoneRecords - 1)/zoneRecords);
+		final double[][] min = new double[zones][];
+		final double[][] max = new double[zones][];
+
+		ForkJoinPool pool = new ForkJoinPool();
+		try {pool.invoke(new BuildTask(buffer, header, zoneRecords, records, min, max, 0, zones));}
+		finally {pool.shutdown();}
+		return new ZoneMap(zoneRecords, records, header.types, min, max);
+	}
+
+	/**Computes the min/max of a range of zones, splitting the range across threads.**/
+	private static final class BuildTask extends RecursiveAction {
+		private static final long serialVersionUID = -3025394453785212341L;
+		private final MappedFile buffer;
+		private final MemMapEncoder.Header header;
+		private final int zoneRecords;
+		private final long records;
+		private final double[][] min, max;
+		private final int low, high;
+
+		public BuildTask(MappedFile buffer, MemMapEncoder.Header header, int zoneRecords, long records,
+				double[][] min, double[][] max, int low, int high) {
+			this.buffer = buffer;
+			this.header = header;
+			this.zoneRecords = zoneRecords;
+			this.records = records;
+			this.min = min;
+			this.max = max;
+			this.low = low;
+			this.high = high;
+		}
+
+		@Override
+		protected void compute() {
+			if (high-low > 1) {
+				int mid = Util.mean(low, high);
+				invokeAll(new BuildTask(buffer, header, zoneRecords, records, min, max, low, mid),
+						new BuildTask(buffer, header, zoneRecords, records, min, max, mid, high));
+				return;
+			}
+
+			int fields = header.types.length;
+			int[] offsets = MemMapEncoder.recordOffsets(header.types);
+			double[] mins = new double[fields];
+			double[] maxs = new double[fields];
+			Arrays.fill(mins, Double.POSITIVE_INFINITY);
+			Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+
+			long end = Math.min(records, ((long) low+1)*zoneRecords);
+			for (long r=((long) low)*zoneRecords; r<end; r++) {
+				IndexedEncoding entry = new IndexedEncoding(header.types, header.dataTableOffset + r*header.recordLength, buffer, offsets);
+				for (int f=0; f<fields; f++) {
+					Object v = entry.get(f);
+					double d = v instanceof Character ? (Character) v : ((Number) v).doubleValue();
+					if (d < mins[f]) {mins[f] = d;}
+					if (d > maxs[f]) {maxs[f] = d;}
+				}
+			}
+			min[low] = mins;
+			max[low] = maxs;
+		}
+	}
+
+	/**Utility for building zone map sidecars for existing hbin files.**/
+	public static void main(String[] args) throws Exception {
+		System.out.println("Usage: ZoneMap -in <file> [-zone <int>]");
+		System.out.println("Writes the zone map for the given hbin file to <file>" + SIDECAR_EXTENSION);
+		System.out.println();
+
+		File in = new File(Util.argKey(args, "-in", null));
+		int zoneRecords = Integer.parseInt(Util.argKey(args, "-zone", Integer.toString(DEFAULT_ZONE_RECORDS)));
+		ZoneMap zones = build(in, zoneRecords);
+		zones.write(sidecarFor(in), in.length());
+		System.out.printf("Wrote %,d zones for %,d records.\n", zones.zones(), zones.recordCount());
+	}
+}
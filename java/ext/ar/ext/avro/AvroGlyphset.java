@@ -0,0 +1,242 @@
+package ar.ext.avro;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+
+import ar.Glyph;
+import ar.Glyphset;
+import ar.glyphsets.GlyphsetIterator;
+import ar.glyphsets.SimpleGlyph;
+import ar.glyphsets.implicitgeometry.Indexed;
+import ar.glyphsets.implicitgeometry.Shaper;
+import ar.glyphsets.implicitgeometry.Valuer;
+import ar.util.Util;
+import ar.util.memoryMapping.ChunkedFileByteBuffer;
+import ar.util.memoryMapping.MappedFile;
+
+/**Random-access glyphset over an Avro container file, decoded lazily one block at a time.
+ *
+ * On construction, the block headers of the file are scanned (no records are decoded)
+ * to find where each block starts and how many records it holds.  Records are decoded
+ * when requested, a whole block at a time; only the most recently decoded block is kept,
+ * so memory use is bounded by the block size rather than the file size.
+ *
+ * Segments are record ranges that share the block index but have their own reader,
+ * so the ParallelRenderer decodes different blocks on different threads.
+ *
+ * Only the fields named at construction are decoded (schema projection).  The Indexed
+ * items given to the shaper and valuer hold the projected fields, in the order they were named.
+ *
+ * This class is NOT thread-safe, but segments can be used concurrently.
+ */
+public class AvroGlyphset<G,I> implements Glyphset.RandomAccess<G,I> {
+	/**Thread-pool size for parallel operations.**/
+	private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	/**Avro container files start with these bytes.**/
+	private static final byte[] MAGIC = {'O', 'b', 'j', 1};
+	private static final int SYNC_SIZE = 16;
+
+	private final File source;
+	private final Schema projection;
+	private final Shaper<G,Indexed> shaper;
+	private final Valuer<Indexed,I> valuer;
+	private final long[] blockStarts;  //File position of each block
+	private final long[] firstRecords; //Index of the first record of each block (plus the total, at the end)
+	private final long low, high;
+
+	private DataFileReader<GenericRecord> reader;
+	private int cachedBlock = -1;
+	private List<Glyph<G,I>> cache;
+	private Rectangle2D bounds;
+
+	/**
+	 * @param source Avro container file
+	 * @param fields Names of the fields to decode; null to decode all fields
+	 * @param shaper Shaper over the projected fields
+	 * @param valuer Valuer over the projected fields
+	 */
+	public AvroGlyphset(File source, String[] fields, Shaper<G,Indexed> shaper, Valuer<Indexed,I> valuer) throws IOException {
+		this.source = source;
+		this.shaper = shaper;
+		this.valuer = valuer;
+
+		Schema schema;
+		try (DataFileReader<GenericRecord> r = new DataFileReader<>(source, new GenericDatumReader<GenericRecord>())) {
+			schema = r.getSchema();
+		}
+		this.projection = fields == null ? schema : project(schema, fields);
+
+		List<long[]> blocks = index(source);
+		blockStarts = new long[blocks.size()];
+		firstRecords = new long[blocks.size()+1];
+		for (int i=0; i<blocks.size(); i++) {
+			blockStarts[i] = blocks.get(i)[0];
+			firstRecords[i+1] = firstRecords[i] + blocks.get(i)[1];
+		}
+		this.low = 0;
+		this.high = firstRecords[blocks.size()];
+	}
+
+	private AvroGlyphset(AvroGlyphset<G,I> base, long low, long high) {
+		this.source = base.source;
+		this.projection = base.projection;
+		this.shaper = base.shaper;
+		this.valuer = base.valuer;
+		this.blockStarts = base.blockStarts;
+		this.firstRecords = base.firstRecords;
+		this.low = low;
+		this.high = high;
+	}
+
+	/**Reader schema holding just the named fields of the writer's schema.**/
+	private static Schema project(Schema schema, String[] fields) {
+		List<Schema.Field> keep = new ArrayList<>();
+		for (String name: fields) {
+			Schema.Field f = schema.getField(name);
+			if (f == null) {throw new IllegalArgumentException("Field not found in schema: " + name);}
+			keep.add(new Schema.Field(f.name(), f.schema(), f.doc(), f.defaultValue()));
+		}
+		Schema projection = Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError());
+		projection.setFields(keep);
+		return projection;
+	}
+
+	/**Find the position and record count of each block by reading the block headers.
+	 * @return List of (block start, record count) pairs
+	 */
+	private static List<long[]> index(File source) throws IOException {
+		MappedFile buffer = new ChunkedFileByteBuffer(source);
+		long[] p = {0};
+		for (byte b: MAGIC) {
+			if (buffer.get(p[0]++) != b) {throw new IllegalArgumentException("Not an Avro container file: " + source);}
+		}
+
+		//File metadata: map of string to bytes, in blocks terminated by a zero count
+		for (long count = readLong(buffer, p); count != 0; count = readLong(buffer, p)) {
+			if (count < 0) {count = -count; readLong(buffer, p);} //Negative counts are followed by the block size
+			for (long i=0; i<count; i++) {
+				long key = readLong(buffer, p);    //Key length (read before advancing: readLong moves p)
+				p[0] += key;
+				long value = readLong(buffer, p);  //Value length
+				p[0] += value;
+			}
+		}
+		byte[] sync = new byte[SYNC_SIZE];
+		for (int i=0; i<SYNC_SIZE; i++) {sync[i] = buffer.get(p[0]++);}
+
+		List<long[]> blocks = new ArrayList<>();
+		long end = buffer.capacity();
+		while (p[0] < end) {
+			long start = p[0];
+			long records = readLong(buffer, p);
+			long size = readLong(buffer, p);
+			p[0] += size;
+			for (int i=0; i<SYNC_SIZE; i++) {
+				if (buffer.get(p[0]++) != sync[i]) {throw new IllegalArgumentException(String.format("Invalid sync marker after block at %,d in %s", start, source));}
+			}
+			if (records > 0) {blocks.add(new long[]{start, records});}
+		}
+		return blocks;
+	}
+
+	/**Read a zig-zag encoded variable-length long (Avro's encoding), advancing the position.**/
+	private static long readLong(MappedFile buffer, long[] p) {
+		long n = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = buffer.get(p[0]++) & 0xFF;
+			n |= ((long) (b & 0x7F)) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	/**Which block holds the given record?**/
+	private int block(long record) {
+		int b = Arrays.binarySearch(firstRecords, record);
+		if (b < 0) {b = -b-2;}
+		while (b < blockStarts.length-1 && firstRecords[b+1] == record) {b++;}
+		return b;
+	}
+
+	/**Decode a block into glyphs.**/
+	private void load(int block) {
+		try {
+			if (reader == null) {reader = new DataFileReader<>(source, new GenericDatumReader<GenericRecord>(null, projection));}
+			reader.seek(blockStarts[block]);
+			int records = (int) (firstRecords[block+1]-firstRecords[block]);
+			List<Glyph<G,I>> glyphs = new ArrayList<>(records);
+			for (int i=0; i<records; i++) {
+				Indexed item = new GlyphsetTools.IndexedRecord(reader.next());
+				glyphs.add(new SimpleGlyph<G,I>(shaper.shape(item), valuer.value(item)));
+			}
+			cache = glyphs;
+			cachedBlock = block;
+
+			//Release the file once the last block of this range has been read
+			if (firstRecords[block+1] >= high) {reader.close(); reader = null;}
+		} catch (IOException e) {throw new RuntimeException("Error reading block " + block + " of " + source, e);}
+	}
+
+	@Override
+	public Glyph<G,I> get(long i) {
+		long record = low + i;
+		int block = block(record);
+		if (block != cachedBlock) {load(block);}
+		return cache.get((int) (record - firstRecords[block]));
+	}
+
+	/**Number of blocks in the file.**/
+	public int blocks() {return blockStarts.length;}
+
+	public Iterator<Glyph<G,I>> iterator() {return new GlyphsetIterator<>(this);}
+	public boolean isEmpty() {return high <= low;}
+	public long size() {return high-low;}
+	public long segments() {return size();}
+
+	public Glyphset<G,I> segment(long bottom, long top) throws IllegalArgumentException {
+		return new AvroGlyphset<>(this, low+bottom, low+top);
+	}
+
+	public Rectangle2D bounds() {
+		if (bounds == null) {bounds = pool.invoke(new BoundsTask(0, size()));}
+		return bounds;
+	}
+
+	private final class BoundsTask extends RecursiveTask<Rectangle2D> {
+		public static final long serialVersionUID = 1L;
+		private static final int TASK_SIZE = 100000;
+		private final long low, high;
+
+		public BoundsTask(long low, long high) {
+			this.low = low;
+			this.high = high;
+		}
+
+		@Override
+		protected Rectangle2D compute() {
+			if (high-low > TASK_SIZE) {
+				long mid = low+((high-low)/2);
+				BoundsTask top = new BoundsTask(low, mid);
+				BoundsTask bottom = new BoundsTask(mid, high);
+				invokeAll(top, bottom);
+				return Util.bounds(top.getRawResult(), bottom.getRawResult());
+			}
+			return Util.bounds(segment(low, high));
+		}
+	}
+}
@@ -72,4 +72,22 @@ public class GlyphsetTools {
 		for (GenericRecord r: reader) {l.add(realizer.value(r));}
 		return new WrappedCollection.List<INNER, G, V>(l, shaper, valuer);
 	}
+	
+	/**Present an avro file as a glyphset without reading it up front.
+	 * Records are decoded a block at a time as they are requested (see AvroGlyphset),
+	 * so rendering can start immediately and memory use stays bounded.
+	 * 
+	 * @param source Avro file
+	 * @param fields Names of the fields to decode (the shaper and valuer see only these, in this order); null for all fields
+	 * @param shaper Used to convert the (projected) record into geometry
+	 * @param valuer Used to convert the (projected) record into a value for a glyph
+	 * @throws IOException
+	 */
+	public static <G,V> Glyphset.RandomAccess<G,V> lazyLoad(
+			File source,
+			String[] fields,
+			Shaper<G,Indexed> shaper,
+			Valuer<Indexed,V> valuer) throws IOException {
+		return new AvroGlyphset<>(source, fields, shaper, valuer);
+	}
 }
@@ -1,10 +1,19 @@
 package ar.test.aggregates;
 
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
 import org.junit.Test;
 
 import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.ColorAggregates;
 import ar.aggregates.implementations.ConstantAggregates;
 import ar.aggregates.implementations.RefFlatAggregates;
+import ar.util.Util;
 import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
 
@@ -37,5 +46,45 @@ public class TestAggregates {
 			}
 		}
 	}
-	
+
+	@Test
+	public void ColorImages() throws Exception {
+		ColorAggregates colors = new ColorAggregates(0, 0, 37, 23, Util.CLEAR);
+		RefFlatAggregates<Color> ref = new RefFlatAggregates<Color>(0, 0, 37, 23, Util.CLEAR);
+		for (int x=colors.lowX(); x<colors.highX(); x++) {
+			for (int y=colors.lowY(); y<colors.highY(); y++) {
+				Color c = new Color(x*6, y*11, (x*y)%256, (x+y)*4);
+				colors.set(x, y, c);
+				ref.set(x, y, c);
+			}
+		}
+
+		BufferedImage view = AggregateUtils.asImage(colors, 37, 23, Color.white);
+		BufferedImage copy = colors.image();
+		BufferedImage built = AggregateUtils.asImage(ref, 37, 23, Color.white);
+		assertThat(view.getType(), is(BufferedImage.TYPE_INT_ARGB));
+		for (int x=colors.lowX(); x<colors.highX(); x++) {
+			for (int y=colors.lowY(); y<colors.highY(); y++) {
+				assertThat(view.getRGB(x, y), is(colors.get(x, y).getRGB()));
+				assertThat(copy.getRGB(x, y), is(colors.get(x, y).getRGB()));
+				assertThat(built.getRGB(x, y), is(colors.get(x, y).getRGB()));
+			}
+		}
+
+		colors.set(3, 4, Color.red);
+		assertThat("View is not shared", view.getRGB(3, 4), is(Color.red.getRGB()));
+		assertFalse("Copy is shared", copy.getRGB(3, 4) == Color.red.getRGB());
+
+		File f = File.createTempFile("colorImages", ".png");
+		try {
+			Util.writeImage(view, f);
+			BufferedImage written = ImageIO.read(f);
+			for (int x=colors.lowX(); x<colors.highX(); x++) {
+				for (int y=colors.lowY(); y<colors.highY(); y++) {
+					Color expected = Util.premultiplyAlpha(colors.get(x, y), Color.white);
+					assertThat(String.format("Written mismatch at %s, %s", x, y), written.getRGB(x, y), is(expected.getRGB()));
+				}
+			}
+		} finally {f.delete();}
+	}
 }
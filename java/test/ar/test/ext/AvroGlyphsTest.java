@@ -3,11 +3,14 @@ package ar.test.ext;
 import static org.junit.Assert.*;
 
 import java.awt.Color;
+import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
 
 import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
 import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
@@ -16,6 +19,7 @@ import org.junit.Test;
 
 import ar.Glyph;
 import ar.Glyphset;
+import ar.ext.avro.AvroGlyphset;
 import ar.ext.avro.GlyphsetTools;
 import ar.glyphsets.GlyphList;
 import ar.glyphsets.SimpleGlyph;
@@ -79,6 +83,90 @@ public class AvroGlyphsTest {
 
 	}
 	
+	@Test
+	public void circlepointsLazy() throws Exception {
+		File csv = new File("../data/circlepoints.csv");
+		File schema = new File("../data/circlepoints.avsc");
+		File output = new File("./testResults/circlepointsLazy.avro");
+		encode(csv, output, schema);
+		
+		GlyphList<?,?> reference = (GlyphList<?,?>) Util.load(
+				new GlyphList<Rectangle2D, Object>(), 
+				new DelimitedReader(csv), 
+				new Indexed.Converter(TYPE.X, TYPE.X, TYPE.DOUBLE, TYPE.DOUBLE, TYPE.DOUBLE), 
+				new Indexed.ToRect(.1, 2,3), 
+				new Indexed.ToValue<>(4));
+		
+		String[] fields = new String[3];
+		try (DataFileReader<GenericRecord> r = new DataFileReader<>(output, new GenericDatumReader<GenericRecord>())) {
+			for (int i=0; i<fields.length; i++) {fields[i] = r.getSchema().getFields().get(i+2).name();}
+		}
+		
+		Glyphset.RandomAccess<Rectangle2D, Object> result = GlyphsetTools.lazyLoad(
+				output, fields, new Indexed.ToRect(.1, 0, 1), new Indexed.ToValue<Object,Object>(2));
+		assertEquals("Size did not match", reference.size(), result.size());
+		
+		long mid = result.segments()/2;
+		Glyphset<Rectangle2D, Object> top = result.segment(mid, result.segments());
+		int i = (int) mid;
+		for (Glyph<Rectangle2D, Object> res: top) {
+			Glyph<?,?> ref = reference.get(i);
+			assertEquals("Shape did not match at " + i, ref.shape(), res.shape());
+			assertEquals("Value did not match at " + i, ref.info(), res.info());
+			i++;
+		}
+		assertEquals("Segment did not reach the end", reference.size(), i);
+		assertEquals("Bounds did not match", reference.bounds(), result.bounds());
+	}
+	
+	@Test
+	public void lazyBlocks() throws Exception {
+		Schema schema = new Schema.Parser().parse(
+				"{\"type\": \"record\", \"name\": \"point\", \"fields\": ["
+				+ "{\"name\": \"x\", \"type\": \"double\"},"
+				+ "{\"name\": \"y\", \"type\": \"double\"},"
+				+ "{\"name\": \"v\", \"type\": \"int\"}]}");
+		File output = File.createTempFile("lazyBlocks", ".avro");
+		int records = 2000;
+		try {
+			try (DataFileWriter<GenericRecord> writer = new DataFileWriter<GenericRecord>(new GenericDatumWriter<GenericRecord>(schema))) {
+				writer.setSyncInterval(512); //Small blocks, so the file has many
+				writer.setMeta("note", "Metadata entry to skip when indexing");
+				writer.create(schema, output);
+				for (int i=0; i<records; i++) {
+					GenericRecord r = new GenericData.Record(schema);
+					r.put(0, i*.5);
+					r.put(1, -i*.25);
+					r.put(2, i);
+					writer.append(r);
+				}
+			}
+
+			AvroGlyphset<Point2D, Integer> glyphs = new AvroGlyphset<>(
+					output, null, new Indexed.ToPoint(false, 0, 1), new Indexed.ToValue<Object,Integer>(2));
+			assertTrue("Expected several blocks; found " + glyphs.blocks(), glyphs.blocks() > 2);
+			assertEquals("Size did not match", records, glyphs.size());
+
+			//Random order, so reads jump between blocks
+			for (int n=0; n<records; n++) {
+				int i = (int) ((n*7919L) % records);
+				Glyph<Point2D, Integer> g = glyphs.get(i);
+				assertEquals("Shape did not match at " + i, new Point2D.Double(i*.5, -i*.25), g.shape());
+				assertEquals("Value did not match at " + i, Integer.valueOf(i), g.info());
+			}
+
+			int low = records/3, high = 2*records/3;
+			Glyphset<Point2D, Integer> segment = glyphs.segment(low, high);
+			assertEquals("Segment size did not match", high-low, segment.size());
+			int i = low;
+			for (Glyph<Point2D, Integer> g: segment) {
+				assertEquals("Segment value did not match at " + i, Integer.valueOf(i), g.info());
+				i++;
+			}
+			assertEquals("Segment did not reach its end", high, i);
+		} finally {output.delete();}
+	}
+	
 	/**Utility to write items to an avro file.**/
 	public void encode(File sourceFile, File targetFile, File schemaFile) throws Exception {
 		Schema schema = new Schema.Parser().parse(schemaFile);
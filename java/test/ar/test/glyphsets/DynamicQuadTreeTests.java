@@ -0,0 +1,123 @@
+package ar.test.glyphsets;
+
+import static org.junit.Assert.*;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import ar.Glyph;
+import ar.Glyphset;
+import ar.glyphsets.DynamicQuadTree;
+import ar.glyphsets.SimpleGlyph;
+import ar.glyphsets.SyntheticGlyphset;
+
+public class DynamicQuadTreeTests {
+	private static List<Glyph<Rectangle2D, Integer>> glyphs(int count) {
+		SyntheticGlyphset<Rectangle2D, Integer> source = new SyntheticGlyphset<>(count, 0,
+				new SyntheticGlyphset.SyntheticRects(new SyntheticGlyphset.Clusters(5, 3), 1, 1, 1));
+		List<Glyph<Rectangle2D, Integer>> glyphs = new ArrayList<>();
+		for (Glyph<Rectangle2D, Integer> g: source) {glyphs.add(g);}
+		return glyphs;
+	}
+
+	@Test
+	public void bulkLoad() {
+		List<Glyph<Rectangle2D, Integer>> glyphs = glyphs(50000);
+		DynamicQuadTree<Rectangle2D, Integer> serial = DynamicQuadTree.make();
+		for (Glyph<Rectangle2D, Integer> g: glyphs) {serial.add(g);}
+		DynamicQuadTree<Rectangle2D, Integer> bulk = DynamicQuadTree.make(glyphs);
+
+		assertEquals(serial.size(), bulk.size());
+		assertEquals(serial.bounds(), bulk.bounds());
+		assertTrue("Bulk load did not split", bulk.segments() > 1);
+
+		Rectangle2D[] probes = {new Rectangle2D.Double(50,50,1,1), new Rectangle2D.Double(10,20,5,.5), new Rectangle2D.Double(0,0,100,100)};
+		for (Rectangle2D probe: probes) {
+			assertEquals("Mismatch at " + probe, serial.intersects(probe), bulk.intersects(probe));
+		}
+	}
+
+	@Test
+	public void bulkThenAdd() {
+		List<Glyph<Rectangle2D, Integer>> glyphs = glyphs(5000);
+		DynamicQuadTree<Rectangle2D, Integer> tree = DynamicQuadTree.make(glyphs.subList(0, 4000));
+		tree.addAll(glyphs.subList(4000, 4500));         //Smaller than the tree; added one at a time
+		for (Glyph<Rectangle2D, Integer> g: glyphs.subList(4500, 5000)) {tree.add(g);}
+		Glyph<Rectangle2D, Integer> outside = new SimpleGlyph<Rectangle2D, Integer>(new Rectangle2D.Double(500,500,1,1), 1);
+		tree.add(outside);                               //Forces the tree to grow
+
+		assertEquals(glyphs.size()+1, tree.size());
+		assertTrue(tree.intersects(new Rectangle2D.Double(500.5, 500.5, .1, .1)).contains(outside));
+	}
+
+	@Test
+	public void iterateOnce() {
+		List<Glyph<Rectangle2D, Integer>> glyphs = glyphs(20000);
+		DynamicQuadTree<Rectangle2D, Integer> tree = DynamicQuadTree.make();
+		for (Glyph<Rectangle2D, Integer> g: glyphs) {tree.add(g);}
+		for (int i=0; i<100; i++) { //Grow the tree in several directions after it has depth
+			tree.add(new SimpleGlyph<Rectangle2D, Integer>(new Rectangle2D.Double(-100*i, 150*(i%3), 2, 2), i));
+		}
+
+		Rectangle2D b = tree.bounds();
+		Rectangle2D bounds = new Rectangle2D.Double(b.getX()-1e-9, b.getY()-1e-9, b.getWidth()+2e-9, b.getHeight()+2e-9); //Tolerate rounding in max = x + width
+		Map<Glyph<Rectangle2D, Integer>, Integer> seen = new IdentityHashMap<>();
+		for (Glyph<Rectangle2D, Integer> g: tree) {
+			assertNull("Item returned twice", seen.put(g, 1));
+			assertTrue("Item outside of bounds", bounds.contains(g.shape()));
+		}
+		assertEquals(glyphs.size()+100, seen.size());
+		assertEquals(seen.size(), tree.size());
+		assertEquals(tree.items().size(), tree.size());
+	}
+
+	/**Glyph that counts how often it is hashed (i.e., put in a set for de-duplication).**/
+	private static final class CountingGlyph extends SimpleGlyph<Rectangle2D, Integer> {
+		private static final long serialVersionUID = 1L;
+		static final AtomicLong hashes = new AtomicLong();
+		public CountingGlyph(Glyph<Rectangle2D, Integer> g) {super(g.shape(), g.info());}
+		public int hashCode() {hashes.incrementAndGet(); return System.identityHashCode(this);}
+		public boolean equals(Object other) {return this == other;}
+	}
+
+	@Test
+	public void iterateSegments() {
+		SyntheticGlyphset<Rectangle2D, Integer> source = new SyntheticGlyphset<>(20000, 0,
+				new SyntheticGlyphset.SyntheticRects(new SyntheticGlyphset.Uniform(), 1, .01, .01)); //Small, so few straddle quads
+		DynamicQuadTree<Rectangle2D, Integer> tree = DynamicQuadTree.make();
+		for (Glyph<Rectangle2D, Integer> g: source) {tree.add(new CountingGlyph(g));}
+
+		CountingGlyph.hashes.set(0);
+		long items = 0;
+		for (Glyph<Rectangle2D, Integer> g: tree) {items++;}
+		long treeHashes = CountingGlyph.hashes.get();
+		assertEquals(tree.size(), items);
+		assertTrue("Most items hashed by the tree iterator", treeHashes < items/10);
+
+		CountingGlyph.hashes.set(0);
+		Map<Glyph<Rectangle2D, Integer>, Integer> seen = new IdentityHashMap<>();
+		for (long i=0; i<tree.segments(); i++) {
+			Glyphset<Rectangle2D, Integer> segment = tree.segment(i, i+1);
+			long count = 0;
+			for (Glyph<Rectangle2D, Integer> g: segment) {count++; seen.put(g, 1);}
+			assertEquals("Segment size", count, segment.size());
+		}
+		assertEquals("Segments hash more than the tree iterator", treeHashes, CountingGlyph.hashes.get());
+		assertEquals("Items missing from segments", tree.size(), seen.size());
+
+		Glyphset<Rectangle2D, Integer> all = tree.segment(0, tree.segments());
+		assertEquals("Whole segment size", tree.size(), all.size());
+		Glyphset<Rectangle2D, Integer> nested = all.segment(1, 2);
+		long count = 0;
+		for (Iterator<Glyph<Rectangle2D, Integer>> it = nested.iterator(); it.hasNext(); it.next()) {count++;}
+		assertEquals("Nested segment size", count, nested.size());
+		assertEquals("Nested segment", tree.segment(1, 2).size(), nested.size());
+	}
+}
@@ -0,0 +1,111 @@
+package ar.test.glyphsets;
+
+import static org.junit.Assert.*;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.Glyph;
+import ar.Glyphset;
+import ar.aggregates.implementations.RefFlatAggregates;
+import ar.glyphsets.GlyphList;
+import ar.glyphsets.MemMapEdges;
+import ar.glyphsets.SimpleGlyph;
+import ar.glyphsets.implicitgeometry.Indexed;
+import ar.rules.Numbers;
+import ar.selectors.TouchesPixel;
+import ar.util.memoryMapping.DatasetStats;
+import ar.util.memoryMapping.MemMapEncoder;
+import ar.util.memoryMapping.ZoneMap;
+
+public class MemMapEdgesTests {
+	private static final int NODES = 500, EDGES = 5000;
+	private static final File nodesCsv = new File("../data/edgeTestNodes.csv");
+	private static final File edgesCsv = new File("../data/edgeTestEdges.csv");
+	private static final File nodesHbin = new File("../data/edgeTestNodes.hbin");
+	private static final File edgesHbin = new File("../data/edgeTestEdges.hbin");
+
+	private static double[][] positions = new double[NODES][];
+	private static int[][] edges = new int[EDGES][];
+
+	@BeforeClass
+	public static void makeFiles() throws Exception {
+		Random r = new Random(5);
+		try (PrintWriter nodes = new PrintWriter(nodesCsv)) {
+			nodes.println("x,y");
+			for (int n=0; n<NODES; n++) {
+				positions[n] = new double[]{r.nextDouble()*100, r.nextDouble()*100};
+				nodes.println(positions[n][0] + "," + positions[n][1]);
+			}
+		}
+		try (PrintWriter out = new PrintWriter(edgesCsv)) {
+			out.println("source,target,weight");
+			for (int e=0; e<EDGES; e++) {
+				edges[e] = new int[]{r.nextInt(NODES), r.nextInt(NODES), e%7};
+				out.println(edges[e][0] + "," + edges[e][1] + "," + edges[e][2]);
+			}
+		}
+		MemMapEncoder.write(nodesCsv, 1, nodesHbin, "dd".toCharArray());
+		MemMapEncoder.write(edgesCsv, 1, edgesHbin, "iii".toCharArray());
+	}
+
+	@AfterClass
+	public static void removeTemps() {
+		for (File f: new File[]{nodesCsv, edgesCsv, nodesHbin, edgesHbin}) {
+			for (File temp: new File[]{f, ZoneMap.sidecarFor(f), DatasetStats.sidecarFor(f)}) {
+				if (temp.exists()) {temp.delete();}
+			}
+		}
+	}
+
+	private static MemMapEdges<Integer> load() throws Exception {
+		return new MemMapEdges<>(edgesHbin, nodesHbin, new Indexed.ToValue<Indexed,Integer>(2));
+	}
+
+	@Test
+	public void endpoints() throws Exception {
+		MemMapEdges<Integer> glyphs = load();
+		assertEquals(EDGES, glyphs.size());
+		assertEquals(NODES, glyphs.nodes());
+		for (int e=0; e<EDGES; e++) {
+			Line2D l = glyphs.get(e).shape();
+			assertEquals(positions[edges[e][0]][0], l.getX1(), 0);
+			assertEquals(positions[edges[e][0]][1], l.getY1(), 0);
+			assertEquals(positions[edges[e][1]][0], l.getX2(), 0);
+			assertEquals(positions[edges[e][1]][1], l.getY2(), 0);
+			assertEquals((Integer) edges[e][2], glyphs.get(e).info());
+		}
+
+		Glyphset<Line2D, Integer> segment = glyphs.segment(1000, 1100);
+		int e = 1000;
+		for (Glyph<Line2D,Integer> g: segment) {assertEquals(glyphs.get(e++).shape().getP1(), g.shape().getP1());}
+		assertEquals(1100, e);
+	}
+
+	@Test
+	public void render() throws Exception {
+		MemMapEdges<Integer> glyphs = load();
+		GlyphList<Line2D,Integer> lines = new GlyphList<>();
+		for (long e=0; e<glyphs.size(); e++) {
+			Glyph<Line2D,Integer> g = glyphs.get(e);
+			lines.add(new SimpleGlyph<>(g.shape(), g.info()));
+		}
+
+		AffineTransform view = AffineTransform.getScaleInstance(2, 2);
+		Aggregates<Integer> expected = new TouchesPixel.Lines().processSubset(lines, view, new RefFlatAggregates<>(200, 200, 0), new Numbers.Count<Integer>());
+		Aggregates<Integer> actual = new TouchesPixel.Lines().processSubset(glyphs, view, new RefFlatAggregates<>(200, 200, 0), new Numbers.Count<Integer>());
+		for (int x=0; x<200; x++) {
+			for (int y=0; y<200; y++) {
+				assertEquals(String.format("Mismatch at %d,%d", x, y), expected.get(x,y), actual.get(x,y));
+			}
+		}
+	}
+}
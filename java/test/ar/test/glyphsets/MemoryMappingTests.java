@@ -2,27 +2,47 @@ package ar.test.glyphsets;
 
 import static org.junit.Assert.*;
 
+import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import ar.Glyph;
 import ar.Glyphset;
+import ar.glyphsets.ColumnarMemMapList;
 import ar.glyphsets.GlyphList;
 import ar.glyphsets.MemMapList;
 import ar.glyphsets.implicitgeometry.Indexed;
 import ar.glyphsets.implicitgeometry.IndexedEncoding;
+import ar.glyphsets.implicitgeometry.RecordFilter;
+import ar.glyphsets.implicitgeometry.Shaper;
 import ar.util.DelimitedReader;
 import ar.util.memoryMapping.BigFileByteBuffer;
+import ar.util.memoryMapping.BitmapIndex;
+import ar.util.memoryMapping.ChunkedFileByteBuffer;
+import ar.util.memoryMapping.ColumnarEncoder;
+import ar.util.memoryMapping.DatasetStats;
+import ar.util.memoryMapping.FileByteBuffer;
 import ar.util.memoryMapping.MemMapEncoder;
 import ar.util.memoryMapping.MemMapEncoder.TYPE;
+import ar.util.memoryMapping.ParallelEncoder;
+import ar.util.memoryMapping.SpatialOrder;
+import ar.util.memoryMapping.StringTable;
+import ar.util.memoryMapping.ZoneMap;
 import ar.util.Util;
 
 public class MemoryMappingTests {
 	private static String csvName = "../data/circlepoints.csv";
 	private static String hbinName = "../data/circlepointsTests.hbin";
+	private static String columnarName = "../data/circlepointsTests.cbin";
+	private static String sortedName = "../data/circlepointsTests.sorted.hbin";
+	private static String parallelName = "../data/circlepointsTests.parallel.hbin";
+	private static String stringsName = "../data/circlepointsTests.strings.hbin";
 
 	private static Glyphset.RandomAccess<Rectangle2D, Integer> mm = null;
 	private static Glyphset.RandomAccess<Rectangle2D, Integer> ref = null;
@@ -47,8 +67,12 @@ public class MemoryMappingTests {
 	
 	@AfterClass
 	public static void removeTemps() throws Exception {
-		File hbin = new File(hbinName);
-		if (hbin.exists()) {hbin.delete();}
+		for (String name: new String[]{hbinName, columnarName, sortedName, parallelName, stringsName, stringsName + ".sorted"}) {
+			File f = new File(name);
+			for (File temp: new File[]{f, ZoneMap.sidecarFor(f), DatasetStats.sidecarFor(f), BitmapIndex.sidecarFor(f, 2)}) {
+				if (temp.exists()) {temp.delete();}
+			}
+		}
 	}
 	
 	@Test
@@ -66,6 +90,22 @@ public class MemoryMappingTests {
 	}
 
 
+	@Test
+	public void positions() throws Exception {
+		MemMapList<Point2D, Integer> points = new MemMapList<>(new File(hbinName), new Indexed.ToPoint(true, 0, 1), new Indexed.ToValue<Indexed,Integer>(2));
+		double[] coords = new double[200];
+		for (long start=0; start<points.size(); start+=100) {
+			int n = (int) Math.min(100, points.size()-start);
+			assertTrue("Positions not supplied", points.positions(start, n, coords));
+			for (int i=0; i<n; i++) {
+				Glyph<Point2D, Integer> g = points.get(start+i);
+				assertEquals("Mismatched position at " + (start+i), g.shape(), new Point2D.Double(coords[i*2], coords[i*2+1]));
+				assertEquals("Mismatched value at " + (start+i), g.info(), points.value(start+i));
+			}
+		}
+		assertFalse("Positions supplied for rectangles", ((MemMapList<Rectangle2D, Integer>) mm).positions(0, 1, coords));
+	}
+
 	@Test
 	public void minMax() throws Exception {
 		BigFileByteBuffer buffer = new BigFileByteBuffer(new File(hbinName), 1000);
@@ -89,6 +129,263 @@ public class MemoryMappingTests {
 		
 	}
 	
+	@Test
+	public void chunkedStraddle() throws Exception {
+		File hbin = new File(hbinName);
+		FileByteBuffer whole = new FileByteBuffer(hbin, 0, hbin.length());
+		ChunkedFileByteBuffer chunked = new ChunkedFileByteBuffer(hbin, 64); //Small chunks so many records straddle a boundary 
+		MemMapEncoder.Header header = MemMapEncoder.Header.from(whole);
+		
+		assertEquals("Capacity mismatch", whole.capacity(), chunked.capacity());
+		for (long cursor = header.dataTableOffset; cursor < whole.capacity(); cursor += header.recordLength) {
+			IndexedEncoding expected = new IndexedEncoding(header.types, cursor, whole);
+			IndexedEncoding actual = new IndexedEncoding(header.types, cursor, chunked);
+			for (int f=0; f<header.types.length; f++) {
+				assertEquals("Mismatch at " + cursor + " field " + f, expected.get(f), actual.get(f));
+			}
+		}
+		
+		ChunkedFileByteBuffer slice = chunked.slice(header.dataTableOffset+header.recordLength, whole.capacity());
+		assertEquals("Slice offset", whole.getDouble(header.dataTableOffset+header.recordLength), slice.getDouble(0), 0);
+	}
+	
+	@Test
+	public void columnar() throws Exception {
+		File columnar = new File(columnarName);
+		ColumnarEncoder.convert(new File(hbinName), columnar, 100);
+		ColumnarMemMapList<Rectangle2D, Integer> cm = new ColumnarMemMapList<>(columnar, new Indexed.ToRect(1, 0, 1), new Indexed.ToValue<Integer,Integer>(2));
+		
+		assertEquals("Sizes don't match.", ref.size(), cm.size());
+		assertEquals("Chunk count", (ref.size()+99)/100, cm.header().chunks());
+		for (int i=0; i< ref.size(); i++) {
+			assertEquals("Mismatched shape at " + i, ref.get(i).shape(), cm.get(i).shape());
+			assertEquals("Mismatched value at " + i, ref.get(i).info(), cm.get(i).info());
+		}
+		
+		assertEquals("Segment size", 270, cm.segment(150, 420).size());
+		assertEquals("Restrict to empty region", 0, cm.restrict(new Rectangle2D.Double(100,100,1,1)).size());
+		assertEquals("Restrict to full region", cm.size(), cm.restrict(cm.bounds()).size());
+	}
+
+	@Test
+	public void zones() throws Exception {
+		File hbin = new File(hbinName);
+		MemMapList<Rectangle2D, Integer> list = (MemMapList<Rectangle2D, Integer>) mm; 
+		ZoneMap sidecar = ZoneMap.loadFor(hbin);
+		assertNotNull("Zone sidecar not written by encoder.", sidecar);
+		
+		ZoneMap built = ZoneMap.build(hbin, sidecar.zoneRecords());
+		assertEquals("Record count", ref.size(), sidecar.recordCount());
+		assertEquals("Zone count", built.zones(), sidecar.zones());
+		for (int z=0; z<built.zones(); z++) {
+			for (int f=0; f<list.types().length; f++) {
+				assertEquals("Min mismatch", built.min(z, f), sidecar.min(z, f), 0);
+				assertEquals("Max mismatch", built.max(z, f), sidecar.max(z, f), 0);
+			}
+		}
+		
+		assertEquals("Restrict to empty region", 0, list.restrict(new Rectangle2D.Double(100,100,1,1)).size());
+		assertEquals("Restrict to full region", list.size(), list.restrict(list.bounds()).size());
+	}
+
+	@Test
+	public void stats() throws Exception {
+		File hbin = new File(hbinName);
+		DatasetStats stats = DatasetStats.loadFor(hbin);
+		assertNotNull("Stats sidecar not written by encoder.", stats);
+		assertEquals("Record count", ref.size(), stats.recordCount());
+		
+		long sum = 0;
+		for (Glyph<Rectangle2D, Integer> g: ref) {sum += g.info();}
+		assertEquals("Value sum", sum, stats.sum(2), 0);
+		assertEquals("Value count", ref.size(), stats.count(2));
+		assertEquals("Min x", ref.bounds().getMinX(), stats.min(0), 0);
+	}
+
+	/**Described point shaper that is not SafeApproximate, so its bounds are not taken from the header.**/
+	private static final class OffsetPoint implements Shaper.Described<Point2D, Indexed> {
+		private static final long serialVersionUID = 1L;
+		private final double offset;
+		public OffsetPoint(double offset) {this.offset = offset;}
+		public Point2D shape(Indexed from) {
+			return new Point2D.Double(((Number) from.get(0)).doubleValue() + offset, ((Number) from.get(1)).doubleValue());
+		}
+		public String description() {return Double.toString(offset);}
+	}
+
+	@Test
+	public void recordedBounds() throws Exception {
+		File hbin = new File(hbinName);
+		File sidecar = DatasetStats.sidecarFor(hbin);
+		Rectangle2D expected = new MemMapList<>(hbin, new OffsetPoint(10), new Indexed.ToValue<Indexed,Integer>(2)).scanBounds();
+		assertNull("Bounds present before first scan", DatasetStats.loadFor(hbin).bounds(new OffsetPoint(10)));
+
+		MemMapList<Point2D, Integer> points = new MemMapList<>(hbin, new OffsetPoint(10), new Indexed.ToValue<Indexed,Integer>(2));
+		assertEquals("Scanned bounds", expected, points.bounds());
+		DatasetStats stats = DatasetStats.loadFor(hbin);
+		assertEquals("Bounds recorded after scan", expected, stats.bounds(new OffsetPoint(10)));
+		assertNull("Bounds for a different description", stats.bounds(new OffsetPoint(5)));
+		assertEquals("Record count kept", mm.size(), stats.recordCount());
+
+		//Later opens use the recorded bounds (instead of scanning)
+		Rectangle2D marker = new Rectangle2D.Double(-1, -2, 3, 4);
+		stats.withBounds(new OffsetPoint(10), marker).write(sidecar, hbin.length());
+		assertEquals("Bounds from sidecar", marker, new MemMapList<>(hbin, new OffsetPoint(10), new Indexed.ToValue<Indexed,Integer>(2)).bounds());
+
+		//Shapers without a description are not recorded
+		byte[] before = Files.readAllBytes(sidecar.toPath());
+		new MemMapList<>(hbin, new Indexed.ToPoint(false, 0, 1), new Indexed.ToValue<Indexed,Integer>(2)).bounds();
+		assertArrayEquals("Sidecar modified for undescribed shaper", before, Files.readAllBytes(sidecar.toPath()));
+		assertEquals("No temporary files left", 0, hbin.getAbsoluteFile().getParentFile().listFiles(new java.io.FilenameFilter() {
+			public boolean accept(File dir, String name) {return name.endsWith(".tmp");}
+		}).length);
+	}
+
+	@Test
+	public void spatialSort() throws Exception {
+		File sorted = new File(sortedName);
+		MemMapEncoder.sort(new File(hbinName), sorted, SpatialOrder.HILBERT, 0, 1);
+		MemMapEncoder.Header header = MemMapEncoder.Header.from(new FileByteBuffer(sorted, 0, sorted.length()));
+		assertEquals("Ordering not recorded", SpatialOrder.HILBERT, header.ordering);
+		assertEquals("Ordering x field", 0, header.orderX);
+		assertEquals("Ordering y field", 1, header.orderY);
+		
+		MemMapList<Rectangle2D, Integer> list = new MemMapList<>(sorted, new Indexed.ToRect(1, 0, 1), new Indexed.ToValue<Integer,Integer>(2));
+		assertEquals("Sizes don't match.", ref.size(), list.size());
+		assertEquals("Bounds don't match.", ref.bounds(), list.bounds());
+		
+		long refSum=0, sortedSum=0;
+		for (Glyph<Rectangle2D, Integer> g: ref) {refSum += g.info();}
+		for (Glyph<Rectangle2D, Integer> g: list) {sortedSum += g.info();}
+		assertEquals("Values don't match.", refSum, sortedSum);
+
+		//Records follow the curve
+		FileByteBuffer buffer = new FileByteBuffer(sorted, 0, sorted.length());
+		IndexedEncoding max = new IndexedEncoding(header.types, header.maximaRecordOffset, buffer);
+		IndexedEncoding min = new IndexedEncoding(header.types, header.minimaRecordOffset, buffer);
+		long last = -1;
+		for (long cursor = header.dataTableOffset; cursor < buffer.capacity(); cursor += header.recordLength) {
+			IndexedEncoding entry = new IndexedEncoding(header.types, cursor, buffer);
+			int x = SpatialOrder.cell((Double) entry.get(0), (Double) min.get(0), (Double) max.get(0));
+			int y = SpatialOrder.cell((Double) entry.get(1), (Double) min.get(1), (Double) max.get(1));
+			long key = SpatialOrder.HILBERT.key(x, y);
+			assertTrue("Out of curve order at " + cursor, key >= last);
+			last = key;
+		}
+
+		//Small zones of the sorted file are compact, so a small window touches fewer of them
+		Rectangle2D window = new Rectangle2D.Double(.2, .2, .2, .2);
+		int unsortedHits = zonesTouching(ZoneMap.build(new File(hbinName), 50), window);
+		int sortedHits = zonesTouching(ZoneMap.build(sorted, 50), window);
+		assertTrue("Window misses all zones", sortedHits > 0);
+		assertTrue(String.format("Sorted zones not more selective (%d vs %d unsorted)", sortedHits, unsortedHits), sortedHits*3 < unsortedHits);
+	}
+
+	/**Number of zones whose x/y (fields 0 and 1) ranges intersect the window.**/
+	private static int zonesTouching(ZoneMap zones, Rectangle2D window) {
+		int hits = 0;
+		for (int z=0; z<zones.zones(); z++) {
+			if (zones.max(z, 0) >= window.getMinX() && zones.min(z, 0) <= window.getMaxX()
+					&& zones.max(z, 1) >= window.getMinY() && zones.min(z, 1) <= window.getMaxY()) {hits++;}
+		}
+		return hits;
+	}
+
+	@Test
+	public void parallelEncode() throws Exception {
+		File parallel = new File(parallelName);
+		ParallelEncoder.write(new File(csvName), 1, parallel, "xxddi".toCharArray(), ',', 3);
+		byte[] expected = Files.readAllBytes(new File(hbinName).toPath());
+		byte[] actual = Files.readAllBytes(parallel.toPath());
+		assertArrayEquals("Parallel encoding differs from serial encoding", expected, actual);
+		assertNotNull("Zone sidecar not written", ZoneMap.loadFor(parallel));
+	}
+
+	@Test
+	public void strings() throws Exception {
+		File strings = new File(stringsName);
+		MemMapEncoder.write(new File(csvName), 1, strings, "xxddv".toCharArray());
+		
+		MemMapList<Rectangle2D, String> list = new MemMapList<>(strings, new Indexed.ToRect(1, 0, 1), null);
+		StringTable table = list.strings();
+		assertNotNull("String table not found", table);
+		assertEquals("Record count changed by string table", ref.size(), list.size());
+		assertEquals("Unexpected type", TYPE.STRING, list.types()[2]);
+		
+		Indexed.ToCategory category = new Indexed.ToCategory(2, table);
+		Indexed.IsCategory isZero = new Indexed.IsCategory(2, table, "0");
+		DelimitedReader reader = new DelimitedReader(new File(csvName), 1, "\\s*,\\s*");
+		ChunkedFileByteBuffer buffer = new ChunkedFileByteBuffer(strings);
+		MemMapEncoder.Header header = MemMapEncoder.Header.from(buffer);
+		for (long i=0; i<list.size(); i++) {
+			String expected = reader.next()[4];
+			IndexedEncoding entry = new IndexedEncoding(header.types, header.dataTableOffset + i*header.recordLength, buffer);
+			assertEquals("Mismatch at " + i, expected, category.value(entry));
+			assertSame("Category not shared at " + i, table.value(table.code(expected)), category.value(entry));
+			assertEquals("Category test mismatch at " + i, expected.equals("0"), isZero.value(entry));
+		}
+		
+		File sorted = new File(stringsName + ".sorted");
+		MemMapEncoder.sort(strings, sorted, SpatialOrder.ZORDER, 0, 1);
+		assertEquals("Records lost in sort", list.size(), new MemMapList<>(sorted, new Indexed.ToRect(1, 0, 1), null).size());
+		assertEquals("String table not copied", table.size(), StringTable.loadFor(sorted).size());
+	}
+
+	@Test
+	public void filter() throws Exception {
+		MemMapList<Rectangle2D, Integer> list = (MemMapList<Rectangle2D, Integer>) mm;
+		RecordFilter filter = new RecordFilter.And(new RecordFilter.Range(0, 0, 1), new RecordFilter.Equals(2, 1));
+		Glyphset<Rectangle2D, Integer> filtered = list.filter(filter);
+		
+		long expected = 0;
+		for (Glyph<Rectangle2D, Integer> g: ref) {
+			if (g.shape().getX() >= 0 && g.shape().getX() <= 1 && g.info() == 1) {expected++;}
+		}
+		long found = 0;
+		for (Glyph<Rectangle2D, Integer> g: filtered) {
+			assertTrue("Item outside of range", g.shape().getX() >= 0 && g.shape().getX() <= 1);
+			assertEquals("Item with wrong value", 1, (int) g.info());
+			found++;
+		}
+		assertTrue("Test requires some items to pass", expected > 0);
+		assertEquals("Unexpected number of items", expected, found);
+		assertEquals("Size mismatch", expected, filtered.size());
+		
+		long segmented = 0;
+		long mid = filtered.segments()/2;
+		for (Glyphset<Rectangle2D, Integer> s: Arrays.asList(filtered.segment(0, mid), filtered.segment(mid, filtered.segments()))) {
+			for (@SuppressWarnings("unused") Glyph<Rectangle2D, Integer> g: s) {segmented++;}
+		}
+		assertEquals("Segments lost items", expected, segmented);
+		
+		assertTrue("Impossible filter returned items", list.filter(new RecordFilter.Range(0, 10, 20)).isEmpty());
+	}
+
+	@Test
+	public void bitmapIndex() throws Exception {
+		File hbin = new File(hbinName);
+		BitmapIndex built = BitmapIndex.build(hbin, 2, BitmapIndex.DEFAULT_MAX_VALUES);
+		built.write(BitmapIndex.sidecarFor(hbin, 2), hbin.length());
+		BitmapIndex index = BitmapIndex.loadFor(hbin, 2);
+		assertNotNull("Index sidecar not loaded", index);
+		assertArrayEquals("Values changed in sidecar", built.values(), index.values(), 0);
+		
+		MemMapList<Rectangle2D, Integer> list = (MemMapList<Rectangle2D, Integer>) mm;
+		long total = 0;
+		for (double v: index.values()) {
+			long expected = 0;
+			for (Glyph<Rectangle2D, Integer> g: ref) {if (g.info() == v) {expected++;}}
+			
+			Glyphset.RandomAccess<Rectangle2D, Integer> selected = list.select(2, v);
+			assertEquals("Count mismatch for " + v, expected, index.count(v));
+			assertEquals("Size mismatch for " + v, expected, selected.size());
+			for (Glyph<Rectangle2D, Integer> g: selected) {assertEquals("Wrong value selected", v, g.info(), 0);}
+			total += expected;
+		}
+		assertEquals("Union of all values", total, index.select(list, index.values()).size());
+		assertTrue("Absent value selected items", index.select(list, -1).isEmpty());
+	}
+
 	@Test
 	public void subset() throws Exception {
 		Glyphset<Rectangle2D, Integer> glyphs = mm.segment(0, 10);
@@ -0,0 +1,69 @@
+package ar.test.glyphsets;
+
+import static org.junit.Assert.*;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ar.Glyph;
+import ar.Glyphset;
+import ar.glyphsets.PackedRTree;
+import ar.glyphsets.SyntheticGlyphset;
+import ar.util.Util;
+
+public class PackedRTreeTests {
+	private static final SyntheticGlyphset<Rectangle2D, Integer> SOURCE = new SyntheticGlyphset<>(30000, 0,
+			new SyntheticGlyphset.SyntheticRects(new SyntheticGlyphset.HotSpots(10, 1.5, 20), 7, 2, 2));
+
+	@Test
+	public void holdsEachItemOnce() {
+		PackedRTree<Rectangle2D, Integer> tree = new PackedRTree<>(SOURCE);
+		assertEquals(SOURCE.size(), tree.size());
+
+		Set<Glyph<Rectangle2D, Integer>> seen = new HashSet<>();
+		for (long i=0; i<tree.segments(); i+=1000) {
+			for (Glyph<Rectangle2D, Integer> g: tree.segment(i, Math.min(tree.segments(), i+1000))) {
+				assertTrue("Item repeated", seen.add(g));
+			}
+		}
+		assertEquals(SOURCE.size(), seen.size());
+		assertEquals(Util.bounds(tree), tree.bounds());
+	}
+
+	@Test
+	public void query() {
+		PackedRTree<Rectangle2D, Integer> tree = new PackedRTree<>(SOURCE, 8);
+		Rectangle2D[] regions = {new Rectangle2D.Double(40,40,10,10), new Rectangle2D.Double(0,0,1,100), new Rectangle2D.Double(200,200,5,5)};
+		for (Rectangle2D region: regions) {
+			List<Glyph<Rectangle2D, Integer>> expected = new ArrayList<>();
+			for (Glyph<Rectangle2D, Integer> g: SOURCE) {if (Util.intersects(region, g.shape())) {expected.add(g);}}
+
+			List<Glyph<Rectangle2D, Integer>> found = tree.intersects(region);
+			assertEquals("Query size at " + region, expected.size(), found.size());
+
+			Glyphset<Rectangle2D, Integer> restricted = tree.restrict(region);
+			Set<Rectangle2D> kept = new HashSet<>();
+			for (Glyph<Rectangle2D, Integer> g: restricted) {kept.add(g.shape());}
+			for (Glyph<Rectangle2D, Integer> g: expected) {assertTrue("Restrict dropped an item in " + region, kept.contains(g.shape()));}
+			assertTrue("Restrict did not cull", restricted.size() < tree.size() || expected.size() == tree.size());
+		}
+	}
+
+	@Test
+	public void compactSegments() {
+		PackedRTree<Rectangle2D, Integer> tree = new PackedRTree<>(SOURCE);
+		int parts = 16;
+		double area = 0;
+		for (int p=0; p<parts; p++) {
+			Rectangle2D b = tree.segment(p*tree.size()/parts, (p+1)*tree.size()/parts).bounds();
+			area += b.getWidth()*b.getHeight();
+		}
+		Rectangle2D all = tree.bounds();
+		assertTrue("Segments overlap too much", area < 2*all.getWidth()*all.getHeight());
+	}
+}
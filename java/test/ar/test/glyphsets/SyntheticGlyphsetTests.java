@@ -0,0 +1,61 @@
+package ar.test.glyphsets;
+
+import static org.junit.Assert.*;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+import org.junit.Test;
+
+import ar.Glyph;
+import ar.Glyphset;
+import ar.glyphsets.SyntheticGlyphset;
+import ar.glyphsets.SyntheticGlyphset.Distribution;
+
+public class SyntheticGlyphsetTests {
+	private static final Distribution[] DISTRIBUTIONS = {
+		new SyntheticGlyphset.Uniform(),
+		new SyntheticGlyphset.Clusters(5, 3),
+		new SyntheticGlyphset.HotSpots(10, 1.5, 20)};
+
+	@Test
+	public void deterministic() {
+		for (Distribution d: DISTRIBUTIONS) {
+			SyntheticGlyphset<Point2D, Integer> a = new SyntheticGlyphset<>(1000, 0, new SyntheticGlyphset.SyntheticPoints(d, 42));
+			SyntheticGlyphset<Point2D, Integer> b = new SyntheticGlyphset<>(1000, 0, new SyntheticGlyphset.SyntheticPoints(d, 42));
+			SyntheticGlyphset<Point2D, Integer> c = new SyntheticGlyphset<>(1000, 0, new SyntheticGlyphset.SyntheticPoints(d, 43));
+
+			int same = 0;
+			for (long i=a.size()-1; i>=0; i--) { //Reverse order; items do not depend on generation order
+				assertEquals("Not repeatable at " + i, a.get(i).shape(), b.get(i).shape());
+				if (a.get(i).shape().equals(c.get(i).shape())) {same++;}
+			}
+			assertTrue("Seed had no effect", same < a.size()/2);
+		}
+	}
+
+	@Test
+	public void segments() {
+		SyntheticGlyphset<Point2D, Integer> glyphs = new SyntheticGlyphset<>(1000, 0, new SyntheticGlyphset.SyntheticPoints());
+		Glyphset<Point2D, Integer> segment = glyphs.segment(500, 600);
+		long i = 500;
+		for (Glyph<Point2D, Integer> g: segment) {assertEquals("Segment mismatch at " + i, glyphs.get(i++).shape(), g.shape());}
+		assertEquals(600, i);
+	}
+
+	@Test
+	public void inBounds() {
+		for (Distribution d: DISTRIBUTIONS) {
+			SyntheticGlyphset<Rectangle2D, Integer> rects = new SyntheticGlyphset<>(10000, 0, new SyntheticGlyphset.SyntheticRects(d, 1, 5, 5));
+			SyntheticGlyphset<Line2D, Integer> lines = new SyntheticGlyphset<>(10000, 0, new SyntheticGlyphset.SyntheticLines(d, 1, 10));
+			Rectangle2D bounds = rects.bounds();
+			for (long i=0; i<rects.size(); i++) {
+				Rectangle2D r = rects.get(i).shape();
+				assertTrue("Rectangle out of bounds at " + i, bounds.contains(r.getX(), r.getY()) && r.getMaxX() <= bounds.getMaxX() && r.getMaxY() <= bounds.getMaxY());
+				Line2D l = lines.get(i).shape();
+				assertTrue("Line out of bounds at " + i, bounds.contains(l.getP1()) && bounds.contains(l.getP2()));
+			}
+		}
+	}
+}
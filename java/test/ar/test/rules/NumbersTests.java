@@ -0,0 +1,88 @@
+package ar.test.rules;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.Transfer;
+import ar.aggregates.implementations.ColorAggregates;
+import ar.aggregates.implementations.DoubleAggregates;
+import ar.aggregates.implementations.RefFlatAggregates;
+import ar.renderers.ParallelRenderer;
+import ar.renderers.SerialRenderer;
+import ar.rules.Numbers;
+import ar.util.Util;
+
+public class NumbersTests {
+	private static final Color LOW = new Color(255,0,0,30);
+	private static final Color HIGH = new Color(0,40,255,255);
+
+	private static Aggregates<Double> values(Aggregates<Double> aggs) {
+		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
+			for (int y=aggs.lowY(); y<aggs.highY(); y++) {
+				if ((x+y)%11 == 0) {continue;} //Leave some defaults
+				aggs.set(x, y, 1 + Math.abs(Math.sin(x*.13)*Math.cos(y*.07))*1000);
+			}
+		}
+		aggs.set(aggs.lowX()+1, aggs.lowY(), Double.NaN);
+		return aggs;
+	}
+
+	private static void assertClose(Color expected, Color actual, int tolerance) {
+		assertEquals("red", expected.getRed(), actual.getRed(), tolerance);
+		assertEquals("green", expected.getGreen(), actual.getGreen(), tolerance);
+		assertEquals("blue", expected.getBlue(), actual.getBlue(), tolerance);
+		assertEquals("alpha", expected.getAlpha(), actual.getAlpha(), tolerance);
+	}
+
+	@Test
+	public void lookupMatchesInterpolate() {
+		Aggregates<Double> aggs = values(new RefFlatAggregates<Double>(-2, 3, 398, 303, 0d));
+		Util.Stats<Double> s = Util.stats(aggs, true, true, true);
+
+		Transfer.Specialized<Number, Color> lookup = new Numbers.LookupInterpolate<Number>(LOW, HIGH, Color.white).specialize(aggs);
+		Aggregates<Color> out = new ParallelRenderer().transfer(aggs, lookup);
+		assertTrue("Packed path not used", out instanceof ColorAggregates);
+
+		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
+			for (int y=aggs.lowY(); y<aggs.highY(); y++) {
+				Double v = aggs.get(x, y);
+				if (v == 0 || v.isNaN()) {assertEquals("Empty at " + x + "," + y, Color.white, out.get(x, y)); continue;}
+				Color expected = Util.interpolate(LOW, HIGH, s.min, s.max, v);
+				assertClose(expected, out.get(x, y), 1);
+			}
+		}
+	}
+
+	@Test
+	public void lookupPathsAgree() {
+		Aggregates<Double> ref = values(new RefFlatAggregates<Double>(0, 0, 120, 80, 0d));
+		Aggregates<Double> prim = values(new DoubleAggregates(0, 0, 120, 80, 0));
+		Numbers.LookupInterpolate<Double> t = new Numbers.LookupInterpolate<>(LOW, HIGH, 1d, 1001d, Color.white, true, 256);
+
+		Transfer.Specialized<Double, Color> s1 = t.specialize(ref);
+		Transfer.Specialized<Double, Color> s2 = t.specialize(prim);
+		Aggregates<Color> packed = new SerialRenderer().transfer(prim, s2);
+		Transfer.ItemWise<Double, Color> itemWise = (Transfer.ItemWise<Double, Color>) s1;
+
+		Color last = null;
+		for (int x=ref.lowX(); x<ref.highX(); x++) {
+			for (int y=ref.lowY(); y<ref.highY(); y++) {
+				assertEquals("Mismatch at " + x + "," + y, itemWise.at(x, y, ref), packed.get(x, y));
+			}
+		}
+
+		//Log scale is monotone in the value
+		for (double v=1; v<=1001; v+=10) {
+			Aggregates<Double> one = new RefFlatAggregates<Double>(0,0,1,1,0d);
+			one.set(0,0,v);
+			Color c = itemWise.at(0, 0, one);
+			if (last != null) {assertTrue("Not monotone at " + v, c.getBlue() >= last.getBlue() && c.getRed() <= last.getRed());}
+			last = c;
+		}
+		assertEquals(HIGH, last);
+	}
+}
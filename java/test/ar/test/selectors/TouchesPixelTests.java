@@ -0,0 +1,287 @@
+package ar.test.selectors;
+
+import static org.junit.Assert.*;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.Glyph;
+import ar.Glyphset;
+import ar.Selector;
+import ar.aggregates.implementations.RefFlatAggregates;
+import ar.glyphsets.GlyphList;
+import ar.glyphsets.SimpleGlyph;
+import ar.glyphsets.implicitgeometry.Valuer;
+import ar.rules.Numbers;
+import ar.selectors.TouchesPixel;
+
+public class TouchesPixelTests {
+	private static final AffineTransform VIEW = new AffineTransform(1.7, .3, -.2, 1.4, 3.25, -4.5);
+
+	/**Self-intersecting polygons (so the winding rules differ) and rings with holes.**/
+	private static Glyphset<Shape, Integer> polygons(int rule) {
+		Random r = new Random(17);
+		GlyphList<Shape,Integer> glyphs = new GlyphList<>();
+		for (int i=0; i<20; i++) {
+			Path2D p = new Path2D.Double(rule);
+			double cx = r.nextDouble()*60, cy = r.nextDouble()*60;
+			int points = 3 + r.nextInt(8);
+			for (int k=0; k<points; k++) {
+				double x = cx + r.nextDouble()*30, y = cy + r.nextDouble()*30;
+				if (k == 0) {p.moveTo(x, y);} else {p.lineTo(x, y);}
+			}
+			if (i%2 == 0) {
+				p.moveTo(cx+5.1, cy+5.3); p.lineTo(cx+5.1, cy+12.7); p.lineTo(cx+13.9, cy+12.7); p.lineTo(cx+13.9, cy+5.3); p.closePath();
+			}
+			glyphs.add(new SimpleGlyph<Shape,Integer>(p, 1));
+		}
+		return glyphs;
+	}
+
+	private static Aggregates<Integer> render(Glyphset<Shape,Integer> glyphs, Selector<Shape> selector) {
+		Aggregates<Integer> target = new RefFlatAggregates<>(10, 5, 120, 110, 0);
+		return selector.processSubset(glyphs, VIEW, target, new Numbers.Count<>());
+	}
+
+	private static void assertSame(Aggregates<Integer> expected, Aggregates<Integer> actual) {
+		int filled = 0;
+		for (int x=expected.lowX(); x<expected.highX(); x++) {
+			for (int y=expected.lowY(); y<expected.highY(); y++) {
+				assertEquals(String.format("Mismatch at %d,%d", x, y), expected.get(x,y), actual.get(x,y));
+				if (expected.get(x,y) != 0) {filled++;}
+			}
+		}
+		assertTrue("Test rendered nothing", filled > 0);
+	}
+
+	@Test
+	public void scanlineEvenOdd() {
+		Glyphset<Shape,Integer> glyphs = polygons(PathIterator.WIND_EVEN_ODD);
+		assertSame(render(glyphs, new TouchesPixel.Shapes()), render(glyphs, new TouchesPixel.ScanlineShapes()));
+	}
+
+	@Test
+	public void scanlineNonZero() {
+		Glyphset<Shape,Integer> glyphs = polygons(PathIterator.WIND_NON_ZERO);
+		assertSame(render(glyphs, new TouchesPixel.Shapes()), render(glyphs, new TouchesPixel.ScanlineShapes()));
+	}
+
+	@Test
+	public void scanlineRuleOverride() {
+		Glyphset<Shape,Integer> evenOdd = polygons(PathIterator.WIND_EVEN_ODD);
+		Glyphset<Shape,Integer> nonZero = polygons(PathIterator.WIND_NON_ZERO);
+		assertSame(render(nonZero, new TouchesPixel.Shapes()), render(evenOdd, new TouchesPixel.ScanlineShapes(PathIterator.WIND_NON_ZERO)));
+	}
+
+	@Test
+	public void scanlineCurves() {
+		GlyphList<Shape,Integer> glyphs = new GlyphList<>();
+		glyphs.add(new SimpleGlyph<Shape,Integer>(new Ellipse2D.Double(10, 10, 40, 25), 1));
+		Aggregates<Integer> expected = render(glyphs, new TouchesPixel.Shapes());
+		Aggregates<Integer> actual = render(glyphs, new TouchesPixel.ScanlineShapes());
+
+		int differ = 0, filled = 0;
+		for (int x=expected.lowX(); x<expected.highX(); x++) {
+			for (int y=expected.lowY(); y<expected.highY(); y++) {
+				if (!expected.get(x,y).equals(actual.get(x,y))) {differ++;}
+				if (expected.get(x,y) != 0) {filled++;}
+			}
+		}
+		assertTrue("Flattening changed too many bins: " + differ, differ < filled/50);
+	}
+
+	private static GlyphList<Line2D,Integer> lines() {
+		Random r = new Random(23);
+		GlyphList<Line2D,Integer> glyphs = new GlyphList<>();
+		for (int i=0; i<200; i++) {
+			glyphs.add(new SimpleGlyph<Line2D,Integer>(new Line2D.Double(r.nextDouble()*100-20, r.nextDouble()*100-20, r.nextDouble()*100-20, r.nextDouble()*100-20), 1));
+		}
+		glyphs.add(new SimpleGlyph<Line2D,Integer>(new Line2D.Double(30.2, 40.7, 30.2, 40.7), 1));
+		glyphs.add(new SimpleGlyph<Line2D,Integer>(new Line2D.Double(10.5, 40.5, 60.5, 40.5), 1));
+		return glyphs;
+	}
+
+	private static <A> Aggregates<A> renderLines(Glyphset<Line2D,Integer> glyphs, boolean antiAlias, Aggregates<A> target, Aggregator<Integer,A> op) {
+		return new TouchesPixel.Lines(antiAlias).processSubset(glyphs, VIEW, target, op);
+	}
+
+	@Test
+	public void linesMatchHitsBin() {
+		for (boolean antiAlias: new boolean[]{false, true}) {
+			Selector<Line2D> selector = new TouchesPixel.Lines(antiAlias);
+			for (Glyph<Line2D,Integer> g: lines()) {
+				GlyphList<Line2D,Integer> single = new GlyphList<>();
+				single.add(g);
+				Aggregates<Double> aggs = renderLines(single, antiAlias, new RefFlatAggregates<>(10, 5, 120, 110, 0d), new Numbers.WeightedCount<Integer>());
+				for (int x=aggs.lowX(); x<aggs.highX(); x++) {
+					for (int y=aggs.lowY(); y<aggs.highY(); y++) {
+						assertEquals(String.format("Mismatch at %d,%d for %s (anti-alias %s)", x, y, g.shape().getP1(), antiAlias), 
+								selector.hitsBin(g, VIEW, x, y), aggs.get(x,y) > 0);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void linesClipped() {
+		for (boolean antiAlias: new boolean[]{false, true}) {
+			Aggregates<Double> full = renderLines(lines(), antiAlias, new RefFlatAggregates<>(-100, -100, 300, 300, 0d), new Numbers.WeightedCount<Integer>());
+			Aggregates<Double> part = renderLines(lines(), antiAlias, new RefFlatAggregates<>(13, 27, 61, 70, 0d), new Numbers.WeightedCount<Integer>());
+			for (int x=part.lowX(); x<part.highX(); x++) {
+				for (int y=part.lowY(); y<part.highY(); y++) {
+					assertEquals(String.format("Mismatch at %d,%d", x, y), full.get(x,y), part.get(x,y), 1e-9);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void linesCovered() {
+		Line2D line = new Line2D.Double(10.3, 20.6, 50.8, 35.1);
+		GlyphList<Line2D,Integer> glyphs = new GlyphList<>();
+		glyphs.add(new SimpleGlyph<Line2D,Integer>(line, 1));
+		Aggregates<Integer> aliased = new TouchesPixel.Lines().processSubset(glyphs, new AffineTransform(), new RefFlatAggregates<>(100, 100, 0), new Numbers.Count<Integer>());
+		Aggregates<Double> smooth = new TouchesPixel.Lines(true).processSubset(glyphs, new AffineTransform(), new RefFlatAggregates<>(100, 100, 0d), new Numbers.WeightedCount<Integer>());
+
+		int touched = 0;
+		double weight = 0;
+		for (int x=0; x<100; x++) {
+			int inColumn = 0;
+			for (int y=0; y<100; y++) {
+				inColumn += aliased.get(x,y);
+				weight += smooth.get(x,y);
+			}
+			assertEquals("Wrong number of bins in column " + x, x >= 10 && x <= 50 ? 1 : 0, inColumn);
+			touched += inColumn;
+		}
+		assertEquals(41, touched);
+		assertEquals("Coverage should total the line's width", line.getX2()-line.getX1(), weight, 1e-9);
+	}
+
+	@Test
+	public void pointsBatched() {
+		Random r = new Random(3);
+		GlyphList<Point2D,Integer> glyphs = new GlyphList<>();
+		for (int i=0; i<TouchesPixel.Points.BATCH*3+17; i++) {
+			glyphs.add(new SimpleGlyph<Point2D,Integer>(new Point2D.Double(r.nextDouble()*90-10, r.nextDouble()*90-10), 1));
+		}
+		Selector<Point2D> selector = new TouchesPixel.Points();
+		Aggregates<Integer> aggs = selector.processSubset(glyphs, VIEW, new RefFlatAggregates<>(10, 5, 120, 110, 0), new Numbers.Count<Integer>());
+
+		int inside = 0;
+		for (Glyph<Point2D,Integer> g: glyphs) {
+			Point2D p = VIEW.transform(g.shape(), null);
+			int x = (int) Math.floor(p.getX()), y = (int) Math.floor(p.getY());
+			if (x >= aggs.lowX() && x < aggs.highX() && y >= aggs.lowY() && y < aggs.highY()) {
+				inside++;
+				assertTrue("Not in the reported bin " + x + "," + y, selector.hitsBin(g, VIEW, x, y));
+				assertTrue("Not counted at " + x + "," + y, aggs.get(x,y) > 0);
+			}
+		}
+
+		int total = 0;
+		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
+			for (int y=aggs.lowY(); y<aggs.highY(); y++) {total += aggs.get(x,y);}
+		}
+		assertEquals(inside, total);
+	}
+
+	/**Count, for each bin, the ellipses that contain the bin center (tested in data space).**/
+	private static Aggregates<Integer> containing(Glyphset<Ellipse2D,Integer> glyphs) throws Exception {
+		Aggregates<Integer> aggs = new RefFlatAggregates<>(10, 5, 120, 110, 0);
+		AffineTransform inverse = VIEW.createInverse();
+		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
+			for (int y=aggs.lowY(); y<aggs.highY(); y++) {
+				Point2D p = inverse.transform(new Point2D.Double(x+.5, y+.5), null);
+				int count = 0;
+				for (Glyph<Ellipse2D,Integer> g: glyphs) {if (g.shape().contains(p)) {count++;}}
+				aggs.set(x, y, count);
+			}
+		}
+		return aggs;
+	}
+
+	@Test
+	public void ellipses() throws Exception {
+		Random r = new Random(29);
+		GlyphList<Ellipse2D,Integer> glyphs = new GlyphList<>();
+		for (int i=0; i<30; i++) {
+			glyphs.add(new SimpleGlyph<Ellipse2D,Integer>(new Ellipse2D.Double(r.nextDouble()*70-5, r.nextDouble()*70-5, r.nextDouble()*20, r.nextDouble()*10), 1));
+		}
+		glyphs.add(new SimpleGlyph<Ellipse2D,Integer>(new Ellipse2D.Double(20, 20, 0, 5), 1));
+		
+		Selector<Ellipse2D> selector = new TouchesPixel.Ellipses();
+		Aggregates<Integer> actual = selector.processSubset(glyphs, VIEW, new RefFlatAggregates<>(10, 5, 120, 110, 0), new Numbers.Count<Integer>());
+		assertSame(containing(glyphs), actual);
+
+		Glyph<Ellipse2D,Integer> g = glyphs.get(0);
+		GlyphList<Ellipse2D,Integer> single = new GlyphList<>();
+		single.add(g);
+		Aggregates<Integer> expected = containing(single);
+		for (int x=actual.lowX(); x<actual.highX(); x++) {
+			for (int y=actual.lowY(); y<actual.highY(); y++) {
+				assertEquals(expected.get(x,y) > 0, selector.hitsBin(g, VIEW, x, y));
+			}
+		}
+	}
+
+	@Test
+	public void circles() throws Exception {
+		Random r = new Random(31);
+		GlyphList<Point2D,Integer> points = new GlyphList<>();
+		GlyphList<Ellipse2D,Integer> circles = new GlyphList<>();
+		for (int i=0; i<30; i++) {
+			int radius = 1 + r.nextInt(8);
+			Point2D p = new Point2D.Double(r.nextDouble()*70-5, r.nextDouble()*70-5);
+			points.add(new SimpleGlyph<Point2D,Integer>(p, radius));
+			circles.add(new SimpleGlyph<Ellipse2D,Integer>(new Ellipse2D.Double(p.getX()-radius, p.getY()-radius, radius*2, radius*2), radius));
+		}
+
+		Selector<Point2D> selector = new TouchesPixel.Circles(new Valuer<Glyph<? extends Point2D, ?>, Integer>() {
+			public Integer value(Glyph<? extends Point2D, ?> from) {return (Integer) from.info();}
+		});
+		Aggregates<Integer> actual = selector.processSubset(points, VIEW, new RefFlatAggregates<>(10, 5, 120, 110, 0), new Numbers.Count<Integer>());
+		assertSame(containing(circles), actual);
+	}
+
+	@Test
+	public void rectangleCoverage() {
+		Random r = new Random(37);
+		GlyphList<Rectangle2D,Integer> glyphs = new GlyphList<>();
+		for (int i=0; i<300; i++) {
+			double size = i%3 == 0 ? .3 : 10; //Include sub-bin rectangles
+			glyphs.add(new SimpleGlyph<Rectangle2D,Integer>(new Rectangle2D.Double(r.nextDouble()*90-10, r.nextDouble()*90-10, r.nextDouble()*size, r.nextDouble()*size), 1));
+		}
+		AffineTransform view = new AffineTransform(1.3, 0, 0, -.9, 2.2, 95.4);
+		Selector<Rectangle2D> selector = new TouchesPixel.RectangleCoverage();
+		Aggregates<Double> aggs = selector.processSubset(glyphs, view, new RefFlatAggregates<>(10, 5, 120, 110, 0d), new Numbers.WeightedCount<Integer>());
+
+		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
+			for (int y=aggs.lowY(); y<aggs.highY(); y++) {
+				Rectangle2D bin = new Rectangle2D.Double(x, y, 1, 1);
+				double expected = 0;
+				for (Glyph<Rectangle2D,Integer> g: glyphs) {
+					Rectangle2D overlap = view.createTransformedShape(g.shape()).getBounds2D().createIntersection(bin);
+					if (!overlap.isEmpty()) {expected += overlap.getWidth()*overlap.getHeight();}
+				}
+				assertEquals(String.format("Mismatch at %d,%d", x, y), expected, aggs.get(x,y), 1e-9);
+				
+				boolean hit = false;
+				for (Glyph<Rectangle2D,Integer> g: glyphs) {hit = hit || selector.hitsBin(g, view, x, y);}
+				assertEquals(String.format("Hit mismatch at %d,%d", x, y), expected > 0, hit);
+			}
+		}
+	}
+}
@@ -4,16 +4,30 @@ import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
 
 import java.awt.Color;
+import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.Comparator;
 
 import org.junit.Test;
 
 import ar.Aggregates;
 import ar.Glyph;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.DoubleAggregates;
 import ar.aggregates.implementations.RefFlatAggregates;
 import ar.glyphsets.SimpleGlyph;
+import ar.glyphsets.implicitgeometry.Indexed.Converter.TYPE;
+import ar.renderers.ParallelRenderer;
+import ar.renderers.SerialRenderer;
+import ar.rules.Advise;
+import ar.rules.Numbers;
+import ar.util.ByteDelimitedReader;
+import ar.util.DelimitedReader;
 import ar.util.Util;
 
 public class Utils {
@@ -68,6 +82,108 @@ public class Utils {
 		assertThat(s1.mean, is (4.451219512195122d));
 		assertThat(s2.mean, is (3.65d));
 	}
+
+	@Test
+	public void reduce() {
+		Aggregates<Integer> aggs = new RefFlatAggregates<Integer>(5, -7, 605, 393, 0);
+		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
+			for (int y=aggs.lowY(); y<aggs.highY(); y++) {
+				aggs.set(x, y, (x*31 + y*17) % 1000);
+			}
+		}
+		long n = AggregateUtils.size(aggs);
+		assertThat(Util.reduce(aggs, new Numbers.Count<Integer>()), is((int) n));
+		assertThat(new SerialRenderer().reduce(aggs, new Numbers.Count<Integer>()), is((int) n));
+		assertThat(new ParallelRenderer().reduce(aggs, new Numbers.Count<Integer>()), is((int) n));
+
+		//Advise searches in column-major order and reports the first extreme value
+		Point min = null, max = null;
+		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
+			for (int y=aggs.lowY(); y<aggs.highY(); y++) {
+				if (min == null || aggs.get(x, y) < aggs.get(min.x, min.y)) {min = new Point(x,y);}
+				if (max == null || aggs.get(x, y) > aggs.get(max.x, max.y)) {max = new Point(x,y);}
+			}
+		}
+		Comparator<Number> comp = new Advise.NumberComp();
+		assertThat(Advise.min(aggs, comp), is(min));
+		assertThat(Advise.max(aggs, comp), is(max));
+		assertThat(Advise.min(aggs, comp, new ParallelRenderer()), is(min));
+		assertThat(Advise.max(aggs, comp, new SerialRenderer()), is(max));
+	}
+
+	@Test
+	public void statsVariance() {
+		Aggregates<Double> prim = new DoubleAggregates(-3, 2, 497, 402, 0);
+		Aggregates<Double> ref = new RefFlatAggregates<Double>(-3, 2, 497, 402, 0d);
+		double sum=0;
+		for (int x=prim.lowX(); x<prim.highX(); x++) {
+			for (int y=prim.lowY(); y<prim.highY(); y++) {
+				double v = 1e6 + Math.sin(x*.37)*Math.cos(y*.11)*(x%7);
+				prim.set(x, y, v);
+				ref.set(x, y, v);
+				sum += v;
+			}
+		}
+		long n = AggregateUtils.size(prim);
+		double mean = sum/n;
+		double acc = 0;
+		for (double v: prim) {acc += (v-mean)*(v-mean);}
+		double stdev = Math.sqrt(acc/n);
+
+		Util.Stats<Double> s1 = Util.stats(prim, true, true, true);
+		Util.Stats<Double> s2 = Util.stats(ref, true, true, true);
+		Util.Stats<Double> s3 = new SerialRenderer().stats(prim, true, true, true);
+		Util.Stats<Double> s4 = new ParallelRenderer().stats(ref, true, true, true);
+		for (Util.Stats<Double> s: Arrays.asList(s1, s2, s3, s4)) {
+			assertThat(s.count, is(n));
+			assertEquals(mean, s.mean, 1e-6);
+			assertEquals(stdev, s.stdev, stdev*1e-6);
+			assertThat(s.min, is(s1.min));
+			assertThat(s.max, is(s1.max));
+		}
+	}
 	
-}
+	@Test
+	public void byteDelimitedReader() {
+		File csv = new File("../data/circlepoints.csv");
+		DelimitedReader strings = new DelimitedReader(csv, 1, DelimitedReader.CSV);
+		ByteDelimitedReader bytes = new ByteDelimitedReader(csv, 1, ',');
+		
+		int lines = 0;
+		while (bytes.advance()) {
+			String[] expected = strings.next();
+			assertEquals("Field count", expected.length, bytes.fields());
+			assertEquals("String value", expected[0], bytes.getString(0));
+			assertEquals("Double value", Double.parseDouble(expected[2]), bytes.getDouble(2), 0);
+			assertEquals("Float value", Float.parseFloat(expected[3]), bytes.getFloat(3), 0);
+			assertEquals("Int value", Integer.parseInt(expected[4]), bytes.getInt(4));
+			lines++;
+		}
+		assertNull("Readers out of step", strings.next());
+		assertEquals("Line count", 1499, lines);
+	}
+
+	@Test
+	public void byteDelimitedChars() throws Exception {
+		File csv = File.createTempFile("byteDelimited", ".csv");
+		csv.deleteOnExit();
+		Files.write(csv.toPath(), "a,127\n\u00e9t\u00e9,-128\n\u20ac,128\n\uD834\uDD1E,-129\n".getBytes(StandardCharsets.UTF_8));
+		ByteDelimitedReader bytes = new ByteDelimitedReader(csv, 0, ',', TYPE.CHAR, TYPE.BYTE);
 
+		assertTrue(bytes.advance());
+		assertEquals('a', bytes.get(0, TYPE.CHAR));
+		assertEquals((byte) 127, bytes.get(1, TYPE.BYTE));
+		assertTrue(bytes.advance());
+		assertEquals('\u00e9', bytes.get(0, TYPE.CHAR));
+		assertEquals((byte) -128, bytes.get(1, TYPE.BYTE));
+		assertTrue(bytes.advance());
+		assertEquals('\u20ac', bytes.get(0, TYPE.CHAR));
+		try {bytes.get(1, TYPE.BYTE); fail("Byte out of range accepted");}
+		catch (NumberFormatException e) {}
+		assertTrue(bytes.advance());
+		assertEquals('\uD834', bytes.getChar(0));
+		try {bytes.getByte(1); fail("Byte out of range accepted");}
+		catch (NumberFormatException e) {}
+		assertFalse(bytes.advance());
+	}
+}